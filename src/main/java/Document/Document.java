@@ -18,6 +18,9 @@ public class Document {
     private boolean savDirty;
     private LSDSavFile savFile = new LSDSavFile();
 
+    private final EditHistory history = new EditHistory(EditHistory.DEFAULT_MEMORY_LIMIT,
+            EditHistory.DEFAULT_COALESCE_MILLIS);
+
     private final List<IDocumentListener> documentListeners = new LinkedList<>();
 
     public void subscribe(IDocumentListener documentListener) {
@@ -49,16 +52,39 @@ public class Document {
     }
 
     public void setRomImage(byte[] romImage) {
-        if (Arrays.equals(romImage, this.romImage)) {
+        setRomImage(romImage, null);
+    }
+
+    /**
+     * Copies an edited ROM image into the document and records the change
+     * for undo. Successive changes from the same non-null source that follow
+     * each other closely are undone together.
+     */
+    public void setRomImage(byte[] romImage, Object source) {
+        if (this.romImage == null || romImage == null || romImage.length != this.romImage.length) {
+            if (Arrays.equals(romImage, this.romImage)) {
+                return;
+            }
+            history.forget(EditTarget.ROM);
+            this.romImage = romImage == null ? null : romImage.clone();
+            setRomDirty(true);
+            return;
+        }
+        List<EditHistory.Range> ranges = history.record(EditTarget.ROM, source,
+                this.romImage, romImage, null, 0);
+        if (ranges.isEmpty()) {
             return;
         }
-        this.romImage = romImage;
+        for (EditHistory.Range range : ranges) {
+            System.arraycopy(range.after, 0, this.romImage, range.offset, range.after.length);
+        }
         setRomDirty(true);
     }
 
     public void loadRomImage(String romPath) throws IOException {
         romFile = new File(romPath);
         romImage = new byte[RomUtilities.BANK_SIZE * RomUtilities.BANK_COUNT];
+        history.forget(EditTarget.ROM);
         setRomDirty(false);
         try {
             RandomAccessFile f = new RandomAccessFile(romFile, "r");
@@ -72,6 +98,7 @@ public class Document {
     }
 
     public void loadSavFile(String savPath) throws IOException {
+        history.forget(EditTarget.SAV);
         setSavDirty(false);
         try {
             savFile = new LSDSavFile();
@@ -97,16 +124,102 @@ public class Document {
     public void setSavFile(LSDSavFile savFile) {
         if (savFile == null) {
             this.savFile = null;
+            history.forget(EditTarget.SAV);
             setSavDirty(false);
             return;
         }
         if (this.savFile != null && savFile.equals(this.savFile)) {
             return;
         }
-        this.savFile = savFile;
+        if (this.savFile != null && this.savFile.workRam.length == savFile.workRam.length) {
+            // Saves cloned from this.savFile only need their written pages compared.
+            history.record(EditTarget.SAV, null, this.savFile.workRam, savFile.workRam,
+                    savFile.changedPagesSince(this.savFile), savFile.blockSize);
+        } else {
+            history.forget(EditTarget.SAV);
+        }
+        try {
+            // Cheap, as clones share workRam until written. Keeps undo from changing savFile.
+            this.savFile = savFile.clone();
+        } catch (CloneNotSupportedException e) {
+            this.savFile = savFile;
+        }
         setSavDirty(true);
     }
 
+    public boolean canUndo() {
+        return history.canUndo();
+    }
+
+    public boolean canRedo() {
+        return history.canRedo();
+    }
+
+    public boolean canUndo(EditTarget target) {
+        return history.canUndo(target);
+    }
+
+    public boolean canRedo(EditTarget target) {
+        return history.canRedo(target);
+    }
+
+    /**
+     * Reverts the most recent ROM or .sav edit.
+     *
+     * @return false if there was nothing to undo
+     */
+    public boolean undo() {
+        return markDirty(history.undo(this::patch));
+    }
+
+    /**
+     * Reapplies the most recently undone edit.
+     *
+     * @return false if there was nothing to redo
+     */
+    public boolean redo() {
+        return markDirty(history.redo(this::patch));
+    }
+
+    /**
+     * Reverts the most recent edit of a target, leaving edits of the other
+     * target alone. For editors that show only one of them.
+     *
+     * @return false if there was nothing to undo
+     */
+    public boolean undo(EditTarget target) {
+        return markDirty(history.undo(target, this::patch));
+    }
+
+    /**
+     * Reapplies the most recently undone edit of a target.
+     *
+     * @return false if there was nothing to redo
+     */
+    public boolean redo(EditTarget target) {
+        return markDirty(history.redo(target, this::patch));
+    }
+
+    private void patch(EditTarget target, int offset, byte[] data) {
+        if (target == EditTarget.ROM) {
+            System.arraycopy(data, 0, romImage, offset, data.length);
+        } else {
+            savFile.patchWorkRam(offset, data);
+        }
+    }
+
+    private boolean markDirty(EditTarget target) {
+        if (target == null) {
+            return false;
+        }
+        if (target == EditTarget.ROM) {
+            setRomDirty(true);
+        } else {
+            setSavDirty(true);
+        }
+        return true;
+    }
+
     public boolean isSavDirty() {
         return savDirty;
     }
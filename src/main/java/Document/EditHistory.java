@@ -0,0 +1,298 @@
+package Document;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Undo and redo stacks for the ROM image and the .sav work RAM. Each target
+ * has its own stacks, so that undoing in an editor of one target never
+ * reverts an edit of the other, but they share one memory limit.
+ * <p>
+ * Edits are stored as the byte ranges that changed, with their contents
+ * before and after, so undo and redo cost time and memory in proportion to
+ * the size of the change rather than to the size of the ROM. Edits from the
+ * same source that follow each other closely, like the pixels of a drag in
+ * the font editor, are merged into one. The oldest edits are dropped once
+ * the history holds more than memoryLimit bytes.
+ */
+class EditHistory {
+    interface Patcher {
+        void patch(EditTarget target, int offset, byte[] data);
+    }
+
+    static final int DEFAULT_MEMORY_LIMIT = 16 * 1024 * 1024;
+    static final long DEFAULT_COALESCE_MILLIS = 500;
+
+    // Changed bytes closer than this are stored as one range.
+    private static final int RANGE_GAP = 16;
+    // Estimated cost of a range besides its contents.
+    private static final int RANGE_OVERHEAD = 48;
+    // Unchanged stretches are skipped this many bytes at a time.
+    private static final int CHUNK_SIZE = 0x1000;
+
+    static class Range {
+        final int offset;
+        final byte[] before;
+        final byte[] after;
+
+        Range(int offset, byte[] before, byte[] after) {
+            this.offset = offset;
+            this.before = before;
+            this.after = after;
+        }
+    }
+
+    private static class Edit {
+        final EditTarget target;
+        final Object source;
+        final List<Range> ranges = new ArrayList<>();
+        long lastChangeNanos;
+        int size;
+        // When the edit was last pushed onto a stack, to order edits of different targets.
+        long pushed;
+
+        Edit(EditTarget target, Object source) {
+            this.target = target;
+            this.source = source;
+        }
+    }
+
+    private final int memoryLimit;
+    private final long coalesceNanos;
+    private final Map<EditTarget, ArrayDeque<Edit>> undoStacks = new EnumMap<>(EditTarget.class);
+    private final Map<EditTarget, ArrayDeque<Edit>> redoStacks = new EnumMap<>(EditTarget.class);
+    private long pushCount;
+    private int memoryUsed;
+    // The edit that later edits from the same source may still be merged into.
+    private Edit openEdit;
+
+    EditHistory(int memoryLimit, long coalesceMillis) {
+        this.memoryLimit = memoryLimit;
+        coalesceNanos = coalesceMillis * 1000000;
+        for (EditTarget target : EditTarget.values()) {
+            undoStacks.put(target, new ArrayDeque<>());
+            redoStacks.put(target, new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Records the differences between current and edited, which must have the same length.
+     *
+     * @param source   edits with the same non-null source are merged if they follow each other closely
+     * @param pages    if not null, only these pages of pageSize bytes are compared
+     * @return the changed ranges, empty if edited equals current
+     */
+    List<Range> record(EditTarget target, Object source, byte[] current, byte[] edited, BitSet pages, int pageSize) {
+        List<Range> ranges = new ArrayList<>();
+        if (pages == null) {
+            diff(current, edited, 0, current.length, ranges);
+        } else {
+            for (int page = pages.nextSetBit(0); page >= 0 && page * pageSize < current.length;
+                 page = pages.nextSetBit(page + 1)) {
+                diff(current, edited, page * pageSize, Math.min((page + 1) * pageSize, current.length), ranges);
+            }
+        }
+        if (ranges.isEmpty()) {
+            return ranges;
+        }
+
+        long now = System.nanoTime();
+        Edit edit = undoStacks.get(target).peekFirst();
+        if (edit == null || edit != openEdit || source == null || edit.source != source
+                || now - edit.lastChangeNanos > coalesceNanos) {
+            edit = new Edit(target, source);
+            push(undoStacks, edit);
+        }
+        edit.lastChangeNanos = now;
+        openEdit = edit;
+        for (Range range : ranges) {
+            int size = rangeSize(range);
+            edit.ranges.add(range);
+            edit.size += size;
+            memoryUsed += size;
+        }
+        forget(redoStacks.get(target));
+        trim();
+        return ranges;
+    }
+
+    /**
+     * Reverts the most recent edit of any target.
+     *
+     * @return the target of the edit, or null if there was nothing to undo
+     */
+    EditTarget undo(Patcher patcher) {
+        EditTarget target = latest(undoStacks);
+        return target == null ? null : undo(target, patcher);
+    }
+
+    /**
+     * Reverts the most recent edit of a target.
+     *
+     * @return the target, or null if there was nothing to undo
+     */
+    EditTarget undo(EditTarget target, Patcher patcher) {
+        Edit edit = undoStacks.get(target).pollFirst();
+        if (edit == null) {
+            return null;
+        }
+        // Later ranges of a merged edit may overlap earlier ones.
+        for (int i = edit.ranges.size() - 1; i >= 0; --i) {
+            Range range = edit.ranges.get(i);
+            patcher.patch(target, range.offset, range.before);
+        }
+        push(redoStacks, edit);
+        openEdit = null;
+        return target;
+    }
+
+    /**
+     * Reapplies the most recently undone edit of any target.
+     *
+     * @return the target of the edit, or null if there was nothing to redo
+     */
+    EditTarget redo(Patcher patcher) {
+        EditTarget target = latest(redoStacks);
+        return target == null ? null : redo(target, patcher);
+    }
+
+    /**
+     * Reapplies the most recently undone edit of a target.
+     *
+     * @return the target, or null if there was nothing to redo
+     */
+    EditTarget redo(EditTarget target, Patcher patcher) {
+        Edit edit = redoStacks.get(target).pollFirst();
+        if (edit == null) {
+            return null;
+        }
+        for (Range range : edit.ranges) {
+            patcher.patch(target, range.offset, range.after);
+        }
+        push(undoStacks, edit);
+        openEdit = null;
+        return target;
+    }
+
+    boolean canUndo() {
+        return latest(undoStacks) != null;
+    }
+
+    boolean canUndo(EditTarget target) {
+        return !undoStacks.get(target).isEmpty();
+    }
+
+    boolean canRedo() {
+        return latest(redoStacks) != null;
+    }
+
+    boolean canRedo(EditTarget target) {
+        return !redoStacks.get(target).isEmpty();
+    }
+
+    /**
+     * Drops all edits of a target, e.g. after another file was loaded into it.
+     */
+    void forget(EditTarget target) {
+        forget(undoStacks.get(target));
+        forget(redoStacks.get(target));
+    }
+
+    int memoryUsed() {
+        return memoryUsed;
+    }
+
+    private void push(Map<EditTarget, ArrayDeque<Edit>> stacks, Edit edit) {
+        edit.pushed = ++pushCount;
+        stacks.get(edit.target).addFirst(edit);
+    }
+
+    // The target whose stack has the most recently pushed edit on top.
+    private static EditTarget latest(Map<EditTarget, ArrayDeque<Edit>> stacks) {
+        Edit latest = null;
+        for (ArrayDeque<Edit> stack : stacks.values()) {
+            Edit edit = stack.peekFirst();
+            if (edit != null && (latest == null || edit.pushed > latest.pushed)) {
+                latest = edit;
+            }
+        }
+        return latest == null ? null : latest.target;
+    }
+
+    private void forget(ArrayDeque<Edit> stack) {
+        for (Edit edit : stack) {
+            memoryUsed -= edit.size;
+            if (edit == openEdit) {
+                openEdit = null;
+            }
+        }
+        stack.clear();
+    }
+
+    // Drops the oldest undo edits, whatever their target.
+    private void trim() {
+        while (memoryUsed > memoryLimit) {
+            ArrayDeque<Edit> oldestStack = null;
+            for (ArrayDeque<Edit> stack : undoStacks.values()) {
+                Edit edit = stack.peekLast();
+                if (edit != null && (oldestStack == null || edit.pushed < oldestStack.peekLast().pushed)) {
+                    oldestStack = stack;
+                }
+            }
+            if (oldestStack == null) {
+                return;
+            }
+            Edit oldest = oldestStack.pollLast();
+            memoryUsed -= oldest.size;
+            if (oldest == openEdit) {
+                openEdit = null;
+            }
+        }
+    }
+
+    private static int rangeSize(Range range) {
+        return range.before.length + range.after.length + RANGE_OVERHEAD;
+    }
+
+    private static void diff(byte[] current, byte[] edited, int from, int to, List<Range> ranges) {
+        int start = -1;
+        int end = -1;
+        for (int chunk = from; chunk < to; chunk += CHUNK_SIZE) {
+            int chunkEnd = Math.min(chunk + CHUNK_SIZE, to);
+            // ByteBuffer.equals is vectorized on newer JVMs.
+            if (ByteBuffer.wrap(current, chunk, chunkEnd - chunk)
+                    .equals(ByteBuffer.wrap(edited, chunk, chunkEnd - chunk))) {
+                continue;
+            }
+            for (int i = chunk; i < chunkEnd; ++i) {
+                if (current[i] == edited[i]) {
+                    continue;
+                }
+                if (start != -1 && i - end > RANGE_GAP) {
+                    ranges.add(range(current, edited, start, end));
+                    start = -1;
+                }
+                if (start == -1) {
+                    start = i;
+                }
+                end = i + 1;
+            }
+        }
+        if (start != -1) {
+            ranges.add(range(current, edited, start, end));
+        }
+    }
+
+    private static Range range(byte[] current, byte[] edited, int start, int end) {
+        byte[] before = new byte[end - start];
+        byte[] after = new byte[end - start];
+        System.arraycopy(current, start, before, 0, before.length);
+        System.arraycopy(edited, start, after, 0, after.length);
+        return new Range(start, before, after);
+    }
+}
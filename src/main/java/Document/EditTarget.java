@@ -0,0 +1,8 @@
+package Document;
+
+/**
+ * What an edit changes. Each target has its own undo and redo history.
+ */
+public enum EditTarget {
+    ROM, SAV
+}
@@ -1,8 +1,13 @@
 package Document;
 
+import utils.AtomicFileWriter;
+import utils.ContentHash;
 import utils.RomUtilities;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.*;
 import javax.swing.*;
 
@@ -21,42 +26,118 @@ public class LSDSavFile implements Cloneable {
     final int activeFileSlot = 0x8140;
     final char emptySlotValue = (char) 0xff;
 
+    static final int mirrorSize = 0x10000;
+
     boolean is64kb = false;
     boolean is64kbHasBeenSet = false;
 
+    // 128 kB of SRAM. Saves loaded from 64 kB SRAM, where the upper 64 kB
+    // mirrors the lower, only keep the lower 64 kB; see loadFromSav.
+    // Clones share workRam until either of them writes to it; all writes
+    // must be preceded by a call to touch().
     byte[] workRam;
+    private boolean workRamShared;
+
+    // Contents of workRam when it was last shared by clone(), and the
+    // 512-byte pages written since. Lets equals() skip untouched pages.
+    private byte[] baseWorkRam;
+    private long[] dirtyPages = new long[savFileSize / blockSize / 64];
+
+    // Reusable decoding state, see unpackSong.
+    private SongDecoder songDecoder;
+    private byte[] scratchSong;
 
     public LSDSavFile() {
         workRam = new byte[savFileSize];
     }
 
+    /**
+     * Returns a copy that shares SRAM contents with this save until either is modified.
+     */
     public LSDSavFile clone() throws CloneNotSupportedException {
         LSDSavFile copy = (LSDSavFile)super.clone();
         copy.is64kb = is64kb;
         copy.is64kbHasBeenSet = is64kbHasBeenSet;
-        copy.workRam = workRam.clone();
+        workRamShared = copy.workRamShared = true;
+        baseWorkRam = copy.baseWorkRam = workRam;
+        Arrays.fill(dirtyPages, 0);
+        copy.dirtyPages = new long[dirtyPages.length];
+        copy.songDecoder = null;
+        copy.scratchSong = null;
         return copy;
     }
 
-    public boolean equals(LSDSavFile rhs) {
-        return Arrays.equals(workRam, rhs.workRam);
+    /**
+     * Prepares for writing length bytes at offset of workRam.
+     */
+    private void touch(int offset, int length) {
+        if (workRamShared) {
+            workRam = workRam.clone();
+            workRamShared = false;
+        }
+        for (int page = offset / blockSize; page <= (offset + length - 1) / blockSize; ++page) {
+            dirtyPages[page >> 6] |= 1L << (page & 63);
+        }
     }
 
-    private boolean isSixtyFourKbRam() {
-        if (is64kbHasBeenSet) return is64kb;
+    /**
+     * Returns the pages of blockSize bytes that may differ from base, or null
+     * if this save is not a clone of base made since base was last written.
+     */
+    BitSet changedPagesSince(LSDSavFile base) {
+        if (baseWorkRam == null || baseWorkRam != base.workRam) {
+            return null;
+        }
+        return BitSet.valueOf(dirtyPages);
+    }
 
-        for (int i = 0; i < 0x10000; ++i) {
-            if (workRam[i] != workRam[0x10000 + i]) {
-                is64kb = false;
-                is64kbHasBeenSet = true;
+    /**
+     * Overwrites part of workRam, e.g. to undo an edit.
+     */
+    void patchWorkRam(int offset, byte[] data) {
+        touch(offset, data.length);
+        System.arraycopy(data, 0, workRam, offset, data.length);
+    }
+
+    public boolean equals(LSDSavFile rhs) {
+        if (isSixtyFourKbRam() != rhs.isSixtyFourKbRam()) {
+            return false;
+        }
+        if (workRam == rhs.workRam) {
+            return true;
+        }
+        // The upper half of 64 kB saves is not used until it is mirrored on save.
+        int length = isSixtyFourKbRam() ? mirrorSize : savFileSize;
+        if (baseWorkRam == null || baseWorkRam != rhs.baseWorkRam) {
+            return ByteBuffer.wrap(workRam, 0, length).equals(ByteBuffer.wrap(rhs.workRam, 0, length));
+        }
+        // Both saves equal the same base outside of their dirty pages.
+        for (int page = 0; page < length / blockSize; ++page) {
+            long mask = 1L << (page & 63);
+            if (((dirtyPages[page >> 6] | rhs.dirtyPages[page >> 6]) & mask) == 0) {
+                continue;
+            }
+            int offset = page * blockSize;
+            if (!ByteBuffer.wrap(workRam, offset, blockSize).equals(ByteBuffer.wrap(rhs.workRam, offset, blockSize))) {
                 return false;
             }
         }
-        is64kb = true;
-        is64kbHasBeenSet = true;
         return true;
     }
 
+    private static boolean isMirrored(byte[] sram) {
+        // ByteBuffer.equals is vectorized on newer JVMs.
+        return ByteBuffer.wrap(sram, 0, mirrorSize).equals(ByteBuffer.wrap(sram, mirrorSize, mirrorSize));
+    }
+
+    boolean isSixtyFourKbRam() {
+        if (!is64kbHasBeenSet) {
+            is64kb = workRam.length == mirrorSize || isMirrored(workRam);
+            is64kbHasBeenSet = true;
+        }
+        return is64kb;
+    }
+
     public int totalBlockCount() {
         // FAT takes one block.
         return isSixtyFourKbRam() ? 0xbf - 0x80 : 0xbf;
@@ -65,13 +146,16 @@ public class LSDSavFile implements Cloneable {
     public void saveAs(String filePath) throws IOException {
         try (FileOutputStream fileOutputStream = new FileOutputStream(filePath)) {
             if (isSixtyFourKbRam()) {
-                System.arraycopy(workRam, 0, workRam, 65536, 0x10000);
+                fileOutputStream.write(workRam, 0, mirrorSize);
+                fileOutputStream.write(workRam, 0, mirrorSize);
+            } else {
+                fileOutputStream.write(workRam);
             }
-            fileOutputStream.write(workRam);
         }
     }
 
     public void clearSong(int index) {
+        touch(blockAllocTableStartPtr, totalBlockCount());
         int ramPtr = blockAllocTableStartPtr;
         int block = 0;
 
@@ -106,10 +190,12 @@ public class LSDSavFile implements Cloneable {
     }
 
     private void clearFileName(int index) {
+        touch(fileNameStartPtr + fileNameLength * index, 1);
         workRam[fileNameStartPtr + fileNameLength * index] = (byte) 0;
     }
 
     private void clearFileVersion(int index) {
+        touch(fileVersionStartPtr + index, 1);
         workRam[fileVersionStartPtr + index] = (byte) 0;
     }
 
@@ -172,11 +258,16 @@ public class LSDSavFile implements Cloneable {
     }
 
     public void loadFromSav(String filePath) throws IOException {
-        RandomAccessFile savFile = new RandomAccessFile(filePath, "r");
-        savFile.readFully(workRam);
-        savFile.close();
+        byte[] sram = new byte[savFileSize];
+        try (RandomAccessFile savFile = new RandomAccessFile(filePath, "r")) {
+            savFile.readFully(sram);
+        }
 
-        is64kbHasBeenSet = false;
+        is64kb = isMirrored(sram);
+        is64kbHasBeenSet = true;
+        workRam = is64kb ? Arrays.copyOf(sram, mirrorSize) : sram;
+        workRamShared = false;
+        baseWorkRam = null;
     }
 
     public void populateSongList(JList<String> songList) {
@@ -242,29 +333,8 @@ public class LSDSavFile implements Cloneable {
     }
 
     public void exportSongToFile(int songId, String filePath, byte[] romImage) {
-        assert (songId >= 0 && songId < 0x20);
-
-        RandomAccessFile file;
         try {
-            file = new RandomAccessFile(filePath, "rw");
-
-            int fileNamePtr = fileNameStartPtr + songId * fileNameLength;
-            file.writeByte(workRam[fileNamePtr++]);
-            file.writeByte(workRam[fileNamePtr++]);
-            file.writeByte(workRam[fileNamePtr++]);
-            file.writeByte(workRam[fileNamePtr++]);
-            file.writeByte(workRam[fileNamePtr++]);
-            file.writeByte(workRam[fileNamePtr++]);
-            file.writeByte(workRam[fileNamePtr++]);
-            file.writeByte(workRam[fileNamePtr]);
-
-            int fileVersionPtr = fileVersionStartPtr + songId;
-            file.writeByte(workRam[fileVersionPtr]);
-
-            writeSongBlocks(songId, file);
-            writeKits(romImage, songId, file);
-
-            file.close();
+            exportSong(songId, new File(filePath), romImage);
         } catch (IOException e) {
             JOptionPane.showMessageDialog(null,
                     e.getMessage(),
@@ -273,30 +343,67 @@ public class LSDSavFile implements Cloneable {
         }
     }
 
-    private void writeKits(byte[] romImage, int songId, RandomAccessFile file) throws IOException {
-        TreeSet<Integer> kitsToWrite = usedKits(songId);
-        while (true) {
-            Integer kit = kitsToWrite.pollFirst();
-            if (kit == null) {
-                break;
-            }
-            // because legacy, kits are in banks 8-26, 32-63.
-            kit += 8;
-            if (kit > 26) {
-                kit += 5;
+    /**
+     * Writes a song with its kits to an .lsdprj file in one gathered write.
+     * The file is replaced atomically. If romImage is null, kits are left out.
+     */
+    public void exportSong(int songId, File file, byte[] romImage) throws IOException {
+        assert (songId >= 0 && songId < 0x20);
+
+        ArrayList<ByteBuffer> buffers = new ArrayList<>();
+        buffers.add(ByteBuffer.wrap(songHeaderAndBlocks(songId)));
+        if (romImage != null) {
+            for (int kit : usedKits(songId)) {
+                buffers.add(ByteBuffer.wrap(romImage, kitBankOffset(kit), 0x4000));
             }
-            int kitOffset = kit * 0x4000;
-            for (int i = 0; i < 0x4000; ++i) {
-                file.writeByte(romImage[kitOffset + i]);
+        }
+        AtomicFileWriter.write(file.toPath(), buffers.toArray(new ByteBuffer[0]));
+    }
+
+    /**
+     * Returns file name, version and compressed blocks of a song, as stored in .lsdprj files.
+     */
+    byte[] songHeaderAndBlocks(int songId) {
+        int headerSize = fileNameLength + 1;
+        byte[] data = new byte[headerSize + getBlocksUsed(songId) * blockSize];
+        System.arraycopy(workRam, fileNameStartPtr + songId * fileNameLength, data, 0, fileNameLength);
+        data[fileNameLength] = workRam[fileVersionStartPtr + songId];
+
+        int dataPtr = headerSize;
+        for (int blockId = 0; blockId < totalBlockCount(); ++blockId) {
+            if (songId == workRam[blockAllocTableStartPtr + blockId]) {
+                System.arraycopy(workRam, blockStartPtr + blockId * blockSize, data, dataPtr, blockSize);
+                dataPtr += blockSize;
             }
         }
+        return data;
     }
 
+    static int kitBankOffset(int kit) {
+        // because legacy, kits are in banks 8-26, 32-63.
+        kit += 8;
+        if (kit > 26) {
+            kit += 5;
+        }
+        return kit * 0x4000;
+    }
+
+    /**
+     * Returns the kits used by a song, or none if the song is corrupted.
+     */
     TreeSet<Integer> usedKits(int songId) {
-        byte[] unpackedSong = unpackSong(songId);
-        assert (unpackedSong != null);
-        assert (unpackedSong.length == 0x8000);
+        byte[] unpackedSong = scratchSong();
+        if (unpackSong(songId, unpackedSong) != null) {
+            // The scratch buffer is only partly decoded.
+            return new TreeSet<>();
+        }
+        return kitsOf(unpackedSong);
+    }
 
+    /**
+     * Returns the kits used by the instruments of a decoded song.
+     */
+    static TreeSet<Integer> kitsOf(byte[] unpackedSong) {
         TreeSet<Integer> kits = new TreeSet<>();
         for (int instr = 0; instr < 0x40; ++instr) {
             int instrPtr = 0x3080 + instr * 0x10;
@@ -309,143 +416,209 @@ public class LSDSavFile implements Cloneable {
         return kits;
     }
 
-    void writeSongBlocks(int songId, RandomAccessFile file) throws IOException {
-        int blockId = 0;
-        int blockAllocTablePtr = blockAllocTableStartPtr;
+    /**
+     * Decodes a song. Returns 32 kB with decoded song data, or null on failure.
+     */
+    byte[] unpackSong(int songId) {
+        byte[] dstBuffer = new byte[SongDecoder.SONG_SIZE];
+        return unpackSong(songId, dstBuffer) == null ? dstBuffer : null;
+    }
 
-        while (blockId < totalBlockCount()) {
+    /**
+     * Decodes a song into dstBuffer, which must hold at least 32 kB.
+     * Returns null on success, otherwise a description of the failure.
+     */
+    public SongDecoder.DecodeError unpackSong(int songId, byte[] dstBuffer) {
+        int blockId = firstBlockOfSong(songId);
+        if (blockId == -1) {
+            return new SongDecoder.DecodeError(-1, -1, 0, SongDecoder.Reason.NO_BLOCKS);
+        }
+        if (songDecoder == null) {
+            songDecoder = new SongDecoder();
+        }
+        // Block switch tokens skip the FAT block, hence + 1.
+        return songDecoder.decode(workRam, blockId + 1, totalBlockCount(), dstBuffer);
+    }
+
+    private int firstBlockOfSong(int songId) {
+        int blockAllocTablePtr = blockAllocTableStartPtr;
+        for (int blockId = 0; blockId < totalBlockCount(); ++blockId) {
             if (songId == workRam[blockAllocTablePtr++]) {
-                int blockPtr = blockStartPtr + blockId * blockSize;
-                for (int byteIndex = 0; byteIndex < blockSize; byteIndex++) {
-                    file.writeByte(workRam[blockPtr++]);
-                }
+                return blockId;
             }
-            blockId++;
         }
+        return -1;
     }
 
     /**
-     * Decodes a song. Returns 32 kB with decoded song data, or null on failure.
+     * Returns null if the song decodes cleanly, otherwise a description of the failure.
      */
-    private byte[] unpackSong(int songId) {
-        byte[] dstBuffer = new byte[0x8000];
-        int dstPos = 0;
+    public SongDecoder.DecodeError validate(int songId) {
+        return unpackSong(songId, scratchSong());
+    }
 
-        int blockId = 0;
-        int blockAllocTablePtr = blockAllocTableStartPtr;
+    /**
+     * Returns a SHA-256 hex digest of file name, version and decoded contents
+     * of a song, or null if the song does not decode. Songs with equal hashes
+     * are identical even if their blocks are laid out differently.
+     */
+    public String songHash(int songId) {
+        byte[] song = scratchSong();
+        if (unpackSong(songId, song) != null) {
+            return null;
+        }
+        MessageDigest digest = ContentHash.newDigest();
+        digest.update(getFileName(songId).getBytes(StandardCharsets.US_ASCII));
+        digest.update((byte) 0);
+        digest.update(workRam[fileVersionStartPtr + songId]);
+        digest.update(song);
+        return ContentHash.hex(digest.digest());
+    }
 
-        while (blockId < totalBlockCount()) {
-            if (songId == workRam[blockAllocTablePtr++]) {
-                break;
+    public boolean isValid(int songId) {
+        return validate(songId) == null;
+    }
+
+    private byte[] scratchSong() {
+        if (scratchSong == null) {
+            scratchSong = new byte[SongDecoder.SONG_SIZE];
+        }
+        return scratchSong;
+    }
+
+    /**
+     * Compresses the given 32 kB song and stores it in the blocks of songId,
+     * replacing any blocks the song had before. Blocks are taken in ascending
+     * order from the song's old blocks and the free blocks. On failure, the
+     * save is left untouched.
+     */
+    public void writeSong(int songId, byte[] song) throws AddSongException {
+        int[] blockIds = new int[totalBlockCount()];
+        int candidateCount = 0;
+        for (int blockId = 0; blockId < totalBlockCount(); ++blockId) {
+            int tableValue = workRam[blockAllocTableStartPtr + blockId];
+            if (tableValue == songId || tableValue < 0 || tableValue > 0x1f) {
+                // Block switch tokens skip the FAT block, hence + 1.
+                blockIds[candidateCount++] = blockId + 1;
             }
-            blockId++;
         }
+        blockIds = Arrays.copyOf(blockIds, candidateCount);
 
-        int srcPtr = blockStartPtr + blockSize * blockId;
+        byte[] blocks = new byte[candidateCount * blockSize];
+        int usedBlocks = SongEncoder.encode(song, blockIds, blocks);
+        if (usedBlocks == -1) {
+            throw new AddSongException("Out of blocks!");
+        }
 
-        try {
-            while (true) {
-                switch (workRam[srcPtr]) {
-                    case (byte) 0xc0:
-                        srcPtr++;
-                        if (workRam[srcPtr] == (byte) 0xc0) {
-                            srcPtr++;
-                            dstBuffer[dstPos++] = (byte) 0xc0;
-                        } else {
-                            // rle
-                            byte b = workRam[srcPtr++];
-                            byte count = workRam[srcPtr++];
-                            while (count-- != 0) {
-                                dstBuffer[dstPos++] = b;
-                            }
-                        }
-                        break;
+        freeBlocks(songId);
+        storeBlocks(songId, blockIds, blocks, usedBlocks);
+    }
 
-                    case (byte) 0xe0:
-                        byte count;
-                        srcPtr++;
-                        switch (workRam[srcPtr]) {
-                            case (byte) 0xe0: // e0
-                                srcPtr++;
-                                dstBuffer[dstPos++] = (byte) 0xe0;
-                                break;
+    private void freeBlocks(int songId) {
+        touch(blockAllocTableStartPtr, totalBlockCount());
+        for (int blockId = 0; blockId < totalBlockCount(); ++blockId) {
+            if (workRam[blockAllocTableStartPtr + blockId] == songId) {
+                workRam[blockAllocTableStartPtr + blockId] = (byte) emptySlotValue;
+            }
+        }
+    }
 
-                            case (byte) 0xff: // done!
-                                return dstPos == 0x8000 ? dstBuffer : null;
+    private void storeBlocks(int songId, int[] blockIds, byte[] blocks, int usedBlocks) {
+        for (int i = 0; i < usedBlocks; ++i) {
+            int blockId = blockIds[i] - 1;
+            touch(blockAllocTableStartPtr + blockId, 1);
+            touch(blockStartPtr + blockId * blockSize, blockSize);
+            workRam[blockAllocTableStartPtr + blockId] = (byte) songId;
+            System.arraycopy(blocks, i * blockSize, workRam, blockStartPtr + blockId * blockSize, blockSize);
+        }
+    }
 
-                            case (byte) 0xf0: //wave
-                                srcPtr++;
-                                count = workRam[srcPtr++];
-                                while (count-- != 0) {
-                                    dstBuffer[dstPos++] = (byte) 0x8e;
-                                    dstBuffer[dstPos++] = (byte) 0xcd;
-                                    dstBuffer[dstPos++] = (byte) 0xcc;
-                                    dstBuffer[dstPos++] = (byte) 0xbb;
-                                    dstBuffer[dstPos++] = (byte) 0xaa;
-                                    dstBuffer[dstPos++] = (byte) 0xa9;
-                                    dstBuffer[dstPos++] = (byte) 0x99;
-                                    dstBuffer[dstPos++] = (byte) 0x88;
-                                    dstBuffer[dstPos++] = (byte) 0x87;
-                                    dstBuffer[dstPos++] = (byte) 0x76;
-                                    dstBuffer[dstPos++] = (byte) 0x66;
-                                    dstBuffer[dstPos++] = (byte) 0x55;
-                                    dstBuffer[dstPos++] = (byte) 0x54;
-                                    dstBuffer[dstPos++] = (byte) 0x43;
-                                    dstBuffer[dstPos++] = (byte) 0x32;
-                                    dstBuffer[dstPos++] = (byte) 0x31;
-                                }
-                                break;
+    /**
+     * Recompresses all valid songs and lays them out in consecutive blocks,
+     * in slot order. Blocks of corrupted songs are left where they are.
+     * On failure, the save is left untouched.
+     *
+     * @return the number of blocks reclaimed
+     */
+    public int compact() throws AddSongException {
+        int usedBefore = usedBlockCount();
 
-                            case (byte) 0xf1: //instr
-                                srcPtr++;
-                                count = workRam[srcPtr++];
-                                while (count-- != 0) {
-                                    dstBuffer[dstPos++] = (byte) 0xa8;
-                                    dstBuffer[dstPos++] = 0;
-                                    dstBuffer[dstPos++] = 0;
-                                    dstBuffer[dstPos++] = (byte) 0xff;
-                                    dstBuffer[dstPos++] = 0;
-                                    dstBuffer[dstPos++] = 0;
-                                    dstBuffer[dstPos++] = 3;
-                                    dstBuffer[dstPos++] = 0;
-                                    dstBuffer[dstPos++] = 0;
-                                    dstBuffer[dstPos++] = (byte) 0xd0;
-                                    dstBuffer[dstPos++] = 0;
-                                    dstBuffer[dstPos++] = 0;
-                                    dstBuffer[dstPos++] = 0;
-                                    dstBuffer[dstPos++] = (byte) 0xf3;
-                                    dstBuffer[dstPos++] = 0;
-                                    dstBuffer[dstPos++] = 0;
-                                }
-                                break;
+        byte[][] songs = new byte[songCount][];
+        for (int songId = 0; songId < songCount; ++songId) {
+            if (getBlocksUsed(songId) == 0) {
+                continue;
+            }
+            byte[] song = new byte[SongDecoder.SONG_SIZE];
+            if (unpackSong(songId, song) == null) {
+                songs[songId] = song;
+            }
+        }
 
-                            default: // block switch
-                                int block = workRam[srcPtr] & 0xff;
-                                srcPtr = 0x8000 + blockSize * block;
-                                break;
-                        }
-                        break;
+        byte[] originalWorkRam = workRam.clone();
+        for (int songId = 0; songId < songCount; ++songId) {
+            if (songs[songId] != null) {
+                freeBlocks(songId);
+            }
+        }
 
-                    default:
-                        dstBuffer[dstPos++] = workRam[srcPtr++];
-                }
+        int[] blockIds = new int[totalBlockCount()];
+        int freeCount = 0;
+        for (int blockId = 0; blockId < totalBlockCount(); ++blockId) {
+            int tableValue = workRam[blockAllocTableStartPtr + blockId];
+            if (tableValue < 0 || tableValue > 0x1f) {
+                // Block switch tokens skip the FAT block, hence + 1.
+                blockIds[freeCount++] = blockId + 1;
             }
-        } catch (ArrayIndexOutOfBoundsException e) {
-            return null;
         }
+
+        byte[] blocks = new byte[freeCount * blockSize];
+        int nextFree = 0;
+        for (int songId = 0; songId < songCount; ++songId) {
+            if (songs[songId] == null) {
+                continue;
+            }
+            int[] songBlockIds = Arrays.copyOfRange(blockIds, nextFree, freeCount);
+            int usedBlocks = SongEncoder.encode(songs[songId], songBlockIds, blocks);
+            if (usedBlocks == -1) {
+                workRam = originalWorkRam;
+                workRamShared = false;
+                throw new AddSongException("Out of blocks!");
+            }
+            storeBlocks(songId, songBlockIds, blocks, usedBlocks);
+            nextFree += usedBlocks;
+        }
+        return usedBefore - usedBlockCount();
     }
 
-    public boolean isValid(int songId) {
-        return unpackSong(songId) != null;
+    /**
+     * Decodes a song and compresses it again, which may free blocks for
+     * songs that were not optimally packed.
+     */
+    public void recompressSong(int songId) throws AddSongException {
+        byte[] song = new byte[SongDecoder.SONG_SIZE];
+        SongDecoder.DecodeError error = unpackSong(songId, song);
+        if (error != null) {
+            throw new AddSongException("Song corrupted! " + error);
+        }
+        writeSong(songId, song);
     }
 
-    static class AddSongException extends Exception {
+    public static class AddSongException extends Exception {
         AddSongException(String message) {
             super(message);
         }
     }
 
     public void addSongFromFile(String filePath, byte[] romImage) throws Exception {
+        addSongFromFile(filePath, romImage, null);
+    }
+
+    /**
+     * Adds a song, reusing kits found through kitIndex. When importing several
+     * songs, pass the same index for all of them so that the ROM is only hashed once.
+     * If kitIndex is null, a new index is built if the song has kits.
+     */
+    public void addSongFromFile(String filePath, byte[] romImage, RomKitIndex kitIndex) throws Exception {
         final byte songId = getNewSongId();
         if (songId == -1) {
             throw new AddSongException("Out of song slots!");
@@ -454,7 +627,7 @@ public class LSDSavFile implements Cloneable {
         try (FileInputStream fileInputStream = new FileInputStream(filePath)) {
             writeFileNameAndVersion(fileInputStream, songId);
             copySongToWorkRam(fileInputStream, songId);
-            patchKits(fileInputStream, songId, romImage);
+            patchKits(fileInputStream, songId, romImage, kitIndex);
         } catch (Exception e) {
             clearSong(songId);
             throw e;
@@ -468,6 +641,8 @@ public class LSDSavFile implements Cloneable {
         byte fileVersion = (byte)fileInputStream.read();
 
         int fileNamePtr = fileNameStartPtr + songId * fileNameLength;
+        touch(fileNamePtr, fileNameLength);
+        touch(fileVersionStartPtr + songId, 1);
         for (int i = 0; i < 8; ++i) {
             workRam[fileNamePtr++] = fileName[i];
         }
@@ -478,7 +653,8 @@ public class LSDSavFile implements Cloneable {
 
     private void patchKits(FileInputStream fileInputStream,
                            byte songId,
-                           byte[] romImage) throws IOException, AddSongException {
+                           byte[] romImage,
+                           RomKitIndex kitIndex) throws IOException, AddSongException {
         ArrayList<byte[]> lsdSngKits = new ArrayList<>();
         while (true) {
             byte[] kit = new byte[0x4000];
@@ -492,24 +668,19 @@ public class LSDSavFile implements Cloneable {
             return;
         }
 
-        // Check if kits are already in ROM. If so, they should be reused.
+        if (kitIndex == null) {
+            kitIndex = new RomKitIndex(romImage);
+        }
+
+        // Kits that are already in ROM should be reused.
         int[] newKits = new int[lsdSngKits.size()];
-        for (int romKit = 0; romKit < romImage.length / 0x4000; ++romKit) {
-            for (int kit = 0; kit < lsdSngKits.size(); ++kit) {
-                boolean kitsAreEqual = true;
-                for (int i = 0; i < 0x4000; ++i) {
-                    if (lsdSngKits.get(kit)[i] != romImage[romKit * 0x4000 + i]) {
-                        kitsAreEqual = false;
-                        break;
-                    }
-                }
-                if (kitsAreEqual) {
-                    newKits[kit] = romKit;
-                }
+        for (int kit = 0; kit < lsdSngKits.size(); ++kit) {
+            newKits[kit] = kitIndex.find(lsdSngKits.get(kit));
+            if (newKits[kit] == -1) {
+                newKits[kit] = addKit(romImage, lsdSngKits.get(kit), kitIndex);
             }
         }
 
-        addMissingKits(romImage, lsdSngKits, newKits);
         adjustInstruments(songId, newKits);
     }
 
@@ -626,24 +797,21 @@ public class LSDSavFile implements Cloneable {
         for (Integer instrumentKitLocation : instrumentKitLocations) {
             int value = workRam[instrumentKitLocation];
             int newValue = (value & ~0x3f) | kitMap.get(value & 0x3f);
+            touch(instrumentKitLocation, 1);
             workRam[instrumentKitLocation] = (byte)newValue;
         }
     }
 
-    private void addMissingKits(byte[] romImage, ArrayList<byte[]> lsdSngKits, int[] newKits) throws AddSongException {
-        for (int kit = 0; kit < newKits.length; ++kit) {
-            if (newKits[kit] != 0) {
-                continue;
-            }
-            int newKit = findFreeKit(romImage);
-            if (newKit == -1) {
-                throw new AddSongException("Not enough space for kits! Remove some and try again!");
-            }
-            newKits[kit] = newKit;
-            // Copy kit.
-            // TODO: this might be a good place to swizzle old kits for improved sound quality. See sbc.java
-            System.arraycopy(lsdSngKits.get(kit), 0, romImage, newKit * 0x4000, 0x4000);
+    private int addKit(byte[] romImage, byte[] kit, RomKitIndex kitIndex) throws AddSongException {
+        int newKit = findFreeKit(romImage);
+        if (newKit == -1) {
+            throw new AddSongException("Not enough space for kits! Remove some and try again!");
         }
+        // Copy kit.
+        // TODO: this might be a good place to swizzle old kits for improved sound quality. See sbc.java
+        System.arraycopy(kit, 0, romImage, newKit * 0x4000, 0x4000);
+        kitIndex.update(newKit);
+        return newKit;
     }
 
     private int findFreeKit(byte[] romImage) {
@@ -664,6 +832,8 @@ public class LSDSavFile implements Cloneable {
                 throw new AddSongException("Out of blocks!");
             }
 
+            touch(blockAllocTableStartPtr + blockId, 1);
+            touch(blockStartPtr + blockId * blockSize, blockSize);
             if (0 != nextBlockIdPtr) {
                 //add one to compensate for unused FAT block
                 workRam[nextBlockIdPtr] = (byte) (blockId + 1);
@@ -681,6 +851,7 @@ public class LSDSavFile implements Cloneable {
     }
 
     private void clearActiveFileSlot() {
+        touch(activeFileSlot, 1);
         workRam[activeFileSlot] = (byte) 0xff;
     }
 
@@ -691,7 +862,7 @@ public class LSDSavFile implements Cloneable {
     /* Returns address of next block id pointer (E0 XX), if one exists in block.
      * If there is none, return -1.
      */
-    private int getNextBlockIdPtr(int block) throws AddSongException {
+    int getNextBlockIdPtr(int block) throws AddSongException {
         int ramPtr = blockStartPtr + blockSize * block;
         int byteCounter = 0;
 
@@ -0,0 +1,73 @@
+package Document;
+
+import utils.RomUtilities;
+import utils.XxHash64;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Hash index over the 16 kB banks of a ROM image, used to find kits that are
+ * already present without comparing against every bank.
+ * <p>
+ * Build one index per import batch and call {@link #update(int)} whenever a
+ * bank of the ROM image is changed.
+ */
+public class RomKitIndex {
+    private final byte[] romImage;
+    private final long[] bankHashes;
+    private final HashMap<Long, List<Integer>> banksByHash = new HashMap<>();
+
+    public RomKitIndex(byte[] romImage) {
+        this.romImage = romImage;
+        bankHashes = new long[romImage.length / RomUtilities.BANK_SIZE];
+        for (int bank = 0; bank < bankHashes.length; ++bank) {
+            bankHashes[bank] = hashBank(bank);
+            banksByHash.computeIfAbsent(bankHashes[bank], k -> new ArrayList<>(1)).add(bank);
+        }
+    }
+
+    /**
+     * Returns a ROM bank with the same contents as kit, or -1 if there is none.
+     */
+    public int find(byte[] kit) {
+        List<Integer> banks = banksByHash.get(XxHash64.hash(kit, 0, RomUtilities.BANK_SIZE));
+        if (banks == null) {
+            return -1;
+        }
+        for (int bank : banks) {
+            if (bankEquals(bank, kit)) {
+                return bank;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Re-hashes a bank after its contents changed.
+     */
+    public void update(int bank) {
+        List<Integer> banks = banksByHash.get(bankHashes[bank]);
+        banks.remove(Integer.valueOf(bank));
+        if (banks.isEmpty()) {
+            banksByHash.remove(bankHashes[bank]);
+        }
+        bankHashes[bank] = hashBank(bank);
+        banksByHash.computeIfAbsent(bankHashes[bank], k -> new ArrayList<>(1)).add(bank);
+    }
+
+    private long hashBank(int bank) {
+        return XxHash64.hash(romImage, bank * RomUtilities.BANK_SIZE, RomUtilities.BANK_SIZE);
+    }
+
+    private boolean bankEquals(int bank, byte[] kit) {
+        int offset = bank * RomUtilities.BANK_SIZE;
+        for (int i = 0; i < RomUtilities.BANK_SIZE; ++i) {
+            if (kit[i] != romImage[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
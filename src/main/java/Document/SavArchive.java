@@ -0,0 +1,340 @@
+package Document;
+
+import utils.AtomicFileWriter;
+import utils.ContentHash;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Content-addressed store for .sav snapshots.
+ * <p>
+ * Each snapshot is a small text manifest that refers to objects by their
+ * SHA-256 hash: the working song in bank 0, the file allocation block, the
+ * compressed block chain of every song, the free blocks, and optionally the
+ * ROM kits each song uses. Objects are stored deflated under objects/ and are
+ * only written once, so songs that do not change between snapshots cost
+ * nothing. Any snapshot can be restored byte for byte.
+ * <p>
+ * Manifest lines:
+ * <pre>
+ * lsdpatch-archive 1
+ * mirror 0|1          upper 64 kB mirrors the lower 64 kB
+ * work &lt;hash&gt;        bank 0
+ * fat &lt;hash&gt;         file names, versions and block allocation table
+ * song &lt;slot&gt; &lt;hash&gt; &lt;blocks&gt;
+ * kit &lt;number&gt; &lt;hash&gt;   ROM kit bank used by a song
+ * free &lt;hash&gt; &lt;blocks&gt;
+ * </pre>
+ * Block lists are comma separated ranges, e.g. "0-3,7".
+ */
+public class SavArchive {
+    private static final String MAGIC = "lsdpatch-archive 1";
+    private static final String MANIFEST_EXTENSION = ".manifest";
+
+    private final File objectDirectory;
+    private final File snapshotDirectory;
+
+    public SavArchive(File directory) {
+        objectDirectory = new File(directory, "objects");
+        snapshotDirectory = new File(directory, "snapshots");
+    }
+
+    /**
+     * Stores a snapshot under the given name. Storing the same contents
+     * again under a name is allowed, but a different snapshot is never
+     * replaced.
+     *
+     * @param romImage if not null, the kits used by each song are stored too
+     * @return the number of new objects written
+     * @throws IOException also if a different snapshot already has the name
+     */
+    public int store(String snapshotName, LSDSavFile savFile, byte[] romImage) throws IOException {
+        if (!snapshotDirectory.isDirectory() && !snapshotDirectory.mkdirs()) {
+            throw new IOException("Could not create " + snapshotDirectory);
+        }
+        byte[] workRam = savFile.workRam;
+        int[] newObjects = new int[1];
+        StringBuilder manifest = new StringBuilder();
+        manifest.append(MAGIC).append('\n');
+        manifest.append("mirror ").append(savFile.isSixtyFourKbRam() ? 1 : 0).append('\n');
+        manifest.append("work ").append(put(workRam, 0, savFile.fileNameStartPtr, newObjects)).append('\n');
+        manifest.append("fat ").append(put(workRam, savFile.fileNameStartPtr, savFile.blockSize, newObjects))
+                .append('\n');
+
+        Set<Integer> kits = new TreeSet<>();
+        List<List<Integer>> blocksBySlot = new ArrayList<>();
+        for (int slot = 0; slot <= savFile.songCount; ++slot) {
+            blocksBySlot.add(new ArrayList<>());
+        }
+        for (int block = 0; block < savFile.totalBlockCount(); ++block) {
+            int tableValue = workRam[savFile.blockAllocTableStartPtr + block];
+            boolean isFree = tableValue < 0 || tableValue >= savFile.songCount;
+            // The last list holds free blocks.
+            blocksBySlot.get(isFree ? savFile.songCount : tableValue).add(block);
+        }
+
+        for (int slot = 0; slot < savFile.songCount; ++slot) {
+            List<Integer> blocks = blocksBySlot.get(slot);
+            if (blocks.isEmpty()) {
+                continue;
+            }
+            manifest.append("song ").append(slot).append(' ')
+                    .append(put(gatherBlocks(savFile, blocks), newObjects)).append(' ')
+                    .append(formatBlocks(blocks)).append('\n');
+            if (romImage != null && savFile.isValid(slot)) {
+                kits.addAll(savFile.usedKits(slot));
+            }
+        }
+        for (int kit : kits) {
+            manifest.append("kit ").append(kit).append(' ')
+                    .append(put(romImage, LSDSavFile.kitBankOffset(kit), 0x4000, newObjects)).append('\n');
+        }
+        List<Integer> freeBlocks = blocksBySlot.get(savFile.songCount);
+        if (!freeBlocks.isEmpty()) {
+            manifest.append("free ").append(put(gatherBlocks(savFile, freeBlocks), newObjects)).append(' ')
+                    .append(formatBlocks(freeBlocks)).append('\n');
+        }
+
+        byte[] manifestBytes = manifest.toString().getBytes(StandardCharsets.US_ASCII);
+        File manifestFile = manifestFile(snapshotName);
+        if (manifestFile.exists()) {
+            if (!Arrays.equals(Files.readAllBytes(manifestFile.toPath()), manifestBytes)) {
+                throw new IOException("A different snapshot is already named " + snapshotName);
+            }
+            return newObjects[0];
+        }
+        AtomicFileWriter.write(manifestFile.toPath(), manifestBytes);
+        return newObjects[0];
+    }
+
+    /**
+     * Rebuilds the .sav contents of a snapshot.
+     */
+    public LSDSavFile restore(String snapshotName) throws IOException {
+        List<String> lines = Files.readAllLines(manifestFile(snapshotName).toPath(), StandardCharsets.US_ASCII);
+        if (lines.isEmpty() || !lines.get(0).equals(MAGIC)) {
+            throw new IOException(snapshotName + ": not an archive manifest");
+        }
+        LSDSavFile savFile = new LSDSavFile();
+        byte[] workRam = savFile.workRam;
+        boolean mirror = false;
+
+        for (String line : lines.subList(1, lines.size())) {
+            String[] fields = line.split(" ");
+            switch (fields[0]) {
+                case "mirror":
+                    mirror = fields[1].equals("1");
+                    break;
+                case "work":
+                    copy(get(fields[1]), workRam, 0, savFile.fileNameStartPtr);
+                    break;
+                case "fat":
+                    copy(get(fields[1]), workRam, savFile.fileNameStartPtr, savFile.blockSize);
+                    break;
+                case "song":
+                    scatterBlocks(savFile, get(fields[2]), parseBlocks(fields[3]));
+                    break;
+                case "free":
+                    scatterBlocks(savFile, get(fields[1]), parseBlocks(fields[2]));
+                    break;
+                case "kit":
+                    break;
+                default:
+                    throw new IOException(snapshotName + ": unknown manifest line: " + line);
+            }
+        }
+        if (mirror) {
+            System.arraycopy(workRam, 0, workRam, LSDSavFile.mirrorSize, LSDSavFile.mirrorSize);
+        }
+        return savFile;
+    }
+
+    /**
+     * Writes the kits stored with a snapshot back to their banks of a ROM,
+     * so that the songs of the snapshot play with the kits they were stored
+     * with. The ROM checksum is not updated.
+     *
+     * @return the number of kits written
+     */
+    public int restoreKits(String snapshotName, byte[] romImage) throws IOException {
+        int count = 0;
+        for (String line : Files.readAllLines(manifestFile(snapshotName).toPath(), StandardCharsets.US_ASCII)) {
+            String[] fields = line.split(" ");
+            if (fields[0].equals("kit")) {
+                copy(get(fields[2]), romImage, LSDSavFile.kitBankOffset(Integer.parseInt(fields[1])), 0x4000);
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Names snapshots after their .sav files. Files with the same name, such
+     * as lsdj.sav in several backup directories, are told apart by as many of
+     * their parent directory names as needed, e.g. "monday-lsdj".
+     *
+     * @return the snapshot name of each file, in the same order
+     */
+    public static List<String> snapshotNames(List<File> savFiles) {
+        List<Path> paths = new ArrayList<>();
+        for (File savFile : savFiles) {
+            paths.add(savFile.getAbsoluteFile().toPath().normalize());
+        }
+        int[] depths = new int[paths.size()];
+        List<String> names = new ArrayList<>();
+        boolean deepened = true;
+        while (deepened) {
+            names.clear();
+            Map<String, Set<Path>> pathsByName = new HashMap<>();
+            for (int i = 0; i < paths.size(); ++i) {
+                String name = snapshotName(paths.get(i), depths[i]);
+                names.add(name);
+                pathsByName.computeIfAbsent(name, k -> new HashSet<>()).add(paths.get(i));
+            }
+            deepened = false;
+            for (int i = 0; i < paths.size(); ++i) {
+                // The same file given twice keeps its name.
+                if (pathsByName.get(names.get(i)).size() > 1 && paths.get(i).getNameCount() > depths[i] + 1) {
+                    ++depths[i];
+                    deepened = true;
+                }
+            }
+        }
+        return names;
+    }
+
+    private static String snapshotName(Path path, int depth) {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        StringBuilder sb = new StringBuilder(dot == -1 ? name : name.substring(0, dot));
+        for (int level = 1; level <= depth; ++level) {
+            sb.insert(0, path.getName(path.getNameCount() - 1 - level) + "-");
+        }
+        return sb.toString();
+    }
+
+    public List<String> snapshots() {
+        List<String> names = new ArrayList<>();
+        String[] files = snapshotDirectory.list((dir, name) -> name.endsWith(MANIFEST_EXTENSION));
+        if (files != null) {
+            for (String file : files) {
+                names.add(file.substring(0, file.length() - MANIFEST_EXTENSION.length()));
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    private File manifestFile(String snapshotName) {
+        return new File(snapshotDirectory, snapshotName + MANIFEST_EXTENSION);
+    }
+
+    private File objectFile(String hash) {
+        return new File(new File(objectDirectory, hash.substring(0, 2)), hash.substring(2));
+    }
+
+    private String put(byte[] data, int[] newObjects) throws IOException {
+        return put(data, 0, data.length, newObjects);
+    }
+
+    private String put(byte[] data, int offset, int length, int[] newObjects) throws IOException {
+        String hash = ContentHash.of(data, offset, length);
+        File file = objectFile(hash);
+        if (file.exists()) {
+            return hash;
+        }
+        File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(compressed)) {
+            deflater.write(data, offset, length);
+        }
+        AtomicFileWriter.write(file.toPath(), compressed.toByteArray());
+        ++newObjects[0];
+        return hash;
+    }
+
+    private byte[] get(String hash) throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        try (InflaterInputStream inflater = new InflaterInputStream(new FileInputStream(objectFile(hash)))) {
+            byte[] buffer = new byte[0x4000];
+            int read;
+            while ((read = inflater.read(buffer)) != -1) {
+                data.write(buffer, 0, read);
+            }
+        }
+        byte[] bytes = data.toByteArray();
+        if (!ContentHash.of(bytes).equals(hash)) {
+            throw new IOException("Archive object " + hash + " is corrupted");
+        }
+        return bytes;
+    }
+
+    private static void copy(byte[] src, byte[] dst, int offset, int length) throws IOException {
+        if (src.length != length) {
+            throw new IOException("Archive object has wrong size");
+        }
+        System.arraycopy(src, 0, dst, offset, length);
+    }
+
+    private static byte[] gatherBlocks(LSDSavFile savFile, List<Integer> blocks) {
+        byte[] data = new byte[blocks.size() * savFile.blockSize];
+        for (int i = 0; i < blocks.size(); ++i) {
+            System.arraycopy(savFile.workRam, savFile.blockStartPtr + blocks.get(i) * savFile.blockSize,
+                    data, i * savFile.blockSize, savFile.blockSize);
+        }
+        return data;
+    }
+
+    private static void scatterBlocks(LSDSavFile savFile, byte[] data, List<Integer> blocks) throws IOException {
+        if (data.length != blocks.size() * savFile.blockSize) {
+            throw new IOException("Archive object has wrong size");
+        }
+        for (int i = 0; i < blocks.size(); ++i) {
+            System.arraycopy(data, i * savFile.blockSize,
+                    savFile.workRam, savFile.blockStartPtr + blocks.get(i) * savFile.blockSize, savFile.blockSize);
+        }
+    }
+
+    static String formatBlocks(List<Integer> blocks) {
+        StringBuilder sb = new StringBuilder();
+        int i = 0;
+        while (i < blocks.size()) {
+            int first = blocks.get(i);
+            int last = first;
+            while (i + 1 < blocks.size() && blocks.get(i + 1) == last + 1) {
+                last = blocks.get(++i);
+            }
+            if (sb.length() != 0) {
+                sb.append(',');
+            }
+            sb.append(first);
+            if (last != first) {
+                sb.append('-').append(last);
+            }
+            ++i;
+        }
+        return sb.toString();
+    }
+
+    static List<Integer> parseBlocks(String s) {
+        List<Integer> blocks = new ArrayList<>();
+        for (String range : s.split(",")) {
+            int dash = range.indexOf('-');
+            int first = Integer.parseInt(dash == -1 ? range : range.substring(0, dash));
+            int last = dash == -1 ? first : Integer.parseInt(range.substring(dash + 1));
+            for (int block = first; block <= last; ++block) {
+                blocks.add(block);
+            }
+        }
+        return blocks;
+    }
+}
@@ -0,0 +1,195 @@
+package Document;
+
+import utils.XxHash64;
+
+import java.util.*;
+
+/**
+ * Song level comparison of two saves.
+ * <p>
+ * Each save is first reduced to a summary of its song slots (name, version,
+ * blocks, a hash of the decoded song, or of the stored blocks if it is
+ * corrupted, its instruments and kits). Summaries are cheap to compare, so a
+ * backup history can be summarized once per file and then diffed pairwise.
+ */
+public class SavDiff {
+    static final int INSTRUMENT_TABLE_PTR = 0x3080;
+    static final int INSTRUMENT_COUNT = 0x40;
+    static final int INSTRUMENT_SIZE = 0x10;
+
+    /** Summary of one song slot. */
+    public static class SongState {
+        public final String name;
+        public final String version;
+        public final int blocks;
+        public final boolean valid;
+        final long hash;
+        final TreeSet<Integer> kits;
+        final byte[] instruments;
+
+        SongState(String name, String version, int blocks, boolean valid, long hash,
+                  TreeSet<Integer> kits, byte[] instruments) {
+            this.name = name;
+            this.version = version;
+            this.blocks = blocks;
+            this.valid = valid;
+            this.hash = hash;
+            this.kits = kits;
+            this.instruments = instruments;
+        }
+
+        boolean isEmpty() {
+            return blocks == 0;
+        }
+
+        boolean sameSong(SongState rhs) {
+            return valid == rhs.valid && hash == rhs.hash && blocks == rhs.blocks
+                    && name.equals(rhs.name) && version.equals(rhs.version);
+        }
+
+        @Override
+        public String toString() {
+            return name + "." + version;
+        }
+    }
+
+    public enum Kind {
+        ADDED, REMOVED, CHANGED
+    }
+
+    public static class SongChange {
+        public final int slot;
+        public final Kind kind;
+        public final SongState before;
+        public final SongState after;
+
+        SongChange(int slot, Kind kind, SongState before, SongState after) {
+            this.slot = slot;
+            this.kind = kind;
+            this.before = before;
+            this.after = after;
+        }
+
+        public int blockDelta() {
+            return after.blocks - before.blocks;
+        }
+
+        /** Instruments whose settings differ, only for changed valid songs. */
+        public List<Integer> changedInstruments() {
+            List<Integer> changed = new ArrayList<>();
+            if (kind != Kind.CHANGED || !before.valid || !after.valid) {
+                return changed;
+            }
+            for (int instr = 0; instr < INSTRUMENT_COUNT; ++instr) {
+                for (int i = instr * INSTRUMENT_SIZE; i < (instr + 1) * INSTRUMENT_SIZE; ++i) {
+                    if (before.instruments[i] != after.instruments[i]) {
+                        changed.add(instr);
+                        break;
+                    }
+                }
+            }
+            return changed;
+        }
+
+        public Set<Integer> addedKits() {
+            TreeSet<Integer> kits = new TreeSet<>(after.kits);
+            kits.removeAll(before.kits);
+            return kits;
+        }
+
+        public Set<Integer> removedKits() {
+            TreeSet<Integer> kits = new TreeSet<>(before.kits);
+            kits.removeAll(after.kits);
+            return kits;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(slot + 1).append(". ");
+            switch (kind) {
+                case ADDED:
+                    sb.append("added ").append(after).append(", ").append(after.blocks).append(" blocks");
+                    break;
+                case REMOVED:
+                    sb.append("removed ").append(before).append(", ").append(before.blocks).append(" blocks");
+                    break;
+                case CHANGED:
+                    sb.append("changed ").append(before);
+                    if (!before.toString().equals(after.toString())) {
+                        sb.append(" -> ").append(after);
+                    }
+                    sb.append(String.format(", blocks %d -> %d (%+d)", before.blocks, after.blocks, blockDelta()));
+                    if (before.valid != after.valid) {
+                        sb.append(after.valid ? ", no longer corrupted" : ", now corrupted");
+                    }
+                    List<Integer> instruments = changedInstruments();
+                    if (!instruments.isEmpty()) {
+                        sb.append(", instruments");
+                        for (int instr : instruments) {
+                            sb.append(String.format(" %02X", instr));
+                        }
+                    }
+                    for (int kit : addedKits()) {
+                        sb.append(String.format(", +kit %02X", kit));
+                    }
+                    for (int kit : removedKits()) {
+                        sb.append(String.format(", -kit %02X", kit));
+                    }
+                    break;
+            }
+            return sb.toString();
+        }
+    }
+
+    private SavDiff() {
+    }
+
+    /**
+     * Summarizes all song slots of a save. Empty slots have zero blocks.
+     */
+    public static SongState[] summarize(LSDSavFile savFile) {
+        SongState[] states = new SongState[savFile.songCount];
+        byte[] song = new byte[SongDecoder.SONG_SIZE];
+        for (int slot = 0; slot < states.length; ++slot) {
+            int blocks = savFile.getBlocksUsed(slot);
+            if (blocks == 0) {
+                states[slot] = new SongState("", "", 0, false, 0, new TreeSet<>(), null);
+                continue;
+            }
+            boolean valid = savFile.unpackSong(slot, song) == null;
+            states[slot] = new SongState(savFile.getFileName(slot), savFile.version(slot), blocks, valid,
+                    XxHash64.hash(valid ? song : savFile.songHeaderAndBlocks(slot)),
+                    valid ? LSDSavFile.kitsOf(song) : new TreeSet<>(),
+                    valid ? Arrays.copyOfRange(song, INSTRUMENT_TABLE_PTR,
+                            INSTRUMENT_TABLE_PTR + INSTRUMENT_COUNT * INSTRUMENT_SIZE) : null);
+        }
+        return states;
+    }
+
+    /**
+     * Returns the changed slots between two summaries, in slot order.
+     */
+    public static List<SongChange> compare(SongState[] before, SongState[] after) {
+        List<SongChange> changes = new ArrayList<>();
+        for (int slot = 0; slot < before.length; ++slot) {
+            SongState lhs = before[slot];
+            SongState rhs = after[slot];
+            if (lhs.isEmpty() && rhs.isEmpty()) {
+                continue;
+            }
+            if (lhs.isEmpty()) {
+                changes.add(new SongChange(slot, Kind.ADDED, lhs, rhs));
+            } else if (rhs.isEmpty()) {
+                changes.add(new SongChange(slot, Kind.REMOVED, lhs, rhs));
+            } else if (!lhs.sameSong(rhs)) {
+                changes.add(new SongChange(slot, Kind.CHANGED, lhs, rhs));
+            }
+        }
+        return changes;
+    }
+
+    public static List<SongChange> compare(LSDSavFile before, LSDSavFile after) {
+        return compare(summarize(before), summarize(after));
+    }
+}
@@ -0,0 +1,58 @@
+package Document;
+
+import utils.JsonWriter;
+
+/**
+ * Describes the song slots of a save as JSON: name, version, blocks used,
+ * whether the song decodes, how much of it decodes and the kits it uses,
+ * plus the number of free blocks and whether the save is from 64 kB SRAM.
+ */
+public class SavManifest {
+    private SavManifest() {
+    }
+
+    public static String toJson(LSDSavFile savFile) {
+        JsonWriter json = new JsonWriter();
+        write(json, savFile);
+        return json.toString();
+    }
+
+    /**
+     * Writes the manifest as the next value of json.
+     */
+    public static void write(JsonWriter json, LSDSavFile savFile) {
+        json.beginObject();
+        json.name("sixtyFourKb").value(savFile.isSixtyFourKbRam());
+        json.name("totalBlocks").value(savFile.totalBlockCount());
+        json.name("freeBlocks").value(savFile.freeBlockCount());
+
+        byte[] song = new byte[SongDecoder.SONG_SIZE];
+        json.name("songs").beginArray();
+        for (int slot = 0; slot < savFile.songCount; ++slot) {
+            int blocks = savFile.getBlocksUsed(slot);
+            if (blocks == 0) {
+                continue;
+            }
+            SongDecoder.DecodeError error = savFile.unpackSong(slot, song);
+            json.beginObject();
+            json.name("slot").value(slot);
+            json.name("name").value(savFile.getFileName(slot));
+            json.name("version").value(savFile.version(slot));
+            json.name("blocks").value(blocks);
+            json.name("valid").value(error == null);
+            json.name("decodedSize").value(error == null ? SongDecoder.SONG_SIZE : error.decodedLength);
+            if (error == null) {
+                json.name("kits").beginArray();
+                for (int kit : LSDSavFile.kitsOf(song)) {
+                    json.value(kit);
+                }
+                json.endArray();
+            } else {
+                json.name("error").value(error.toString());
+            }
+            json.endObject();
+        }
+        json.endArray();
+        json.endObject();
+    }
+}
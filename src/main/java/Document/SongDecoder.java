@@ -0,0 +1,193 @@
+package Document;
+
+/**
+ * Decodes LSDj compressed songs into a caller-supplied 32 kB buffer.
+ * <p>
+ * Unlike a naive decoder, all reads and writes are bounds checked and
+ * block-switch tokens are tracked in a visited-block bitset, so corrupted
+ * or looping block chains are reported as a {@link DecodeError} instead of
+ * running until an exception. A decoder instance keeps its scratch state
+ * between calls and does not allocate on success; it is not thread safe.
+ */
+public class SongDecoder {
+    public static final int SONG_SIZE = 0x8000;
+
+    static final int BLOCK_SIZE = 0x200;
+    // Block switch tokens count blocks from the start of SRAM bank 1,
+    // where block 0 holds the file allocation table.
+    static final int BLOCK_BASE_PTR = 0x8000;
+
+    static final byte RLE_BYTE = (byte) 0xc0;
+    static final byte SPECIAL_BYTE = (byte) 0xe0;
+    static final byte END_OF_SONG_BYTE = (byte) 0xff;
+    static final byte DEFAULT_WAVE_BYTE = (byte) 0xf0;
+    static final byte DEFAULT_INSTRUMENT_BYTE = (byte) 0xf1;
+
+    static final byte[] DEFAULT_WAVE = {
+            (byte) 0x8e, (byte) 0xcd, (byte) 0xcc, (byte) 0xbb,
+            (byte) 0xaa, (byte) 0xa9, (byte) 0x99, (byte) 0x88,
+            (byte) 0x87, (byte) 0x76, (byte) 0x66, (byte) 0x55,
+            (byte) 0x54, (byte) 0x43, (byte) 0x32, (byte) 0x31
+    };
+
+    static final byte[] DEFAULT_INSTRUMENT = {
+            (byte) 0xa8, 0, 0, (byte) 0xff,
+            0, 0, 3, 0,
+            0, (byte) 0xd0, 0, 0,
+            0, (byte) 0xf3, 0, 0
+    };
+
+    public enum Reason {
+        NO_BLOCKS("song has no blocks"),
+        TRUNCATED("compressed data ends unexpectedly"),
+        OUTPUT_OVERFLOW("decoded song is larger than 32 kB"),
+        WRONG_SIZE("decoded song is smaller than 32 kB"),
+        INVALID_BLOCK("block switch to invalid block"),
+        BLOCK_CYCLE("block switch to already visited block");
+
+        private final String description;
+
+        Reason(String description) {
+            this.description = description;
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+
+    public static class DecodeError {
+        /** Offset into the SRAM image where decoding failed. */
+        public final int offset;
+        /** Block being decoded when the error happened, as used by block switch tokens. */
+        public final int block;
+        /** Number of song bytes decoded before the failure. */
+        public final int decodedLength;
+        public final Reason reason;
+
+        DecodeError(int offset, int block, int decodedLength, Reason reason) {
+            this.offset = offset;
+            this.block = block;
+            this.decodedLength = decodedLength;
+            this.reason = reason;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (block %02X, offset %05X)", reason, block, offset);
+        }
+    }
+
+    // One bit per block id; block ids are a single byte.
+    private final long[] visitedBlocks = new long[4];
+
+    /**
+     * Decodes the song starting at the given block into dst.
+     *
+     * @param sram        the SRAM image holding the compressed blocks
+     * @param firstBlock  the first block of the song, as used by block switch tokens
+     * @param blockCount  number of usable blocks; valid block ids are 1..blockCount
+     * @param dst         receives the decoded song, must hold at least 32 kB
+     * @return null on success, otherwise a description of the failure
+     */
+    public DecodeError decode(byte[] sram, int firstBlock, int blockCount, byte[] dst) {
+        assert dst.length >= SONG_SIZE;
+
+        visitedBlocks[0] = visitedBlocks[1] = visitedBlocks[2] = visitedBlocks[3] = 0;
+        final int srcEnd = Math.min(sram.length, BLOCK_BASE_PTR + BLOCK_SIZE * (blockCount + 1));
+
+        int block = firstBlock;
+        if (block < 1 || block > blockCount) {
+            return new DecodeError(BLOCK_BASE_PTR + BLOCK_SIZE * block, block, 0, Reason.INVALID_BLOCK);
+        }
+        markVisited(block);
+        int srcPtr = BLOCK_BASE_PTR + BLOCK_SIZE * block;
+        int dstPos = 0;
+
+        while (true) {
+            if (srcPtr >= srcEnd) {
+                return new DecodeError(srcPtr, block, dstPos, Reason.TRUNCATED);
+            }
+            byte b = sram[srcPtr];
+            if (b == RLE_BYTE) {
+                if (srcPtr + 1 >= srcEnd) {
+                    return new DecodeError(srcPtr, block, dstPos, Reason.TRUNCATED);
+                }
+                if (sram[srcPtr + 1] == RLE_BYTE) {
+                    if (dstPos >= SONG_SIZE) {
+                        return new DecodeError(srcPtr, block, dstPos, Reason.OUTPUT_OVERFLOW);
+                    }
+                    dst[dstPos++] = RLE_BYTE;
+                    srcPtr += 2;
+                } else {
+                    if (srcPtr + 2 >= srcEnd) {
+                        return new DecodeError(srcPtr, block, dstPos, Reason.TRUNCATED);
+                    }
+                    byte value = sram[srcPtr + 1];
+                    int count = sram[srcPtr + 2] & 0xff;
+                    if (dstPos + count > SONG_SIZE) {
+                        return new DecodeError(srcPtr, block, dstPos, Reason.OUTPUT_OVERFLOW);
+                    }
+                    for (int i = 0; i < count; ++i) {
+                        dst[dstPos++] = value;
+                    }
+                    srcPtr += 3;
+                }
+            } else if (b == SPECIAL_BYTE) {
+                if (srcPtr + 1 >= srcEnd) {
+                    return new DecodeError(srcPtr, block, dstPos, Reason.TRUNCATED);
+                }
+                byte command = sram[srcPtr + 1];
+                if (command == SPECIAL_BYTE) {
+                    if (dstPos >= SONG_SIZE) {
+                        return new DecodeError(srcPtr, block, dstPos, Reason.OUTPUT_OVERFLOW);
+                    }
+                    dst[dstPos++] = SPECIAL_BYTE;
+                    srcPtr += 2;
+                } else if (command == END_OF_SONG_BYTE) {
+                    return dstPos == SONG_SIZE ? null : new DecodeError(srcPtr, block, dstPos, Reason.WRONG_SIZE);
+                } else if (command == DEFAULT_WAVE_BYTE || command == DEFAULT_INSTRUMENT_BYTE) {
+                    if (srcPtr + 2 >= srcEnd) {
+                        return new DecodeError(srcPtr, block, dstPos, Reason.TRUNCATED);
+                    }
+                    byte[] pattern = command == DEFAULT_WAVE_BYTE ? DEFAULT_WAVE : DEFAULT_INSTRUMENT;
+                    int count = sram[srcPtr + 2] & 0xff;
+                    if (dstPos + count * pattern.length > SONG_SIZE) {
+                        return new DecodeError(srcPtr, block, dstPos, Reason.OUTPUT_OVERFLOW);
+                    }
+                    for (int i = 0; i < count; ++i) {
+                        System.arraycopy(pattern, 0, dst, dstPos, pattern.length);
+                        dstPos += pattern.length;
+                    }
+                    srcPtr += 3;
+                } else {
+                    int nextBlock = command & 0xff;
+                    if (nextBlock < 1 || nextBlock > blockCount) {
+                        return new DecodeError(srcPtr, block, dstPos, Reason.INVALID_BLOCK);
+                    }
+                    if (isVisited(nextBlock)) {
+                        return new DecodeError(srcPtr, block, dstPos, Reason.BLOCK_CYCLE);
+                    }
+                    markVisited(nextBlock);
+                    block = nextBlock;
+                    srcPtr = BLOCK_BASE_PTR + BLOCK_SIZE * block;
+                }
+            } else {
+                if (dstPos >= SONG_SIZE) {
+                    return new DecodeError(srcPtr, block, dstPos, Reason.OUTPUT_OVERFLOW);
+                }
+                dst[dstPos++] = b;
+                ++srcPtr;
+            }
+        }
+    }
+
+    private boolean isVisited(int block) {
+        return (visitedBlocks[block >> 6] & (1L << (block & 63))) != 0;
+    }
+
+    private void markVisited(int block) {
+        visitedBlocks[block >> 6] |= 1L << (block & 63);
+    }
+}
@@ -0,0 +1,137 @@
+package Document;
+
+import java.util.Arrays;
+
+import static Document.SongDecoder.*;
+
+/**
+ * Compresses a decoded 32 kB song into LSDj's block format, the inverse of
+ * {@link SongDecoder}.
+ * <p>
+ * The output uses 0xc0 run-length tokens, 0xe0 escapes, default wave and
+ * default instrument runs, and ends every block but the last with a block
+ * switch token. Tokens are chosen greedily per position: default wave and
+ * instrument runs first, then byte runs whenever they are shorter than the
+ * literal bytes they replace.
+ */
+public class SongEncoder {
+    private static final int MAX_RUN = 0xff;
+    private static final int RLE_TOKEN_SIZE = 3;
+    private static final int SWITCH_TOKEN_SIZE = 2;
+
+    private SongEncoder() {
+    }
+
+    /**
+     * Compresses song into consecutive 512-byte blocks of dst.
+     * Block n of the output is stored at dst offset n * 0x200 and is meant to be
+     * written to SRAM block blockIds[n]; block switch tokens refer to those ids.
+     * Unused bytes at the end of each block are zeroed.
+     *
+     * @param song     32 kB of decoded song data
+     * @param blockIds block ids to use, in order, as used by block switch tokens
+     * @param dst      receives the blocks, must hold blockIds.length * 0x200 bytes
+     * @return the number of blocks used, or -1 if blockIds ran out
+     */
+    public static int encode(byte[] song, int[] blockIds, byte[] dst) {
+        assert song.length >= SONG_SIZE;
+        assert dst.length >= blockIds.length * BLOCK_SIZE;
+
+        if (blockIds.length == 0) {
+            return -1;
+        }
+        int block = 0;
+        int blockEnd = BLOCK_SIZE - SWITCH_TOKEN_SIZE;
+        int dstPos = 0;
+        int srcPos = 0;
+
+        while (srcPos < SONG_SIZE) {
+            int tokenSize;
+            int consumed;
+            byte first;
+            byte second;
+            byte third = 0;
+
+            byte value = song[srcPos];
+            int waves = patternRun(song, srcPos, DEFAULT_WAVE);
+            int instruments = waves == 0 ? patternRun(song, srcPos, DEFAULT_INSTRUMENT) : 0;
+            int run = runLength(song, srcPos);
+
+            if (waves != 0 || instruments != 0) {
+                tokenSize = 3;
+                first = SPECIAL_BYTE;
+                second = waves != 0 ? DEFAULT_WAVE_BYTE : DEFAULT_INSTRUMENT_BYTE;
+                third = (byte) (waves != 0 ? waves : instruments);
+                consumed = (waves != 0 ? waves : instruments) * DEFAULT_WAVE.length;
+            } else if (value != RLE_BYTE && run * literalSize(value) > RLE_TOKEN_SIZE) {
+                tokenSize = RLE_TOKEN_SIZE;
+                first = RLE_BYTE;
+                second = value;
+                third = (byte) run;
+                consumed = run;
+            } else {
+                tokenSize = literalSize(value);
+                first = value;
+                second = value;
+                consumed = 1;
+            }
+
+            if (dstPos + tokenSize > blockEnd) {
+                if (block + 1 == blockIds.length) {
+                    return -1;
+                }
+                dst[dstPos++] = SPECIAL_BYTE;
+                dst[dstPos++] = (byte) blockIds[block + 1];
+                Arrays.fill(dst, dstPos, blockEnd + SWITCH_TOKEN_SIZE, (byte) 0);
+                ++block;
+                dstPos = block * BLOCK_SIZE;
+                blockEnd = dstPos + BLOCK_SIZE - SWITCH_TOKEN_SIZE;
+            }
+
+            dst[dstPos++] = first;
+            if (tokenSize > 1) {
+                dst[dstPos++] = second;
+            }
+            if (tokenSize > 2) {
+                dst[dstPos++] = third;
+            }
+            srcPos += consumed;
+        }
+
+        dst[dstPos++] = SPECIAL_BYTE;
+        dst[dstPos++] = END_OF_SONG_BYTE;
+        Arrays.fill(dst, dstPos, blockEnd + SWITCH_TOKEN_SIZE, (byte) 0);
+        return block + 1;
+    }
+
+    private static int literalSize(byte value) {
+        return value == RLE_BYTE || value == SPECIAL_BYTE ? 2 : 1;
+    }
+
+    private static int runLength(byte[] song, int pos) {
+        byte value = song[pos];
+        int end = Math.min(SONG_SIZE, pos + MAX_RUN);
+        int i = pos + 1;
+        while (i < end && song[i] == value) {
+            ++i;
+        }
+        return i - pos;
+    }
+
+    /**
+     * Returns how many times pattern repeats from pos, at most 255.
+     */
+    private static int patternRun(byte[] song, int pos, byte[] pattern) {
+        int count = 0;
+        while (count < MAX_RUN && pos + pattern.length <= SONG_SIZE) {
+            for (int i = 0; i < pattern.length; ++i) {
+                if (song[pos + i] != pattern[i]) {
+                    return count;
+                }
+            }
+            ++count;
+            pos += pattern.length;
+        }
+        return count;
+    }
+}
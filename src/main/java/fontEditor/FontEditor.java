@@ -15,6 +15,7 @@ import javax.imageio.ImageIO;
 import javax.swing.*;
 
 import Document.Document;
+import Document.EditTarget;
 import structures.LSDJFont;
 import utils.FileDialogLauncher;
 import utils.FontIO;
@@ -29,6 +30,7 @@ public class FontEditor extends JFrame implements FontMap.TileSelectListener, Ti
     private final TileEditor tileEditor;
 
     private final JComboBox<String> fontSelector;
+    private final Document document;
 
     private byte[] romImage = null;
     private int fontOffset = -1;
@@ -37,6 +39,7 @@ public class FontEditor extends JFrame implements FontMap.TileSelectListener, Ti
 
     public FontEditor(JFrame parent, Document document) {
         parent.setEnabled(false);
+        this.document = document;
 
         setTitle("Font Editor");
         setDefaultCloseOperation(JFrame.HIDE_ON_CLOSE);
@@ -196,6 +199,8 @@ public class FontEditor extends JFrame implements FontMap.TileSelectListener, Ti
         editMenu.setMnemonic(KeyEvent.VK_E);
         menuBar.add(editMenu);
 
+        addMenuEntry(editMenu, "Undo", KeyEvent.VK_U, e -> undo());
+        addMenuEntry(editMenu, "Redo", KeyEvent.VK_R, e -> redo());
         addMenuEntry(editMenu, "Copy Tile", KeyEvent.VK_C, e -> tileEditor.copyTile());
         addMenuEntry(editMenu, "Paste Tile", KeyEvent.VK_V, e -> tileEditor.pasteTile());
     }
@@ -294,7 +299,29 @@ public class FontEditor extends JFrame implements FontMap.TileSelectListener, Ti
     }
 
     public void tileChanged() {
+        fontMap.tileChanged(tileEditor.getTile());
+        // Commits every change, so that a pixel drag can be undone as one edit.
+        document.setRomImage(romImage, tileEditor);
+    }
+
+    private void undo() {
+        if (document.undo(EditTarget.ROM)) {
+            reloadRomImage();
+        }
+    }
+
+    private void redo() {
+        if (document.redo(EditTarget.ROM)) {
+            reloadRomImage();
+        }
+    }
+
+    private void reloadRomImage() {
+        int selectedFont = fontSelector.getSelectedIndex();
+        setRomImage(document.romImage());
+        fontSelector.setSelectedIndex(selectedFont);
         fontMap.repaint();
+        tileEditor.repaint();
     }
 
     private void fontSelectorAction(java.awt.event.ActionEvent e) {
@@ -309,6 +336,7 @@ public class FontEditor extends JFrame implements FontMap.TileSelectListener, Ti
                 if (fontSelector.getSelectedIndex() == -1 && selectedItem != null) {
                     int index = previousSelectedFont;
                     RomUtilities.setFontName(romImage, index, selectedItem);
+                    document.setRomImage(romImage);
                     populateFontSelector();
                     fontSelector.setSelectedIndex(index);
                     fontSelector.setSelectedIndex(index);
@@ -334,9 +362,11 @@ public class FontEditor extends JFrame implements FontMap.TileSelectListener, Ti
                 String fontName = FontIO.loadFnt(f, romImage, selectedFontOffset);
                 tileEditor.generateShadedAndInvertedTiles();
                 RomUtilities.setFontName(romImage, fontSelector.getSelectedIndex(), fontName);
+                fontMap.invalidateTiles();
                 tileEditor.tileChanged();
                 tileChanged();
             }
+            document.setRomImage(romImage);
             // Refresh the name list.
             int previousIndex = fontSelector.getSelectedIndex();
             populateFontSelector();
@@ -356,6 +386,7 @@ public class FontEditor extends JFrame implements FontMap.TileSelectListener, Ti
                 return;
             }
             tileEditor.readImage(bitmap.getName(), image);
+            fontMap.invalidateTiles();
             tileEditor.tileChanged();
             tileChanged();
         } catch (IOException e) {
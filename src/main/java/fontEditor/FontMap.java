@@ -1,13 +1,33 @@
 package fontEditor;
 
 import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.util.Arrays;
+import java.util.BitSet;
 
 import javax.swing.JPanel;
 
 import structures.LSDJFont;
 
+/**
+ * Shows all tiles of a font. Tiles are decoded into an indexed image once
+ * and again only after they change, and the image is drawn scaled in one go.
+ */
 public class FontMap extends JPanel implements java.awt.event.MouseListener {
     private static final long serialVersionUID = -7745908775698863845L;
+    private static final Color GRID_COLOR = new Color(0.f, 0.f, 0.4f, 0.6f);
+    // Game Boy colors 0-3, then transparent for the unused end of the last row.
+    private static final int TRANSPARENT = 4;
+    private static final IndexColorModel COLOR_MODEL = createColorModel();
+    private static final int MAP_TILE_COUNT = LSDJFont.FONT_NUM_TILES_X * LSDJFont.GFX_FONT_NUM_TILES_Y;
+
+    private final BufferedImage mapImage = new BufferedImage(LSDJFont.FONT_MAP_WIDTH, LSDJFont.GFX_FONT_MAP_HEIGHT,
+            BufferedImage.TYPE_BYTE_INDEXED, COLOR_MODEL);
+    private final BitSet dirtyTiles = new BitSet(MAP_TILE_COUNT);
+    private final int[] tilePixels = new int[8 * 8];
+    private int offsetX = 0;
+    private int offsetY = 0;
     private byte[] romImage = null;
     private int fontOffset = -1;
     private int gfxCharOffset = -1;
@@ -23,13 +43,48 @@ public class FontMap extends JPanel implements java.awt.event.MouseListener {
 
     FontMap() {
         addMouseListener(this);
+        invalidateTiles();
+    }
+
+    private static IndexColorModel createColorModel() {
+        Color[] colors = { Color.white, Color.lightGray, Color.darkGray /* Not used. */, Color.black };
+        byte[] r = new byte[TRANSPARENT + 1];
+        byte[] g = new byte[TRANSPARENT + 1];
+        byte[] b = new byte[TRANSPARENT + 1];
+        byte[] a = new byte[TRANSPARENT + 1];
+        for (int i = 0; i < colors.length; ++i) {
+            r[i] = (byte) colors[i].getRed();
+            g[i] = (byte) colors[i].getGreen();
+            b[i] = (byte) colors[i].getBlue();
+            a[i] = (byte) 0xff;
+        }
+        return new IndexColorModel(8, TRANSPARENT + 1, r, g, b, a);
     }
 
     void setShowGfxCharacters(boolean show) {
         showGfxCharacters = show;
+        invalidateTiles();
+    }
+
+    /**
+     * Redraws all tiles, e.g. after a whole font was loaded.
+     */
+    void invalidateTiles() {
+        dirtyTiles.set(0, MAP_TILE_COUNT);
         repaint();
     }
 
+    /**
+     * Redraws one tile after its pixels were edited.
+     */
+    void tileChanged(int tile) {
+        dirtyTiles.set(tile);
+        int displayTileSize = 8 * tileZoom;
+        repaint(offsetX + (tile % LSDJFont.FONT_NUM_TILES_X) * displayTileSize,
+                offsetY + (tile / LSDJFont.FONT_NUM_TILES_X) * displayTileSize,
+                displayTileSize + 1, displayTileSize + 1);
+    }
+
     void setTileSelectListener(TileSelectListener l) {
         tileSelectedListener = l;
     }
@@ -50,12 +105,31 @@ public class FontMap extends JPanel implements java.awt.event.MouseListener {
         int heightScale = getHeight() / currentHeight;
         tileZoom = Math.min(widthScale, heightScale);
         tileZoom = Math.max(tileZoom, 1);
-        int offsetX = (getWidth() - LSDJFont.FONT_MAP_WIDTH * tileZoom) / 2;
-        int offsetY = (getHeight() - currentHeight * tileZoom) / 2;
+        displayTileSize = 8 * tileZoom;
+        offsetX = (getWidth() - LSDJFont.FONT_MAP_WIDTH * tileZoom) / 2;
+        offsetY = (getHeight() - currentHeight * tileZoom) / 2;
         setPreferredSize(new Dimension(LSDJFont.FONT_MAP_WIDTH * tileZoom, currentHeight * tileZoom));
 
-        for (int tile = 0; tile < tileCount(); ++tile) {
-            paintTile(g, tile, offsetX, offsetY);
+        if (romImage == null) {
+            return;
+        }
+        for (int tile = dirtyTiles.nextSetBit(0); tile != -1; tile = dirtyTiles.nextSetBit(tile + 1)) {
+            renderTile(tile);
+        }
+        dirtyTiles.clear();
+
+        // Scaling uses nearest neighbor interpolation by default.
+        g.drawImage(mapImage,
+                offsetX, offsetY, offsetX + LSDJFont.FONT_MAP_WIDTH * tileZoom, offsetY + currentHeight * tileZoom,
+                0, 0, LSDJFont.FONT_MAP_WIDTH, currentHeight, null);
+
+        if (tileZoom > 1) {
+            g.setColor(GRID_COLOR);
+            for (int tile = 0; tile < tileCount(); ++tile) {
+                int x = (tile % 8) * displayTileSize;
+                int y = (tile / 8) * displayTileSize;
+                g.drawRect(offsetX + x, offsetY + y, displayTileSize, displayTileSize);
+            }
         }
     }
 
@@ -65,57 +139,21 @@ public class FontMap extends JPanel implements java.awt.event.MouseListener {
                 : LSDJFont.TILE_COUNT;
     }
 
-    private void switchColor(Graphics g, int c) {
-        switch (c & 3) {
-            case 0:
-                g.setColor(Color.white);
-                break;
-            case 1:
-                g.setColor(Color.lightGray);
-                break;
-            case 2:
-                g.setColor(Color.darkGray);  // Not used.
-                break;
-            case 3:
-                g.setColor(Color.black);
-                break;
-        }
-    }
-
-    private int getColor(int tile, int x, int y) {
-        int tileOffset;
-        if (tile < LSDJFont.TILE_COUNT) {
-            tileOffset = fontOffset;
+    private void renderTile(int tile) {
+        if (tile >= tileCount()) {
+            Arrays.fill(tilePixels, TRANSPARENT);
         } else {
-            tileOffset = gfxCharOffset;
-            tile -= LSDJFont.TILE_COUNT;
-        }
-        tileOffset += tile * 16 + y * 2;
-        int xMask = 7 - x;
-        int value = (romImage[tileOffset] >> xMask) & 1;
-        value |= ((romImage[tileOffset + 1] >> xMask) & 1) << 1;
-        return value;
-    }
-
-    private void paintTile(Graphics g, int tile, int offsetX, int offsetY) {
-        displayTileSize = 8 * tileZoom;
-        int x = (tile % 8) * displayTileSize;
-        int y = (tile / 8) * displayTileSize;
-
-        for (int row = 0; row < 8; ++row) {
-            for (int column = 0; column < 8; ++column) {
-                switchColor(g, getColor(tile, column, row));
-                g.fillRect(offsetX + x + column * tileZoom, offsetY + y + row * tileZoom, tileZoom, tileZoom);
-            }
-        }
-        if (tileZoom > 1) {
-            g.setColor(new Color(0.f,0.f,0.4f,0.6f));
-            g.drawRect(offsetX + x, offsetY + y, tileZoom*8, tileZoom*8);
+            int tileOffset = tile < LSDJFont.TILE_COUNT
+                    ? fontOffset + tile * 16
+                    : gfxCharOffset + (tile - LSDJFont.TILE_COUNT) * 16;
+            LSDJFont.decodeTile(romImage, tileOffset, tilePixels, 0, 8);
         }
+        mapImage.getRaster().setPixels((tile % 8) * 8, (tile / 8) * 8, 8, 8, tilePixels);
     }
 
     void setRomImage(byte[] romImage) {
         this.romImage = romImage;
+        invalidateTiles();
     }
 
     public byte[] romImage() {
@@ -124,11 +162,12 @@ public class FontMap extends JPanel implements java.awt.event.MouseListener {
 
     void setGfxCharOffset(int gfxCharOffset) {
         this.gfxCharOffset = gfxCharOffset;
+        invalidateTiles();
     }
 
     void setFontOffset(int fontOffset) {
         this.fontOffset = fontOffset;
-        repaint();
+        invalidateTiles();
     }
 
     public void mouseEntered(java.awt.event.MouseEvent e) {
@@ -144,9 +183,6 @@ public class FontMap extends JPanel implements java.awt.event.MouseListener {
     }
 
     public void mouseClicked(java.awt.event.MouseEvent e) {
-        int offsetX = (getWidth() - LSDJFont.FONT_MAP_WIDTH * tileZoom) / 2;
-        int offsetY = (getHeight() - getCurrentUnscaledMapHeight() * tileZoom) / 2;
-
         int realX = e.getX() - offsetX;
         int realY = e.getY() - offsetY;
 
@@ -224,12 +224,13 @@ class TileEditor extends JPanel implements java.awt.event.MouseListener, java.aw
 
     void tileChanged() {
         repaint();
-        generateShadedAndInvertedTiles();
+        font.generateShadedAndInvertedTiles(selectedTile, selectedTile + 1);
         tileChangedListener.tileChanged();
     }
 
     void readImage(String name, BufferedImage image) {
         font.loadImageData(name, image);
+        generateShadedAndInvertedTiles();
 
     }
 
@@ -3,6 +3,7 @@ package kitEditor;
 import Document.Document;
 import com.laszlosystems.libresample4j.Resampler;
 import net.miginfocom.swing.MigLayout;
+import structures.LSDJKit;
 import utils.*;
 
 import javax.sound.sampled.UnsupportedAudioFileException;
@@ -394,7 +395,7 @@ public class KitEditor extends JFrame implements SamplePicker.Listener {
                         continue;
                     }
                     addSample(file);
-                } else if (fileName.endsWith(".kit")) {
+                } else if (fileName.endsWith(".kit") || fileName.endsWith("." + KitPackage.EXTENSION)) {
                     if (romImage == null) {
                         JOptionPane.showMessageDialog(contentPane,
                                 "Open .gb file before adding samples.",
@@ -414,58 +415,14 @@ public class KitEditor extends JFrame implements SamplePicker.Listener {
         });
     }
 
-    private static void unSwizzle(byte[] packedNibbles) {
-        assert(packedNibbles.length % 16 == 0);
-
-        // Rotates the wave frame left and inverts the signal. Mirrors sbc.java.
-        byte[] tmpBuf = new byte[packedNibbles.length * 2];
-        for (int i = 0; i < packedNibbles.length; i += 16) {
-            for (int j = 0; j < 16; ++j) {
-                int b = packedNibbles[i + j];
-                int dst = ((2 * j + 31) % 32) + (i * 2);
-                tmpBuf[dst] = (byte) ((0xf0 - (b & 0xf0)) >> 4);
-                dst = 2 * (i + j);
-                tmpBuf[dst] = (byte) ((0xf - (b & 0xf)) << 4);
-            }
-        }
-
-        for (int i = 0; i < packedNibbles.length; ++i) {
-            packedNibbles[i] = (byte)(tmpBuf[i * 2] | tmpBuf[i * 2 + 1]);
-        }
-    }
-
     private byte[] getNibbles(int index) {
         if (index < 0) {
             return null;
         }
-        final int romBank = getSelectedROMBank();
-        int offset = romBank * RomUtilities.BANK_SIZE + index * 2;
-        int start = (0xff & romImage[offset]) | ((0xff & romImage[offset + 1]) << 8);
-        int stop = (0xff & romImage[offset + 2]) | ((0xff & romImage[offset + 3]) << 8);
-        if (stop <= start) {
-            return null;
-        }
-        byte[] arr = new byte[stop - start];
-        System.arraycopy(romImage,
-                (romBank - 1) * RomUtilities.BANK_SIZE + start,
-                arr,
-                0,
-                stop - start);
-        if (isBankSwizzled()) {
-            unSwizzle(arr);
-        }
-        return arr;
-    }
-
-    private boolean isBankSwizzled() {
-        return bankVersion() == KIT_VERSION_1;
-    }
-
-    private byte bankVersion() {
-        // This version field is new for lsdpatcher 1.11.1 and lsdj 9.2.2.
-        // Old kits may have preexisting data here: it cannot be
-        // assumed that all old kits are set to version 0.
-        return romImage[versionOffset()];
+        LSDJKit kit = new LSDJKit();
+        kit.setRomImage(romImage);
+        kit.setDataOffset(getROMOffsetForSelectedBank());
+        return kit.getSampleNibbles(index);
     }
 
     private int versionOffset() {
@@ -680,14 +637,24 @@ public class KitEditor extends JFrame implements SamplePicker.Listener {
                 JOptionPane.ERROR_MESSAGE);
     }
 
+    private boolean isKitPackage(File f) {
+        return f.getName().toLowerCase().endsWith("." + KitPackage.EXTENSION);
+    }
+
     private void saveKit() {
-        File f = FileDialogLauncher.save(this, "Save Kit", "kit");
+        File f = FileDialogLauncher.save(this, "Save Kit", new String[] { KitPackage.EXTENSION, "kit" });
         if (f == null) {
             return;
         }
         byte[] buf = new byte[RomUtilities.BANK_SIZE];
         int offset = getROMOffsetForSelectedBank();
         try {
+            if (isKitPackage(f)) {
+                System.arraycopy(romImage, offset, buf, 0, buf.length);
+                KitPackage.create(buf, samples[selectedBank], halfSpeed.isSelected(), true).write(f);
+                updateRomView();
+                return;
+            }
             RandomAccessFile bankFile = new RandomAccessFile(f, "rw");
             for (int i = 0; i < buf.length; i++) {
                 buf[i] = romImage[offset++];
@@ -729,13 +696,17 @@ public class KitEditor extends JFrame implements SamplePicker.Listener {
     }
 
     private void loadKit() {
-        File kitFile = FileDialogLauncher.load(this, "Load Sample Kit", "kit");
+        File kitFile = FileDialogLauncher.load(this, "Load Sample Kit", new String[] { KitPackage.EXTENSION, "kit" });
         if (kitFile != null) {
             loadKit(kitFile);
         }
     }
 
     private void loadKit(File kitFile) {
+        if (isKitPackage(kitFile)) {
+            loadKitPackage(kitFile);
+            return;
+        }
         createKit();
         renameKit(kitFile.getName());
         byte[] buf = new byte[RomUtilities.BANK_SIZE];
@@ -764,6 +735,23 @@ public class KitEditor extends JFrame implements SamplePicker.Listener {
         updateRomView();
     }
 
+    private void loadKitPackage(File packageFile) {
+        try {
+            KitPackage kitPackage = KitPackage.read(packageFile);
+            System.arraycopy(kitPackage.bank, 0, romImage, getROMOffsetForSelectedBank(), RomUtilities.BANK_SIZE);
+            flushWavFiles();
+            for (int i = 0; i < MAX_SAMPLES; ++i) {
+                samples[selectedBank][i] = kitPackage.toSample(i, packageFile, halfSpeed.isSelected());
+            }
+            // Samples without source audio are taken from the bank.
+            createSamplesFromRom();
+            updateBankView();
+        } catch (IOException | UnsupportedAudioFileException e) {
+            showFileErrorMessage(e);
+        }
+        updateRomView();
+    }
+
     private void loadKitSettings(File kitFile) throws IOException, UnsupportedAudioFileException {
         File kitSettingsFile = new File(kitFile.getAbsolutePath() + SETTINGS_FILE_EXTENSION);
         if (!kitSettingsFile.exists()) {
@@ -772,22 +760,34 @@ public class KitEditor extends JFrame implements SamplePicker.Listener {
         try (BufferedReader fileReader = new BufferedReader(new FileReader(kitSettingsFile))) {
             for (int i = 0; i < MAX_SAMPLES; ++i) {
                 String line = fileReader.readLine();
-                if (line.isEmpty()) {
-                    continue;
+                if (line == null) {
+                    break;
                 }
                 String[] chunks = line.split("\\|");
+                if (chunks.length < 2) {
+                    continue;
+                }
                 File sampleFile = new File(chunks[0]);
                 if (!sampleFile.exists()) {
-                    continue;
+                    // The kit may have been moved together with its samples.
+                    sampleFile = new File(kitFile.getAbsoluteFile().getParentFile(), sampleFile.getName());
+                    if (!sampleFile.exists()) {
+                        continue;
+                    }
                 }
-                int volume = Integer.parseInt(chunks[1]);
+                int volume;
                 int trim = 0;
-                if (chunks.length > 2) {
-                    trim = Integer.parseInt(chunks[2]);
-                }
                 int pitch = 0;
-                if (chunks.length > 3) {
-                    pitch = Integer.parseInt(chunks[3]);
+                try {
+                    volume = Integer.parseInt(chunks[1]);
+                    if (chunks.length > 2) {
+                        trim = Integer.parseInt(chunks[2]);
+                    }
+                    if (chunks.length > 3) {
+                        pitch = Integer.parseInt(chunks[3]);
+                    }
+                } catch (NumberFormatException e) {
+                    continue;
                 }
                 samples[selectedBank][i] = Sample.createFromWav(
                         sampleFile,
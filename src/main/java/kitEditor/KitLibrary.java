@@ -0,0 +1,408 @@
+package kitEditor;
+
+import structures.LSDJKit;
+import utils.AtomicFileWriter;
+import utils.RomUtilities;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Searchable index of the .kit and .lsdkit files in a directory tree.
+ * <p>
+ * The kit name, version, sample names, sample lengths and sample
+ * fingerprints (see SampleFingerprint) of each file are kept in an index
+ * file, by default in the root directory. An update only
+ * reads files that were added or whose size or modification time changed,
+ * in parallel. Files that are not kits are remembered as invalid, so that
+ * they are not read again either.
+ * <p>
+ * Finding the samples nearest to a fingerprint compares it with all indexed
+ * fingerprints, which are kept in one array for that.
+ * <p>
+ * Index layout: "LSDKITIDX", format version byte, then deflated:
+ * <pre>
+ * count                    int
+ * count x path             UTF, relative to the root with / separators
+ *         lastModified     long
+ *         size             long
+ *         valid            boolean, followed by if valid:
+ *         name             UTF
+ *         version          byte
+ *         15 x sampleName  UTF, "" if unused
+ *              length      int, 0 if unused
+ *              fingerprint SampleFingerprint.SIZE bytes, if used
+ * </pre>
+ */
+public class KitLibrary {
+    public static final String INDEX_FILE_NAME = ".lsdpatch-kits.idx";
+    private static final byte[] MAGIC = "LSDKITIDX".getBytes(StandardCharsets.US_ASCII);
+    private static final int FORMAT_VERSION = 2;
+
+    public static class Entry {
+        public final String path;
+        final long lastModified;
+        final long size;
+        public final boolean valid;
+        public final String name;
+        public final int version;
+        public final String[] sampleNames;
+        public final int[] sampleLengths;
+        // Null for unused samples.
+        final byte[][] fingerprints;
+
+        Entry(String path, long lastModified, long size, boolean valid, String name, int version,
+              String[] sampleNames, int[] sampleLengths, byte[][] fingerprints) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.size = size;
+            this.valid = valid;
+            this.name = name;
+            this.version = version;
+            this.sampleNames = sampleNames;
+            this.sampleLengths = sampleLengths;
+            this.fingerprints = fingerprints;
+        }
+
+        static Entry invalid(String path, long lastModified, long size) {
+            return new Entry(path, lastModified, size, false, "", 0, new String[0], new int[0], new byte[0][]);
+        }
+
+        boolean matches(String upperCaseQuery) {
+            if (name.toUpperCase().contains(upperCaseQuery)) {
+                return true;
+            }
+            for (String sampleName : sampleNames) {
+                if (sampleName.toUpperCase().contains(upperCaseQuery)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder s = new StringBuilder(name);
+            for (int i = 0; i < sampleNames.length; ++i) {
+                if (sampleLengths[i] > 0) {
+                    s.append(' ').append(sampleNames[i]);
+                }
+            }
+            return s.toString();
+        }
+    }
+
+    public static class Match {
+        public final Entry entry;
+        public final int sample;
+        public final int distance;
+
+        Match(Entry entry, int sample, int distance) {
+            this.entry = entry;
+            this.sample = sample;
+            this.distance = distance;
+        }
+    }
+
+    private final File root;
+    private final File indexFile;
+    // Sorted by path.
+    private List<Entry> entries = new ArrayList<>();
+    // All fingerprints back to back, and the entry and sample of each. Built on demand.
+    private byte[] fingerprints;
+    private Entry[] fingerprintEntries;
+    private int[] fingerprintSamples;
+
+    public KitLibrary(File root) {
+        this(root, new File(root, INDEX_FILE_NAME));
+    }
+
+    /**
+     * Opens the library, using the existing index if it can be read.
+     */
+    public KitLibrary(File root, File indexFile) {
+        this.root = root;
+        this.indexFile = indexFile;
+        try {
+            if (indexFile.isFile()) {
+                entries = load(indexFile);
+            }
+        } catch (IOException e) {
+            // Rebuilt on the next update.
+            entries = new ArrayList<>();
+        }
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    public File fileOf(Entry entry) {
+        return new File(root, entry.path.replace('/', File.separatorChar));
+    }
+
+    /**
+     * Returns the valid kits whose name or any sample name contains the
+     * query, ignoring case. An empty query matches all kits.
+     */
+    public List<Entry> search(String query) {
+        String upperCaseQuery = query.toUpperCase();
+        List<Entry> matches = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry.valid && entry.matches(upperCaseQuery)) {
+                matches.add(entry);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Returns the count samples with fingerprints nearest to the given one,
+     * nearest first.
+     */
+    public List<Match> nearest(byte[] fingerprint, int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("count must be at least 1: " + count);
+        }
+        if (fingerprints == null) {
+            buildFingerprintArray();
+        }
+        // Max-heap of the best matches so far.
+        PriorityQueue<Match> best = new PriorityQueue<>(count + 1, (a, b) -> Integer.compare(b.distance, a.distance));
+        for (int i = 0; i < fingerprintSamples.length; ++i) {
+            int distance = SampleFingerprint.distance(fingerprint, fingerprints, i * SampleFingerprint.SIZE);
+            if (best.size() < count || distance < best.peek().distance) {
+                best.add(new Match(fingerprintEntries[i], fingerprintSamples[i], distance));
+                if (best.size() > count) {
+                    best.poll();
+                }
+            }
+        }
+        List<Match> matches = new ArrayList<>(best);
+        matches.sort(Comparator.comparingInt(match -> match.distance));
+        return matches;
+    }
+
+    private void buildFingerprintArray() {
+        List<Entry> owners = new ArrayList<>();
+        List<Integer> samples = new ArrayList<>();
+        for (Entry entry : entries) {
+            for (int sample = 0; sample < entry.fingerprints.length; ++sample) {
+                if (entry.fingerprints[sample] != null) {
+                    owners.add(entry);
+                    samples.add(sample);
+                }
+            }
+        }
+        fingerprints = new byte[owners.size() * SampleFingerprint.SIZE];
+        fingerprintEntries = owners.toArray(new Entry[0]);
+        fingerprintSamples = new int[samples.size()];
+        for (int i = 0; i < fingerprintSamples.length; ++i) {
+            fingerprintSamples[i] = samples.get(i);
+            System.arraycopy(fingerprintEntries[i].fingerprints[fingerprintSamples[i]], 0,
+                    fingerprints, i * SampleFingerprint.SIZE, SampleFingerprint.SIZE);
+        }
+    }
+
+    private static boolean isKitFile(Path path) {
+        String name = path.getFileName().toString().toLowerCase();
+        return name.endsWith(".kit") || name.endsWith("." + KitPackage.EXTENSION);
+    }
+
+    /**
+     * Brings the index up to date with the directory tree and saves it.
+     *
+     * @return the number of files that were read
+     */
+    public int update() throws IOException {
+        Map<String, Entry> previous = new HashMap<>();
+        for (Entry entry : entries) {
+            previous.put(entry.path, entry);
+        }
+
+        List<Entry> updated = new ArrayList<>();
+        List<Path> changed = new ArrayList<>();
+        Path rootPath = root.toPath();
+        try (Stream<Path> paths = Files.walk(rootPath)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (!isKitFile(path)) {
+                    continue;
+                }
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                if (!attributes.isRegularFile()) {
+                    continue;
+                }
+                Entry entry = previous.get(relativePath(rootPath, path));
+                if (entry != null && entry.lastModified == attributes.lastModifiedTime().toMillis()
+                        && entry.size == attributes.size()) {
+                    updated.add(entry);
+                } else {
+                    changed.add(path);
+                }
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            List<Future<Entry>> futures = new ArrayList<>();
+            for (Path path : changed) {
+                futures.add(executor.submit(() -> read(rootPath, path)));
+            }
+            for (Future<Entry> future : futures) {
+                updated.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+
+        updated.sort(Comparator.comparing(entry -> entry.path));
+        boolean removed = updated.size() - changed.size() != previous.size();
+        entries = updated;
+        fingerprints = null;
+        if (!changed.isEmpty() || removed || !indexFile.isFile()) {
+            save();
+        }
+        return changed.size();
+    }
+
+    private static String relativePath(Path root, Path path) {
+        return root.relativize(path).toString().replace(File.separatorChar, '/');
+    }
+
+    private static Entry read(Path root, Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        String relativePath = relativePath(root, path);
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        byte[] bank;
+        try {
+            bank = readBank(path.toFile());
+        } catch (IOException e) {
+            return Entry.invalid(relativePath, lastModified, attributes.size());
+        }
+        LSDJKit kit = new LSDJKit();
+        kit.setRomImage(bank);
+        String[] sampleNames = new String[LSDJKit.SAMPLE_COUNT];
+        int[] sampleLengths = new int[LSDJKit.SAMPLE_COUNT];
+        byte[][] fingerprints = new byte[LSDJKit.SAMPLE_COUNT][];
+        for (int sample = 0; sample < LSDJKit.SAMPLE_COUNT; ++sample) {
+            sampleLengths[sample] = kit.getSampleLength(sample);
+            if (sampleLengths[sample] == 0) {
+                sampleNames[sample] = "";
+                continue;
+            }
+            int offset = kit.getSampleOffset(sample);
+            if (offset < LSDJKit.SAMPLE_DATA_OFFSET || offset + sampleLengths[sample] > bank.length) {
+                return Entry.invalid(relativePath, lastModified, attributes.size());
+            }
+            sampleNames[sample] = kit.getSampleName(sample);
+            fingerprints[sample] = SampleFingerprint.of(kit.getSampleNibbles(sample));
+        }
+        return new Entry(relativePath, lastModified, attributes.size(), true, kit.getName(), kit.getVersion(),
+                sampleNames, sampleLengths, fingerprints);
+    }
+
+    /**
+     * Reads the bank of a .kit or .lsdkit file.
+     */
+    public static byte[] readBank(File file) throws IOException {
+        if (file.getName().toLowerCase().endsWith("." + KitPackage.EXTENSION)) {
+            return KitPackage.read(file).bank;
+        }
+        byte[] bank = new byte[RomUtilities.BANK_SIZE];
+        try (RandomAccessFile kitFile = new RandomAccessFile(file, "r")) {
+            kitFile.readFully(bank);
+        } catch (EOFException e) {
+            throw new IOException(file.getName() + " is truncated", e);
+        }
+        if (!RomUtilities.isKitBank(bank, 0)) {
+            throw new IOException(file.getName() + ": malformed kit bank");
+        }
+        return bank;
+    }
+
+    private void save() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(MAGIC);
+        bytes.write(FORMAT_VERSION);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(bytes)))) {
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                out.writeUTF(entry.path);
+                out.writeLong(entry.lastModified);
+                out.writeLong(entry.size);
+                out.writeBoolean(entry.valid);
+                if (!entry.valid) {
+                    continue;
+                }
+                out.writeUTF(entry.name);
+                out.writeByte(entry.version);
+                for (int sample = 0; sample < LSDJKit.SAMPLE_COUNT; ++sample) {
+                    out.writeUTF(entry.sampleNames[sample]);
+                    out.writeInt(entry.sampleLengths[sample]);
+                    if (entry.fingerprints[sample] != null) {
+                        out.write(entry.fingerprints[sample]);
+                    }
+                }
+            }
+        }
+        AtomicFileWriter.write(indexFile.toPath(), bytes.toByteArray());
+    }
+
+    private static List<Entry> load(File indexFile) throws IOException {
+        byte[] bytes = Files.readAllBytes(indexFile.toPath());
+        if (bytes.length < MAGIC.length + 1
+                || !Arrays.equals(Arrays.copyOf(bytes, MAGIC.length), MAGIC)
+                || bytes[MAGIC.length] != FORMAT_VERSION) {
+            throw new IOException(indexFile.getName() + " is not a kit index");
+        }
+        InputStream inflater = new InflaterInputStream(
+                new ByteArrayInputStream(bytes, MAGIC.length + 1, bytes.length - MAGIC.length - 1));
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(inflater))) {
+            int count = in.readInt();
+            List<Entry> entries = new ArrayList<>();
+            for (int i = 0; i < count; ++i) {
+                String path = in.readUTF();
+                long lastModified = in.readLong();
+                long size = in.readLong();
+                if (!in.readBoolean()) {
+                    entries.add(Entry.invalid(path, lastModified, size));
+                    continue;
+                }
+                String name = in.readUTF();
+                int version = in.readUnsignedByte();
+                String[] sampleNames = new String[LSDJKit.SAMPLE_COUNT];
+                int[] sampleLengths = new int[LSDJKit.SAMPLE_COUNT];
+                byte[][] fingerprints = new byte[LSDJKit.SAMPLE_COUNT][];
+                for (int sample = 0; sample < LSDJKit.SAMPLE_COUNT; ++sample) {
+                    sampleNames[sample] = in.readUTF();
+                    sampleLengths[sample] = in.readInt();
+                    if (sampleLengths[sample] > 0) {
+                        fingerprints[sample] = new byte[SampleFingerprint.SIZE];
+                        in.readFully(fingerprints[sample]);
+                    }
+                }
+                entries.add(new Entry(path, lastModified, size, true, name, version, sampleNames, sampleLengths,
+                        fingerprints));
+            }
+            return entries;
+        } catch (EOFException e) {
+            throw new IOException(indexFile.getName() + " is truncated", e);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package kitEditor;
+
+import utils.AtomicFileWriter;
+import utils.ContentHash;
+import utils.RomUtilities;
+
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Self-contained kit file: the compiled 16 kB bank plus, for each sample
+ * added from a .wav file, the source file name and SHA-256 hash, the
+ * volume/trim/pitch/dither settings and optionally the resampled source
+ * PCM. With PCM, samples can be edited again without the .wav files.
+ * <p>
+ * Layout: "LSDKIT", format version byte, then deflated:
+ * <pre>
+ * bank             16384 bytes
+ * halfSpeed        boolean
+ * 15 x present     boolean, followed by if present:
+ *      name, sourcePath, sourceHash    UTF strings, "" if unknown
+ *      volumeDb, trim, pitchSemitones  int
+ *      dither                          boolean
+ *      pcmLength                       int, -1 if no PCM
+ *      pcm                             pcmLength shorts
+ * </pre>
+ */
+class KitPackage {
+    static final String EXTENSION = "lsdkit";
+    private static final byte[] MAGIC = "LSDKIT".getBytes(StandardCharsets.US_ASCII);
+    private static final int FORMAT_VERSION = 1;
+    static final int SAMPLE_COUNT = 15;
+    // Far more than fits in a bank, even before trimming.
+    private static final int MAX_PCM_LENGTH = 0x100000;
+
+    static class SampleInfo {
+        final String name;
+        final String sourcePath;
+        final String sourceHash;
+        final int volumeDb;
+        final int trim;
+        final int pitchSemitones;
+        final boolean dither;
+        final short[] pcm;
+
+        SampleInfo(String name, String sourcePath, String sourceHash, int volumeDb, int trim,
+                   int pitchSemitones, boolean dither, short[] pcm) {
+            this.name = name;
+            this.sourcePath = sourcePath;
+            this.sourceHash = sourceHash;
+            this.volumeDb = volumeDb;
+            this.trim = trim;
+            this.pitchSemitones = pitchSemitones;
+            this.dither = dither;
+            this.pcm = pcm;
+        }
+    }
+
+    final byte[] bank;
+    final boolean halfSpeed;
+    // Null where the sample only exists in the bank.
+    final SampleInfo[] samples;
+
+    KitPackage(byte[] bank, boolean halfSpeed, SampleInfo[] samples) {
+        this.bank = bank;
+        this.halfSpeed = halfSpeed;
+        this.samples = samples;
+    }
+
+    /**
+     * Describes a compiled bank and the samples it was built from.
+     *
+     * @param includePcm whether to store the resampled source audio
+     */
+    static KitPackage create(byte[] bank, Sample[] samples, boolean halfSpeed, boolean includePcm)
+            throws IOException {
+        SampleInfo[] infos = new SampleInfo[SAMPLE_COUNT];
+        for (int i = 0; i < SAMPLE_COUNT; ++i) {
+            Sample sample = samples[i];
+            if (sample == null || !sample.canAdjustVolume()) {
+                continue;
+            }
+            File file = sample.getFile();
+            String hash = file != null && file.isFile() ? ContentHash.of(Files.readAllBytes(file.toPath())) : "";
+            infos[i] = new SampleInfo(sample.getName(),
+                    file == null ? "" : file.getAbsolutePath(),
+                    hash,
+                    sample.getVolumeDb(),
+                    sample.getTrim(),
+                    sample.getPitchSemitones(),
+                    sample.isDithered(),
+                    includePcm ? sample.originalSamples() : null);
+        }
+        return new KitPackage(bank.clone(), halfSpeed, infos);
+    }
+
+    void write(File file) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(MAGIC);
+        bytes.write(FORMAT_VERSION);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(bytes)))) {
+            out.write(bank);
+            out.writeBoolean(halfSpeed);
+            for (SampleInfo sample : samples) {
+                out.writeBoolean(sample != null);
+                if (sample == null) {
+                    continue;
+                }
+                out.writeUTF(sample.name);
+                out.writeUTF(sample.sourcePath);
+                out.writeUTF(sample.sourceHash);
+                out.writeInt(sample.volumeDb);
+                out.writeInt(sample.trim);
+                out.writeInt(sample.pitchSemitones);
+                out.writeBoolean(sample.dither);
+                out.writeInt(sample.pcm == null ? -1 : sample.pcm.length);
+                if (sample.pcm != null) {
+                    for (short s : sample.pcm) {
+                        out.writeShort(s);
+                    }
+                }
+            }
+        }
+        AtomicFileWriter.write(file.toPath(), bytes.toByteArray());
+    }
+
+    static KitPackage read(File file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        if (bytes.length < MAGIC.length + 1
+                || !Arrays.equals(Arrays.copyOf(bytes, MAGIC.length), MAGIC)) {
+            throw new IOException(file.getName() + " is not a kit package");
+        }
+        if (bytes[MAGIC.length] != FORMAT_VERSION) {
+            throw new IOException(file.getName() + ": unsupported kit package version " + bytes[MAGIC.length]);
+        }
+        InputStream inflater = new InflaterInputStream(
+                new ByteArrayInputStream(bytes, MAGIC.length + 1, bytes.length - MAGIC.length - 1));
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(inflater))) {
+            byte[] bank = new byte[RomUtilities.BANK_SIZE];
+            in.readFully(bank);
+            if (!RomUtilities.isKitBank(bank, 0)) {
+                throw new IOException(file.getName() + ": malformed kit bank");
+            }
+            boolean halfSpeed = in.readBoolean();
+            SampleInfo[] samples = new SampleInfo[SAMPLE_COUNT];
+            for (int i = 0; i < SAMPLE_COUNT; ++i) {
+                if (!in.readBoolean()) {
+                    continue;
+                }
+                String name = in.readUTF();
+                String sourcePath = in.readUTF();
+                String sourceHash = in.readUTF();
+                int volumeDb = in.readInt();
+                int trim = in.readInt();
+                int pitchSemitones = in.readInt();
+                boolean dither = in.readBoolean();
+                int pcmLength = in.readInt();
+                if (pcmLength < -1 || pcmLength > MAX_PCM_LENGTH) {
+                    throw new IOException(file.getName() + ": bad sample length " + pcmLength);
+                }
+                short[] pcm = null;
+                if (pcmLength >= 0) {
+                    pcm = new short[pcmLength];
+                    for (int j = 0; j < pcmLength; ++j) {
+                        pcm[j] = in.readShort();
+                    }
+                }
+                samples[i] = new SampleInfo(name, sourcePath, sourceHash, volumeDb, trim, pitchSemitones, dither, pcm);
+            }
+            return new KitPackage(bank, halfSpeed, samples);
+        } catch (EOFException e) {
+            throw new IOException(file.getName() + " is truncated", e);
+        }
+    }
+
+    /**
+     * Finds the source .wav of a sample by its recorded path, or else by
+     * name next to the package, as long as its contents are unchanged.
+     *
+     * @return the file, or null if not found
+     */
+    static File findSource(SampleInfo sample, File packageFile) throws IOException {
+        return findSource(sourceCandidates(sample, packageFile), sample.sourceHash);
+    }
+
+    /**
+     * @return the first of the files that has the given contents, or null
+     */
+    static File findSource(File[] candidates, String hash) throws IOException {
+        for (File candidate : candidates) {
+            if (candidate.isFile() && ContentHash.of(Files.readAllBytes(candidate.toPath())).equals(hash)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static File[] sourceCandidates(SampleInfo sample, File packageFile) {
+        if (sample.sourcePath.isEmpty() || sample.sourceHash.isEmpty()) {
+            return new File[0];
+        }
+        File recorded = new File(sample.sourcePath);
+        return new File[] {
+                recorded,
+                new File(packageFile.getAbsoluteFile().getParentFile(), recorded.getName())
+        };
+    }
+
+    /**
+     * Recreates an editable sample, preferring the stored PCM over decoding
+     * the source file again. With stored PCM, the source file is only looked
+     * for when the sample needs it, so loading reads no .wav files.
+     *
+     * @return null if neither matching PCM nor the source file is available
+     */
+    Sample toSample(int index, File packageFile, boolean halfSpeed)
+            throws IOException, UnsupportedAudioFileException {
+        SampleInfo sample = samples[index];
+        if (sample == null) {
+            return null;
+        }
+        if (sample.pcm != null) {
+            Sample pcmSample = Sample.createFromPcm(sample.name, sample.pcm, this.halfSpeed, sample.dither,
+                    sample.volumeDb, sample.trim, sample.pitchSemitones);
+            pcmSample.setUnverifiedSource(sourceCandidates(sample, packageFile), sample.sourceHash);
+            // Stored PCM is resampled for the half-speed setting it was saved with.
+            if (halfSpeed != this.halfSpeed) {
+                pcmSample.reload(halfSpeed);
+            }
+            return pcmSample;
+        }
+        File source = findSource(sample, packageFile);
+        if (source == null) {
+            return null;
+        }
+        return Sample.createFromWav(source, sample.dither, halfSpeed,
+                sample.volumeDb, sample.trim, sample.pitchSemitones);
+    }
+}
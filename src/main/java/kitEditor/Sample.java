@@ -15,6 +15,14 @@ class Sample {
     private int pitchSemitones = 0;
     private int trim = 0;
     private boolean dither = true;
+    // For samples without a file: the source PCM of a kit package and the
+    // rate it was resampled to. Pitch and speed changes resample it.
+    private short[] storedSamples;
+    private double storedSampleRate;
+    // Files that may be the source of stored PCM, and the hash the source
+    // must have. Only checked when the file is asked for.
+    private File[] unverifiedFiles;
+    private String unverifiedHash;
 
     public Sample(short[] iBuf, String iName) {
         if (iBuf != null) {
@@ -38,6 +46,10 @@ class Sample {
         pitchSemitones = s.pitchSemitones;
         trim = s.trim;
         dither = s.dither;
+        storedSamples = s.storedSamples;
+        storedSampleRate = s.storedSampleRate;
+        unverifiedFiles = s.unverifiedFiles;
+        unverifiedHash = s.unverifiedHash;
     }
 
     public String getName() {
@@ -104,6 +116,27 @@ class Sample {
         return new Sample(buf, name);
     }
 
+    /**
+     * Recreates a sample from source PCM that was already resampled, e.g. by
+     * a kit package. Without a file, pitch and speed changes resample the
+     * PCM instead of the file.
+     *
+     * @param halfSpeed the speed the PCM was resampled for
+     */
+    static Sample createFromPcm(String name, short[] originalSamples, boolean halfSpeed, boolean dither,
+                                int volumeDb, int trim, int pitch) {
+        Sample s = new Sample(null, name);
+        s.originalSamples = originalSamples;
+        s.storedSamples = originalSamples;
+        s.storedSampleRate = sampleRate(halfSpeed, pitch);
+        s.dither = dither;
+        s.volumeDb = volumeDb;
+        s.trim = trim;
+        s.pitchSemitones = pitch;
+        s.processSamples(dither);
+        return s;
+    }
+
     // ------------------
 
     public static Sample createFromWav(File file,
@@ -123,15 +156,33 @@ class Sample {
         return s;
     }
 
+    /**
+     * Sets the possible source files of stored PCM. The first one with the
+     * given content hash becomes the file of the sample, but only once the
+     * file is asked for.
+     */
+    void setUnverifiedSource(File[] candidates, String hash) {
+        unverifiedFiles = candidates;
+        unverifiedHash = hash;
+    }
+
     public void reload(boolean halfSpeed) throws IOException, UnsupportedAudioFileException {
-        if (file == null) {
+        File source = getFile();
+        if (source != null) {
+            originalSamples = readSamples(source, sampleRate(halfSpeed, pitchSemitones));
+        } else if (storedSamples != null) {
+            originalSamples = Sound.resample(storedSampleRate, sampleRate(halfSpeed, pitchSemitones), storedSamples);
+        } else {
             return;
         }
-        double outFactor = Math.pow(2.0, -pitchSemitones / 12.0);
-        originalSamples = readSamples(file, halfSpeed, outFactor);
         processSamples(dither);
     }
 
+    // The rate to resample the source to; higher pitch means fewer samples.
+    private static double sampleRate(boolean halfSpeed, int pitchSemitones) {
+        return (halfSpeed ? 5734 : 11468) * Math.pow(2.0, -pitchSemitones / 12.0);
+    }
+
     public void processSamples(boolean dither) {
         int[] intBuffer = toIntBuffer(originalSamples);
         normalize(intBuffer);
@@ -203,7 +254,7 @@ class Sample {
         return intBuffer;
     }
 
-    private static short[] readSamples(File file, boolean halfSpeed, double outRateFactor) throws UnsupportedAudioFileException, IOException {
+    private static short[] readSamples(File file, double outSampleRate) throws UnsupportedAudioFileException, IOException {
         AudioInputStream ais = AudioSystem.getAudioInputStream(file);
         float inSampleRate = ais.getFormat().getSampleRate();
         AudioFormat outFormat = new AudioFormat(inSampleRate, 16, 1, true, false);
@@ -218,8 +269,6 @@ class Sample {
         convertedAis.close();
         ais.close();
 
-        double outSampleRate = halfSpeed ? 5734 : 11468;
-        outSampleRate *= outRateFactor;
         return Sound.resample(inSampleRate, outSampleRate, samples);
     }
 
@@ -261,7 +310,20 @@ class Sample {
         volumeDb = value;
     }
 
+    /**
+     * @return the source file, or null if there is none or it no longer
+     * has the contents the sample was made from
+     */
     public File getFile() {
+        if (unverifiedFiles != null) {
+            try {
+                file = KitPackage.findSource(unverifiedFiles, unverifiedHash);
+            } catch (IOException e) {
+                file = null;
+            }
+            unverifiedFiles = null;
+            unverifiedHash = null;
+        }
         return file;
     }
 
@@ -281,4 +343,13 @@ class Sample {
     public int getPitchSemitones() {
         return pitchSemitones;
     }
+
+    public boolean isDithered() {
+        return dither;
+    }
+
+    // Resampled source audio, before volume, trim and dither. Not copied.
+    short[] originalSamples() {
+        return originalSamples;
+    }
 }
@@ -0,0 +1,161 @@
+package kitEditor;
+
+/**
+ * Compact spectral fingerprint of a kit sample, for finding samples that
+ * sound alike.
+ * <p>
+ * The sample is cut into SEGMENTS parts of equal length. For each part, the
+ * power spectra of Hann windowed frames are averaged into BANDS bands of
+ * logarithmically increasing width. The band levels in dB, minus their mean
+ * so that volume does not matter, are scaled to unit length and quantized
+ * to bytes. Similar samples have a small squared Euclidean distance.
+ */
+public final class SampleFingerprint {
+    public static final int BANDS = 12;
+    public static final int SEGMENTS = 4;
+    public static final int SIZE = BANDS * SEGMENTS;
+    private static final int FRAME_SIZE = 256;
+    private static final int HOP_SIZE = FRAME_SIZE / 2;
+    private static final double[] WINDOW = new double[FRAME_SIZE];
+    private static final double[] COS = new double[FRAME_SIZE / 2];
+    private static final double[] SIN = new double[FRAME_SIZE / 2];
+    // FFT bins [BAND_EDGES[band], BAND_EDGES[band + 1]), skipping DC.
+    private static final int[] BAND_EDGES = new int[BANDS + 1];
+
+    static {
+        for (int i = 0; i < FRAME_SIZE; ++i) {
+            WINDOW[i] = 0.5 - 0.5 * Math.cos(2 * Math.PI * i / FRAME_SIZE);
+        }
+        for (int i = 0; i < FRAME_SIZE / 2; ++i) {
+            COS[i] = Math.cos(2 * Math.PI * i / FRAME_SIZE);
+            SIN[i] = -Math.sin(2 * Math.PI * i / FRAME_SIZE);
+        }
+        int binCount = FRAME_SIZE / 2;
+        BAND_EDGES[0] = 1;
+        for (int band = 1; band <= BANDS; ++band) {
+            int edge = (int) Math.round(Math.pow(binCount, (double) band / BANDS));
+            BAND_EDGES[band] = Math.max(BAND_EDGES[band - 1] + 1, edge);
+        }
+        BAND_EDGES[BANDS] = binCount + 1;
+    }
+
+    private SampleFingerprint() {
+    }
+
+    /**
+     * @param nibbles packed 4-bit samples, high nibble first
+     */
+    public static byte[] of(byte[] nibbles) {
+        int length = Math.max(FRAME_SIZE, nibbles.length * 2);
+        double[] signal = new double[length];
+        for (int i = 0; i < nibbles.length; ++i) {
+            signal[i * 2] = (((nibbles[i] >> 4) & 0xf) - 7.5) / 7.5;
+            signal[i * 2 + 1] = ((nibbles[i] & 0xf) - 7.5) / 7.5;
+        }
+
+        int frameCount = (length - FRAME_SIZE) / HOP_SIZE + 1;
+        double[][] frameBands = new double[frameCount][];
+        double[] re = new double[FRAME_SIZE];
+        double[] im = new double[FRAME_SIZE];
+        for (int frame = 0; frame < frameCount; ++frame) {
+            for (int i = 0; i < FRAME_SIZE; ++i) {
+                re[i] = signal[frame * HOP_SIZE + i] * WINDOW[i];
+                im[i] = 0;
+            }
+            fft(re, im);
+            double[] bands = new double[BANDS];
+            for (int band = 0; band < BANDS; ++band) {
+                for (int bin = BAND_EDGES[band]; bin < BAND_EDGES[band + 1]; ++bin) {
+                    bands[band] += re[bin] * re[bin] + im[bin] * im[bin];
+                }
+                bands[band] /= BAND_EDGES[band + 1] - BAND_EDGES[band];
+            }
+            frameBands[frame] = bands;
+        }
+
+        double[] levels = new double[SIZE];
+        double mean = 0;
+        for (int segment = 0; segment < SEGMENTS; ++segment) {
+            // Short samples have fewer frames than segments; frames are then reused.
+            int from = Math.min(segment * frameCount / SEGMENTS, frameCount - 1);
+            int to = Math.max(from + 1, (segment + 1) * frameCount / SEGMENTS);
+            for (int band = 0; band < BANDS; ++band) {
+                double power = 0;
+                for (int frame = from; frame < to; ++frame) {
+                    power += frameBands[frame][band];
+                }
+                double level = 10 * Math.log10(power / (to - from) + 1e-9);
+                levels[segment * BANDS + band] = level;
+                mean += level;
+            }
+        }
+        mean /= SIZE;
+
+        double norm = 0;
+        for (int i = 0; i < SIZE; ++i) {
+            levels[i] -= mean;
+            norm += levels[i] * levels[i];
+        }
+        norm = Math.sqrt(norm);
+        byte[] fingerprint = new byte[SIZE];
+        if (norm > 0) {
+            for (int i = 0; i < SIZE; ++i) {
+                fingerprint[i] = (byte) Math.round(levels[i] / norm * Byte.MAX_VALUE);
+            }
+        }
+        return fingerprint;
+    }
+
+    public static int distance(byte[] a, byte[] b) {
+        return distance(a, b, 0);
+    }
+
+    /**
+     * Like distance(a, b), with b being SIZE bytes at bOffset, as in an
+     * array of many fingerprints.
+     */
+    static int distance(byte[] a, byte[] b, int bOffset) {
+        int sum = 0;
+        for (int i = 0; i < SIZE; ++i) {
+            int d = a[i] - b[bOffset + i];
+            sum += d * d;
+        }
+        return sum;
+    }
+
+    // In place radix-2 FFT of FRAME_SIZE values.
+    private static void fft(double[] re, double[] im) {
+        for (int i = 1, j = 0; i < FRAME_SIZE; ++i) {
+            int bit = FRAME_SIZE >> 1;
+            for (; (j & bit) != 0; bit >>= 1) {
+                j ^= bit;
+            }
+            j ^= bit;
+            if (i < j) {
+                double t = re[i];
+                re[i] = re[j];
+                re[j] = t;
+                t = im[i];
+                im[i] = im[j];
+                im[j] = t;
+            }
+        }
+        for (int size = 2; size <= FRAME_SIZE; size <<= 1) {
+            int step = FRAME_SIZE / size;
+            for (int start = 0; start < FRAME_SIZE; start += size) {
+                for (int k = 0; k < size / 2; ++k) {
+                    int even = start + k;
+                    int odd = even + size / 2;
+                    double wr = COS[k * step];
+                    double wi = SIN[k * step];
+                    double tr = re[odd] * wr - im[odd] * wi;
+                    double ti = re[odd] * wi + im[odd] * wr;
+                    re[odd] = re[even] - tr;
+                    im[odd] = im[even] - ti;
+                    re[even] += tr;
+                    im[even] += ti;
+                }
+            }
+        }
+    }
+}
@@ -8,7 +8,9 @@ import utils.GlobalHolder;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.font.TextAttribute;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.prefs.Preferences;
 
 public class LSDPatcher {
@@ -49,9 +51,71 @@ public class LSDPatcher {
         System.out.println("java -jar LSDJPatcher.jar png2romfnt <romFile> <pngfile> <index> <fontname>");
         System.out.println(" Imports the PNG into the rom with given name.\n");
 
+        System.out.println("java -jar LSDJPatcher.jar batchpng2fnt <outDirectory> <pngFile|directory|glob>...");
+        System.out.println("java -jar LSDJPatcher.jar batchfnt2png <outDirectory> <fntFile|directory|glob>...");
+        System.out.println("java -jar LSDJPatcher.jar batchromfnt2png [--extended] <outDirectory> <romFile|directory|glob>...");
+        System.out.println("java -jar LSDJPatcher.jar batchpng2romfnt <pngfile> <index> <fontname> <romFile|directory|glob>...");
+        System.out.println(" Like the commands above, for many files at once. Directories stand for the");
+        System.out.println(" .png, .lsdfnt or .gb files in them. Fonts are named like the files, and fonts");
+        System.out.println(" extracted from a ROM go to a directory named like the ROM, as <index>-<fontname>.png.");
+        System.out.println(" Files with the same name are not converted together.\n");
+
         System.out.println("java -jar LSDJPatcher.jar clone <inRomFile> <outRomlFile>");
         System.out.println(" Clones all customizations from a ROM file to another.\n");
 
+        System.out.println("java -jar LSDJPatcher.jar compactsav <savFile> [<outSavFile>]");
+        System.out.println(" Recompresses all songs and stores them in consecutive blocks.\n");
+
+        System.out.println("java -jar LSDJPatcher.jar savexport [--rom <romFile>] <outDirectory> <savFile|directory>...");
+        System.out.println(" Exports all songs of the given saves to .lsdprj files, skipping duplicates.");
+        System.out.println(" Kits are included if a ROM is given.\n");
+
+        System.out.println("java -jar LSDJPatcher.jar savarchive [--rom <romFile>] <archiveDirectory> <savFile|directory>...");
+        System.out.println(" Stores saves as snapshots named like the files, keeping each song and kit only once.");
+        System.out.println(" Saves with the same file name are prefixed with their directory names. A snapshot");
+        System.out.println(" is never replaced by different contents.\n");
+
+        System.out.println("java -jar LSDJPatcher.jar savrestore [--rom <romFile>] <archiveDirectory> <snapshot> <outSavFile>");
+        System.out.println(" Rebuilds a save from an archive snapshot. If a ROM is given, the kits stored with the");
+        System.out.println(" snapshot are written back to their banks of the ROM.\n");
+
+        System.out.println("java -jar LSDJPatcher.jar savdiff <savFile|directory> <savFile|directory>...");
+        System.out.println(" Lists song changes between each consecutive pair of saves.\n");
+
+        System.out.println("java -jar LSDJPatcher.jar inspect <romFile>...");
+        System.out.println(" Prints version, kits, fonts, palettes, free banks and checksum status of ROMs as JSON.\n");
+
+        System.out.println("java -jar LSDJPatcher.jar inspectsav <savFile|directory>...");
+        System.out.println(" Prints the songs, free blocks and SRAM size of saves as JSON.\n");
+
+        System.out.println("java -jar LSDJPatcher.jar kitsearch <libraryDirectory> [<query>]");
+        System.out.println(" Indexes the .kit and .lsdkit files below a directory, then lists the kits");
+        System.out.println(" whose name or sample names contain the query. Only changed files are read again.\n");
+
+        System.out.println("java -jar LSDJPatcher.jar kitinsert <romFile> <kitFile>...");
+        System.out.println(" Writes kits to the first empty kit banks of a ROM.\n");
+
+        System.out.println("java -jar LSDJPatcher.jar kitsimilar <libraryDirectory> <kitFile> <sampleName|sampleNumber> [<count>]");
+        System.out.println(" Lists the library samples that sound most like a sample of a kit, nearest first.\n");
+
+        System.out.println("java -jar LSDJPatcher.jar palexport <romFile> <packFile.lsdpals>");
+        System.out.println(" Writes every palette of a ROM to a palette pack.\n");
+
+        System.out.println("java -jar LSDJPatcher.jar palimport <romFile> <packFile.lsdpals>");
+        System.out.println(" Replaces the palettes of a ROM with those of a palette pack, in order.\n");
+
+        System.out.println("java -jar LSDJPatcher.jar palgen <romFile> <image> <paletteIndex> [<paletteName>]");
+        System.out.println(" Replaces the colors of a palette, counted from 1, with colors picked from an image.\n");
+
+    }
+
+    // Returns -1 if the argument is not a number.
+    private static int parseCount(String argument) {
+        try {
+            return Integer.parseInt(argument);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
     }
 
     public static void main(String[] args) {
@@ -91,6 +155,36 @@ public class LSDPatcher {
         UIManager.put("MenuItem.font", selectedFont);
     }
 
+    private interface SavBatchCommand {
+        boolean run(String romFile, String directory, List<String> savFiles);
+    }
+
+    // Handles [--rom <romFile>] <directory> <savFile|directory>...
+    private static void runSavBatchCommand(String[] args, SavBatchCommand command) {
+        String romFile = null;
+        int firstPath = 1;
+        if (args[1].equalsIgnoreCase("--rom")) {
+            romFile = args[2];
+            firstPath = 3;
+        }
+        if (args.length < firstPath + 2) {
+            usage();
+            return;
+        }
+        List<String> savFiles = Arrays.asList(args).subList(firstPath + 1, args.length);
+        if (!command.run(romFile, args[firstPath], savFiles)) {
+            System.exit(1);
+        }
+    }
+
+    private static void exportSavSongs(String[] args) {
+        runSavBatchCommand(args, CommandLineFunctions::exportSavSongs);
+    }
+
+    private static void archiveSavs(String[] args) {
+        runSavBatchCommand(args, CommandLineFunctions::archiveSavs);
+    }
+
     private static void processArguments(String[] args) {
         String command = args[0].toLowerCase();
 
@@ -114,9 +208,90 @@ public class LSDPatcher {
         } else if (command.compareTo("png2romfnt") == 0 && args.length == 5) {
             // -1 to allow 1-3 range instead of 0-2
             CommandLineFunctions.loadPngToRom(args[1], args[2], Integer.parseInt(args[3]) - 1, args[4]);
+        } else if (command.compareTo("batchpng2fnt") == 0 && args.length >= 3) {
+            if (!CommandLineFunctions.pngsToFonts(args[1], Arrays.asList(args).subList(2, args.length))) {
+                System.exit(1);
+            }
+        } else if (command.compareTo("batchfnt2png") == 0 && args.length >= 3) {
+            if (!CommandLineFunctions.fontsToPngs(args[1], Arrays.asList(args).subList(2, args.length))) {
+                System.exit(1);
+            }
+        } else if (command.compareTo("batchromfnt2png") == 0 && args.length >= (includeGfxCharacters ? 4 : 3)) {
+            int firstPath = includeGfxCharacters ? 3 : 2;
+            if (!CommandLineFunctions.extractRomFonts(args[firstPath - 1],
+                    Arrays.asList(args).subList(firstPath, args.length), includeGfxCharacters)) {
+                System.exit(1);
+            }
+        } else if (command.compareTo("batchpng2romfnt") == 0 && args.length >= 5) {
+            // -1 to allow 1-3 range instead of 0-2
+            if (!CommandLineFunctions.importFontToRoms(args[1], Integer.parseInt(args[2]) - 1, args[3],
+                    Arrays.asList(args).subList(4, args.length))) {
+                System.exit(1);
+            }
         } else if (command.compareTo("clone") == 0 && args.length == 3) {
             // -1 to allow 1-3 range instead of 0-2
             CommandLineFunctions.copyAllCustomizations(args[1], args[2]);
+        } else if (command.compareTo("compactsav") == 0 && (args.length == 2 || args.length == 3)) {
+            CommandLineFunctions.compactSav(args[1], args[args.length - 1]);
+        } else if (command.compareTo("savexport") == 0 && args.length >= 3) {
+            exportSavSongs(args);
+        } else if (command.compareTo("savarchive") == 0 && args.length >= 3) {
+            archiveSavs(args);
+        } else if (command.compareTo("savrestore") == 0 && args.length == 4) {
+            if (!CommandLineFunctions.restoreSav(null, args[1], args[2], args[3])) {
+                System.exit(1);
+            }
+        } else if (command.compareTo("savrestore") == 0 && args.length == 6 && args[1].equalsIgnoreCase("--rom")) {
+            if (!CommandLineFunctions.restoreSav(args[2], args[3], args[4], args[5])) {
+                System.exit(1);
+            }
+        } else if (command.compareTo("savdiff") == 0 && args.length >= 2) {
+            if (!CommandLineFunctions.diffSavs(Arrays.asList(args).subList(1, args.length))) {
+                System.exit(1);
+            }
+        } else if (command.compareTo("inspect") == 0 && args.length >= 2) {
+            if (!CommandLineFunctions.inspectRoms(Arrays.asList(args).subList(1, args.length))) {
+                System.exit(1);
+            }
+        } else if (command.compareTo("inspectsav") == 0 && args.length >= 2) {
+            if (!CommandLineFunctions.inspectSavs(Arrays.asList(args).subList(1, args.length))) {
+                System.exit(1);
+            }
+        } else if (command.compareTo("kitsearch") == 0 && (args.length == 2 || args.length == 3)) {
+            if (!CommandLineFunctions.searchKits(args[1], args.length == 3 ? args[2] : "")) {
+                System.exit(1);
+            }
+        } else if (command.compareTo("kitsimilar") == 0 && (args.length == 4 || args.length == 5)) {
+            int count = args.length == 5 ? parseCount(args[4]) : 10;
+            if (count < 1) {
+                usage();
+                System.exit(1);
+            }
+            if (!CommandLineFunctions.findSimilarSamples(args[1], args[2], args[3], count)) {
+                System.exit(1);
+            }
+        } else if (command.compareTo("kitinsert") == 0 && args.length >= 3) {
+            if (!CommandLineFunctions.insertKits(args[1], Arrays.asList(args).subList(2, args.length))) {
+                System.exit(1);
+            }
+        } else if (command.compareTo("palexport") == 0 && args.length == 3) {
+            if (!CommandLineFunctions.exportPalettes(args[1], args[2])) {
+                System.exit(1);
+            }
+        } else if (command.compareTo("palgen") == 0 && (args.length == 4 || args.length == 5)) {
+            String name = args.length == 5 ? args[4] : null;
+            int palette = parseCount(args[3]);
+            if (palette < 1) {
+                usage();
+                System.exit(1);
+            }
+            if (!CommandLineFunctions.generatePalette(args[1], args[2], palette - 1, name)) {
+                System.exit(1);
+            }
+        } else if (command.compareTo("palimport") == 0 && args.length == 3) {
+            if (!CommandLineFunctions.importPalettes(args[1], args[2])) {
+                System.exit(1);
+            }
         } else {
             usage();
         }
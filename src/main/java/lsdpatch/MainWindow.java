@@ -14,6 +14,8 @@ import utils.RomUtilities;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.File;
@@ -30,11 +32,14 @@ public class MainWindow extends JFrame implements IDocumentListener, KitEditor.L
     JButton editFontsButton = new JButton("Fonts");
     JButton editPalettesButton = new JButton("Palettes");
     JButton saveButton = new JButton("Save...");
+    JMenuItem undoMenuItem = new JMenuItem("Undo");
+    JMenuItem redoMenuItem = new JMenuItem("Redo");
 
     MainWindow() {
         document.subscribe(this);
 
         updateTitle();
+        createMenu();
         JPanel panel = new JPanel();
         getContentPane().add(panel);
         MigLayout rootLayout = new MigLayout("wrap 6");
@@ -80,6 +85,31 @@ public class MainWindow extends JFrame implements IDocumentListener, KitEditor.L
         NewVersionChecker.checkGithub(this);
     }
 
+    private void createMenu() {
+        JMenuBar menuBar = new JMenuBar();
+        setJMenuBar(menuBar);
+        JMenu editMenu = new JMenu("Edit");
+        editMenu.setMnemonic(KeyEvent.VK_E);
+        menuBar.add(editMenu);
+
+        undoMenuItem.setMnemonic(KeyEvent.VK_U);
+        undoMenuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK));
+        undoMenuItem.addActionListener(e -> document.undo());
+        editMenu.add(undoMenuItem);
+
+        redoMenuItem.setMnemonic(KeyEvent.VK_R);
+        redoMenuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK));
+        redoMenuItem.addActionListener(e -> document.redo());
+        editMenu.add(redoMenuItem);
+
+        updateUndoMenuItems();
+    }
+
+    private void updateUndoMenuItems() {
+        undoMenuItem.setEnabled(document.canUndo());
+        redoMenuItem.setEnabled(document.canRedo());
+    }
+
     private void openRomUpgradeTool() {
         RomUpgradeTool romUpgradeTool = new RomUpgradeTool(this, document);
         romUpgradeTool.setLocationRelativeTo(this);
@@ -237,6 +267,7 @@ public class MainWindow extends JFrame implements IDocumentListener, KitEditor.L
 
     public void onDocumentDirty(boolean dirty) {
         updateTitle();
+        updateUndoMenuItems();
         upgradeRomButton.setEnabled(!dirty);
         saveButton.setEnabled(dirty);
     }
@@ -268,7 +299,7 @@ public class MainWindow extends JFrame implements IDocumentListener, KitEditor.L
                 String savPath = romPath.replace(".gb", ".sav");
                 document.savFile().saveAs(savPath);
                 savTextField.setText(savPath);
-                document.loadSavFile(savPath);
+                // Not reloaded from savPath, so that its edits can still be undone.
                 document.clearSavDirty();
                 EditorPreferences.setLastPath("sav", savPath);
             }
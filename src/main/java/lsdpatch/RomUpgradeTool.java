@@ -119,19 +119,7 @@ public class RomUpgradeTool extends JFrame {
     }
 
     private String localVersion() {
-        byte[] romImage = localRomImage;
-        for (int i = 0; i < romImage.length; ++i) {
-            if (romImage[i] == 'V' && romImage[i + 2] == '.' && romImage[i + 4] == '.') {
-                String s = "";
-                s += (char)romImage[i + 1];
-                s += (char)romImage[i + 2];
-                s += (char)romImage[i + 3];
-                s += (char)romImage[i + 4];
-                s += (char)romImage[i + 5];
-                return s;
-            }
-        }
-        return null;
+        return RomUtilities.getVersion(localRomImage);
     }
 
     private String fetchLatestRemoteVersion(String basePath) throws IOException {
@@ -6,6 +6,23 @@ public class ColorUtil {
             119, 130, 141, 153, 166, 177, 188, 200, 209, 221, 230, 238, 245, 249, 252, 255
     };
 
+    // Only the top five bits of each channel matter, so every RGB555 color is
+    // looked up in a cube precomputed for each screen mode.
+    private static final int[] RAW_CUBE = new int[32 * 32 * 32];
+    private static final int[] CORRECTED_CUBE = new int[32 * 32 * 32];
+
+    static {
+        for (int r = 0; r < 32; ++r) {
+            for (int g = 0; g < 32; ++g) {
+                for (int b = 0; b < 32; ++b) {
+                    int index = (r << 10) | (g << 5) | b;
+                    RAW_CUBE[index] = (to8bit(r) << 16) | (to8bit(g) << 8) | to8bit(b);
+                    CORRECTED_CUBE[index] = correct(r, g, b);
+                }
+            }
+        }
+    }
+
     static public boolean rawScreen;
 
     public static void setRawScreen(boolean enabled) {
@@ -25,23 +42,34 @@ public class ColorUtil {
         return color / 0xf8;
     }
 
-    // From Sameboy.
     public static int colorCorrect(java.awt.Color c) {
         return colorCorrect(c.getRed(), c.getGreen(), c.getBlue());
     }
 
+    /**
+     * @return the screen color of an 8-bit per channel color, as 0xRRGGBB
+     */
     public static int colorCorrect(int r, int g, int b) {
-        if (rawScreen) {
-            r = (((r >> 3) << 3) * 0xff) / 0xf8;
-            g = (((g >> 3) << 3) * 0xff) / 0xf8;
-            b = (((b >> 3) << 3) * 0xff) / 0xf8;
-            return (r << 16) | (g << 8) | b;
-        }
+        return colorCorrect555(r >> 3, g >> 3, b >> 3);
+    }
 
-        r >>= 3;
-        g >>= 3;
-        b >>= 3;
+    /**
+     * @return the screen color of a 5-bit per channel color, as 0xRRGGBB
+     */
+    public static int colorCorrect555(int r, int g, int b) {
+        return colorCorrect555(r, g, b, rawScreen);
+    }
 
+    /**
+     * @return the color of a 5-bit per channel color on the given screen, as 0xRRGGBB
+     */
+    public static int colorCorrect555(int r, int g, int b, boolean raw) {
+        int[] cube = raw ? RAW_CUBE : CORRECTED_CUBE;
+        return cube[(r << 10) | (g << 5) | b];
+    }
+
+    // From Sameboy.
+    private static int correct(int r, int g, int b) {
         r = scaleChannelWithCurve[r];
         g = scaleChannelWithCurve[g];
         b = scaleChannelWithCurve[b];
@@ -64,4 +92,4 @@ public class ColorUtil {
 
         return (new_r << 16) | (new_g << 8) | new_b;
     }
-}
\ No newline at end of file
+}
@@ -6,6 +6,7 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.awt.image.BufferedImage;
+import java.util.Arrays;
 import java.util.LinkedList;
 
 class HuePanel extends JPanel implements MouseListener, MouseMotionListener {
@@ -35,13 +36,13 @@ class HuePanel extends JPanel implements MouseListener, MouseMotionListener {
     public void paintComponent(Graphics g) {
         super.paintComponent(g);
         BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = new int[width * height];
         for (int y = 0; y < height; ++y) {
-            Color color = Color.getHSBColor((float) y / height, 1, 1);
-            color = new Color(ColorUtil.colorCorrect(color));
-            for (int x = 0; x < width; ++x) {
-                image.setRGB(x, y, color.getRGB());
-            }
+            int rgb = Color.HSBtoRGB((float) y / height, 1, 1);
+            Arrays.fill(pixels, y * width, (y + 1) * width,
+                    ColorUtil.colorCorrect((rgb >> 16) & 0xff, (rgb >> 8) & 0xff, rgb & 0xff));
         }
+        image.getRaster().setDataElements(0, 0, width, height, pixels);
         g.drawImage(image, 0, 0, null);
 
         Graphics2D g2d = (Graphics2D) g;
@@ -0,0 +1,77 @@
+package paletteEditor;
+
+import java.awt.color.ColorSpace;
+import java.awt.image.*;
+
+/**
+ * A screenshot whose pixels are indexes to the 15 colors of a palette:
+ * background, mid and foreground of each of the five color sets. The
+ * screenshot is indexed once; rendering it with other colors only makes a
+ * new color model for the same raster.
+ */
+class IndexedScreenShot {
+    static final int COLOR_COUNT = 15;
+    // Rendered as magenta, like colors missing from the palette.
+    private static final int UNKNOWN = COLOR_COUNT;
+    private static final int UNKNOWN_RGB = 0xff00ff;
+    private static final int[] SCREEN_SHOT_COLORS = {
+            ScreenShotColors.NORMAL_BG, ScreenShotColors.NORMAL_MID, ScreenShotColors.NORMAL_FG,
+            ScreenShotColors.SHADED_BG, ScreenShotColors.SHADED_MID, ScreenShotColors.SHADED_FG,
+            ScreenShotColors.ALT_BG, ScreenShotColors.ALT_MID, ScreenShotColors.ALT_FG,
+            ScreenShotColors.CUR_BG, ScreenShotColors.CUR_MID, ScreenShotColors.CUR_FG,
+            ScreenShotColors.SCROLL_BG, ScreenShotColors.SCROLL_MID, ScreenShotColors.SCROLL_FG
+    };
+
+    private final WritableRaster raster;
+
+    IndexedScreenShot(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+        byte[] indexes = new byte[pixels.length];
+        for (int i = 0; i < pixels.length; ++i) {
+            indexes[i] = (byte) indexOf(pixels[i]);
+        }
+        raster = Raster.createInterleavedRaster(new DataBufferByte(indexes, indexes.length),
+                width, height, width, 1, new int[] { 0 }, null);
+    }
+
+    private static int indexOf(int rgb) {
+        for (int i = 0; i < COLOR_COUNT; ++i) {
+            if (SCREEN_SHOT_COLORS[i] == rgb) {
+                return i;
+            }
+        }
+        System.err.printf("%x%n", rgb);
+        return UNKNOWN;
+    }
+
+    /**
+     * @param colors the RGB colors of the color sets, in the order normal,
+     *               shaded, alternate, cursor, scroll bar, each as
+     *               background, mid, foreground
+     */
+    BufferedImage render(int[] colors) {
+        assert colors.length == COLOR_COUNT;
+        int[] colorMap = new int[COLOR_COUNT + 1];
+        System.arraycopy(colors, 0, colorMap, 0, COLOR_COUNT);
+        colorMap[UNKNOWN] = UNKNOWN_RGB;
+        IndexColorModel colorModel = new IndexColorModel(8, colorMap.length, colorMap, 0, false, -1,
+                DataBuffer.TYPE_BYTE);
+        return new BufferedImage(colorModel, raster, false, null);
+    }
+
+    /**
+     * Converts colors to gray the way ColorConvertOp converts an image.
+     */
+    static void desaturate(int[] colors) {
+        BufferedImage image = new BufferedImage(colors.length, 1, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, colors.length, 1, colors, 0, colors.length);
+        ColorSpace colorSpace = ColorSpace.getInstance(ColorSpace.CS_GRAY);
+        new ColorConvertOp(colorSpace, null).filter(image, image);
+        image.getRGB(0, 0, colors.length, 1, colors, 0, colors.length);
+        for (int i = 0; i < colors.length; ++i) {
+            colors[i] &= 0xffffff;
+        }
+    }
+}
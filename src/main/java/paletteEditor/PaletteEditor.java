@@ -2,13 +2,15 @@ package paletteEditor;
 
 import java.awt.*;
 
-import java.awt.color.ColorSpace;
 import java.awt.event.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 
 import Document.Document;
 import net.miginfocom.swing.MigLayout;
+import utils.AtomicFileWriter;
 import utils.EditorPreferences;
 import utils.FileDialogLauncher;
 import utils.RomUtilities;
@@ -21,7 +23,8 @@ public class PaletteEditor extends JFrame implements SwatchPair.Listener {
     private int paletteOffset = -1;
     private int nameOffset = -1;
     private final int previewScale = 2;
-    java.io.File clipboard;
+    // Name and colors of the copied palette.
+    private byte[] clipboard;
 
     private final JLabel songScreenShot = new JLabel();
     private final JLabel instrScreenShot = new JLabel();
@@ -36,6 +39,8 @@ public class PaletteEditor extends JFrame implements SwatchPair.Listener {
 
     private BufferedImage songImage;
     private BufferedImage instrImage;
+    private IndexedScreenShot songScreen;
+    private IndexedScreenShot instrScreen;
 
     private int lastSelectedPaletteIndex = -1;
 
@@ -62,6 +67,25 @@ public class PaletteEditor extends JFrame implements SwatchPair.Listener {
         saveMenuItem.addActionListener(e -> showSaveDialog());
         mnFile.add(saveMenuItem);
 
+        mnFile.addSeparator();
+
+        JMenuItem importAllMenuItem = new JMenuItem("Import All Palettes...");
+        importAllMenuItem.setMnemonic(KeyEvent.VK_I);
+        importAllMenuItem.addActionListener(e -> showImportAllDialog());
+        mnFile.add(importAllMenuItem);
+
+        JMenuItem exportAllMenuItem = new JMenuItem("Export All Palettes...");
+        exportAllMenuItem.setMnemonic(KeyEvent.VK_E);
+        exportAllMenuItem.addActionListener(e -> showExportAllDialog());
+        mnFile.add(exportAllMenuItem);
+
+        mnFile.addSeparator();
+
+        JMenuItem generateMenuItem = new JMenuItem("Generate From Image...");
+        generateMenuItem.setMnemonic(KeyEvent.VK_G);
+        generateMenuItem.addActionListener(e -> showGenerateDialog());
+        mnFile.add(generateMenuItem);
+
         JMenu mnEdit = new JMenu("Edit");
         mnEdit.setMnemonic(KeyEvent.VK_E);
         menuBar.add(mnEdit);
@@ -168,6 +192,8 @@ public class PaletteEditor extends JFrame implements SwatchPair.Listener {
         try {
             songImage = javax.imageio.ImageIO.read(getClass().getResource("/song.bmp"));
             instrImage = javax.imageio.ImageIO.read(getClass().getResource("/instr.bmp"));
+            songScreen = new IndexedScreenShot(songImage);
+            instrScreen = new IndexedScreenShot(instrImage);
         } catch (java.io.IOException e) {
             e.printStackTrace();
         }
@@ -258,8 +284,8 @@ public class PaletteEditor extends JFrame implements SwatchPair.Listener {
         return palette;
     }
 
-    // Returns color scaled to 0-0xff.
-    private java.awt.Color color(int offset) {
+    // Returns color scaled to 0-0xff, as 0xrrggbb.
+    private int rgb(int offset) {
         // gggrrrrr 0bbbbbgg
         int r = (romImage[offset] & 0x1f) << 3;
         int g = ((romImage[offset + 1] & 3) << 6) | ((romImage[offset] & 0xe0) >> 2);
@@ -270,7 +296,11 @@ public class PaletteEditor extends JFrame implements SwatchPair.Listener {
         r /= 0xf8;
         g /= 0xf8;
         b /= 0xf8;
-        return new java.awt.Color(r, g, b);
+        return (r << 16) | (g << 8) | b;
+    }
+
+    private java.awt.Color color(int offset) {
+        return new java.awt.Color(rgb(offset));
     }
 
     private int selectedPaletteOffset() {
@@ -295,13 +325,6 @@ public class PaletteEditor extends JFrame implements SwatchPair.Listener {
         return color(offset);
     }
 
-    private java.awt.Color midColor(int colorSet) {
-        assert colorSet >= 0;
-        assert colorSet < RomUtilities.NUM_COLOR_SETS;
-        int offset = selectedPaletteOffset() + colorSet * RomUtilities.COLOR_SET_SIZE + 2;
-        return color(offset);
-    }
-
     private String paletteName(int palette) {
         assert palette >= 0;
         assert palette < RomUtilities.getNumberOfPalettes(romImage);
@@ -344,93 +367,35 @@ public class PaletteEditor extends JFrame implements SwatchPair.Listener {
         populatingPaletteSelector = false;
     }
 
-    private java.awt.image.BufferedImage modifyUsingPalette(java.awt.image.BufferedImage srcImage) {
-        int w = srcImage.getWidth(); int h = srcImage.getHeight();
-        java.awt.image.BufferedImage dstImage = new java.awt.image.BufferedImage(w, h, java.awt.image.BufferedImage.TYPE_INT_RGB);
-
-        int normalBg = ColorUtil.colorCorrect(firstColor(0));
-        int normalMid = ColorUtil.colorCorrect(midColor(0));
-        int normalFg = ColorUtil.colorCorrect(secondColor(0));
-        int shadedBg = ColorUtil.colorCorrect(firstColor(1));
-        int shadedMid = ColorUtil.colorCorrect(midColor(1));
-        int shadedFg = ColorUtil.colorCorrect(secondColor(1));
-        int alternateBg = ColorUtil.colorCorrect(firstColor(2));
-        int alternateMid = ColorUtil.colorCorrect(midColor(2));
-        int alternateFg = ColorUtil.colorCorrect(secondColor(2));
-        int cursorBg = ColorUtil.colorCorrect(firstColor(3));
-        int cursorMid = ColorUtil.colorCorrect(midColor(3));
-        int cursorFg = ColorUtil.colorCorrect(secondColor(3));
-        int scrollBg = ColorUtil.colorCorrect(firstColor(4));
-        int scrollMid = ColorUtil.colorCorrect(midColor(4));
-        int scrollFg = ColorUtil.colorCorrect(secondColor(4));
-
-        for (int y = 0; y < h; ++y) {
-            for (int x = 0; x < w; ++x) {
-                int rgb = srcImage.getRGB(x, y);
-                int correctedRgb;
-                switch (rgb) {
-                    case ScreenShotColors.NORMAL_BG:
-                        correctedRgb = normalBg;
-                        break;
-                    case ScreenShotColors.NORMAL_MID:
-                        correctedRgb = normalMid;
-                        break;
-                    case ScreenShotColors.NORMAL_FG:
-                        correctedRgb = normalFg;
-                        break;
-                    case ScreenShotColors.SHADED_BG:
-                        correctedRgb = shadedBg;
-                        break;
-                    case ScreenShotColors.SHADED_MID:
-                        correctedRgb = shadedMid;
-                        break;
-                    case ScreenShotColors.SHADED_FG:
-                        correctedRgb = shadedFg;
-                        break;
-                    case ScreenShotColors.ALT_BG:
-                        correctedRgb = alternateBg;
-                        break;
-                    case ScreenShotColors.ALT_MID:
-                        correctedRgb = alternateMid;
-                        break;
-                    case ScreenShotColors.ALT_FG:
-                        correctedRgb = alternateFg;
-                        break;
-                    case ScreenShotColors.CUR_BG:
-                        correctedRgb = cursorBg;
-                        break;
-                    case ScreenShotColors.CUR_MID:
-                        correctedRgb = cursorMid;
-                        break;
-                    case ScreenShotColors.CUR_FG:
-                        correctedRgb = cursorFg;
-                        break;
-                    case ScreenShotColors.SCROLL_BG:
-                        correctedRgb = scrollBg;
-                        break;
-                    case ScreenShotColors.SCROLL_MID:
-                        correctedRgb = scrollMid;
-                        break;
-                    case ScreenShotColors.SCROLL_FG:
-                        correctedRgb = scrollFg;
-                        break;
-                    default:
-                        System.err.printf("%x%n", rgb);
-                        correctedRgb = 0xff00ff;
-                }
-                dstImage.setRGB(x, y, correctedRgb);
-            }
+    // Color corrected background, mid and foreground of each color set, as IndexedScreenShot wants them.
+    private int[] previewColors() {
+        int[] colors = new int[IndexedScreenShot.COLOR_COUNT];
+        int offset = selectedPaletteOffset();
+        for (int colorSet = 0; colorSet < RomUtilities.NUM_COLOR_SETS; ++colorSet) {
+            int colorSetOffset = offset + colorSet * RomUtilities.COLOR_SET_SIZE;
+            // Colors 0, 1 and 3 of the set; color 2 is not shown.
+            colors[colorSet * 3] = screenColor(colorSetOffset);
+            colors[colorSet * 3 + 1] = screenColor(colorSetOffset + 2);
+            colors[colorSet * 3 + 2] = screenColor(colorSetOffset + 3 * 2);
         }
         if (desaturateToggleButton.isSelected()) {
-            ColorSpace colorSpace = ColorSpace.getInstance(java.awt.color.ColorSpace.CS_GRAY);
-            return new java.awt.image.ColorConvertOp(colorSpace, null).filter(dstImage, dstImage);
+            IndexedScreenShot.desaturate(colors);
         }
-        return dstImage;
+        return colors;
+    }
+
+    private int screenColor(int offset) {
+        // gggrrrrr 0bbbbbgg
+        int r = romImage[offset] & 0x1f;
+        int g = ((romImage[offset + 1] & 3) << 3) | ((romImage[offset] & 0xe0) >> 5);
+        int b = (romImage[offset + 1] >> 2) & 0x1f;
+        return ColorUtil.colorCorrect555(r, g, b);
     }
 
     private void updateSongAndInstrScreens() {
-        songScreenShot.setIcon(new StretchIcon(modifyUsingPalette(songImage)));
-        instrScreenShot.setIcon(new StretchIcon(modifyUsingPalette(instrImage)));
+        int[] colors = previewColors();
+        songScreenShot.setIcon(new StretchIcon(songScreen.render(colors)));
+        instrScreenShot.setIcon(new StretchIcon(instrScreen.render(colors)));
     }
 
     private void updateSwatches(int colorSetIndex, SwatchPair swatchPair) {
@@ -476,49 +441,34 @@ public class PaletteEditor extends JFrame implements SwatchPair.Listener {
         }
     }
 
-    private void savePalette(String path) {
-        Object selectedItem = paletteSelector.getSelectedItem();
-        if (selectedItem == null) {
-            javax.swing.JOptionPane.showMessageDialog(this, "Couldn't read the palette name.");
-            return;
-        }
-        String paletteName = (String) selectedItem;
-        assert paletteName.length() == 4;
+    private void savePalette(File file) {
         try {
-            java.io.FileOutputStream f = new java.io.FileOutputStream(path);
-            f.write(paletteName.charAt(0));
-            f.write(paletteName.charAt(1));
-            f.write(paletteName.charAt(2));
-            f.write(paletteName.charAt(3));
-            for (int i = selectedPaletteOffset(); i < selectedPaletteOffset() + RomUtilities.PALETTE_SIZE; ++i) {
-                f.write(romImage[i]);
-            }
-            f.close();
-        } catch (java.io.IOException e) {
-            javax.swing.JOptionPane.showMessageDialog(this, "Save failed!");
+            AtomicFileWriter.write(file.toPath(), PalettePack.getRecord(romImage, selectedPalette()));
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Save failed!");
         }
     }
 
-    private void loadPalette(java.io.File file) {
-        String name = "";
+    private void loadPalette(File file) {
+        byte[] record;
         try {
-            java.io.RandomAccessFile f = new java.io.RandomAccessFile(file, "r");
-            name += (char) f.read();
-            name += (char) f.read();
-            name += (char) f.read();
-            name += (char) f.read();
-            setPaletteName(paletteSelector.getSelectedIndex(), name);
-            for (int i = selectedPaletteOffset(); i < selectedPaletteOffset() + RomUtilities.PALETTE_SIZE; ++i) {
-                romImage[i] = (byte) f.read();
-            }
-            f.close();
-        } catch (java.io.IOException e) {
-            javax.swing.JOptionPane.showMessageDialog(this, "Load failed!");
+            record = Files.readAllBytes(file.toPath());
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Load failed!");
+            return;
         }
-        int index = paletteSelector.getSelectedIndex();
-        while (areDuplicateNames()) {
-            addNumberToPaletteName(index);
+        if (record.length != PalettePack.RECORD_SIZE) {
+            JOptionPane.showMessageDialog(this, file.getName() + " is not a palette.");
+            return;
         }
+        setPalette(record);
+    }
+
+    // Replaces the selected palette, which gets a new name if its name is taken.
+    private void setPalette(byte[] record) {
+        int index = selectedPalette();
+        PalettePack.setRecord(romImage, index, record, 0);
+        PalettePack.makeNamesUnique(romImage, index);
         populatePaletteSelector();
         paletteSelector.setSelectedIndex(index);
     }
@@ -533,42 +483,62 @@ public class PaletteEditor extends JFrame implements SwatchPair.Listener {
     private void showSaveDialog() {
         File f = FileDialogLauncher.save(this, "Save Palette", "lsdpal");
         if (f != null) {
-            savePalette(f.toString());
+            savePalette(f);
+        }
+    }
+
+    private void showExportAllDialog() {
+        File f = FileDialogLauncher.save(this, "Export All Palettes", PalettePack.EXTENSION);
+        if (f == null) {
+            return;
+        }
+        try {
+            PalettePack.exportPack(romImage, f);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Export failed: " + e.getMessage());
+        }
+    }
+
+    private void showImportAllDialog() {
+        File f = FileDialogLauncher.load(this, "Import All Palettes", PalettePack.EXTENSION);
+        if (f == null) {
+            return;
+        }
+        int index = selectedPalette();
+        try {
+            PalettePack.importPack(f, romImage);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Import failed: " + e.getMessage());
+            return;
         }
+        populatePaletteSelector();
+        paletteSelector.setSelectedIndex(index);
+    }
+
+    // Replaces the colors of the selected palette with colors from an image.
+    private void showGenerateDialog() {
+        File f = FileDialogLauncher.load(this, "Generate Palette From Image",
+                new String[] { "png", "bmp", "gif", "jpg", "jpeg" });
+        if (f == null) {
+            return;
+        }
+        BufferedImage image;
+        try {
+            image = javax.imageio.ImageIO.read(f);
+        } catch (IOException e) {
+            image = null;
+        }
+        if (image == null) {
+            JOptionPane.showMessageDialog(this, "Couldn't read " + f.getName() + ".");
+            return;
+        }
+        PaletteGenerator.writePalette(romImage, selectedPalette(), PaletteGenerator.generate(image));
+        updateAllSwatches();
     }
 
     private void copyPalette() {
-	    try {
-		    clipboard = java.io.File.createTempFile("lsdpatcher", "palette");
-	    } catch (Exception e) {
-		    e.printStackTrace();
-	    }
-	    savePalette(clipboard.getAbsolutePath());
-	    menuItemPaste.setEnabled(true);
-    }
-
-    private boolean areDuplicateNames() {
-	    int paletteCount = RomUtilities.getNumberOfPalettes(romImage);
-	    for (int i = 0; i < paletteCount; ++i) {
-		    for (int j = i + 1; j < paletteCount; ++j) {
-			    if (paletteName(i).equals(paletteName(j))) {
-				    return true;
-			    }
-		    }
-	    }
-	    return false;
-    }
-
-    private void addNumberToPaletteName(int paletteIndex) {
-	    char[] name = paletteName(paletteIndex).toCharArray();
-	    char lastChar = name[name.length - 1];
-	    if (Character.isDigit(lastChar)) {
-		    ++lastChar;
-	    } else {
-		    lastChar = '1';
-	    }
-	    name[name.length - 1] = lastChar;
-	    setPaletteName(paletteIndex, new String(name));
+        clipboard = PalettePack.getRecord(romImage, selectedPalette());
+        menuItemPaste.setEnabled(true);
     }
 
     private void onPaletteSelected() {
@@ -589,13 +559,7 @@ public class PaletteEditor extends JFrame implements SwatchPair.Listener {
         }
     }
 
-	private void pastePalette() {
-		int paletteIndex = paletteSelector.getSelectedIndex();
-		loadPalette(clipboard);
-		while (areDuplicateNames()) {
-			addNumberToPaletteName(paletteIndex);
-		}
-		populatePaletteSelector();
-		paletteSelector.setSelectedIndex(paletteIndex);
-	}
+    private void pastePalette() {
+        setPalette(clipboard);
+    }
 }
@@ -0,0 +1,287 @@
+package paletteEditor;
+
+import utils.RomUtilities;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Makes a palette from the colors of an image. The image is reduced to a
+ * histogram of RGB555 colors, which k-means clusters into a few dominant
+ * colors. Each of those is matched to the RGB555 color that is displayed
+ * most like it, then the colors are shared out between the color sets:
+ * <ul>
+ * <li>normal and shaded: the most common color as background, with the
+ * color that contrasts most with it as text</li>
+ * <li>alternate: the next most common color</li>
+ * <li>cursor and scroll bar: the two most saturated colors</li>
+ * </ul>
+ * Mid-tones are found the same way as in the editor.
+ */
+public class PaletteGenerator {
+    static final int CLUSTER_COUNT = 8;
+    private static final int MAX_ITERATIONS = 20;
+    // Larger images are sampled down to about this many pixels.
+    private static final int MAX_SAMPLES = 1 << 20;
+    private static final int NORMAL = 0;
+    private static final int SHADED = 1;
+    private static final int ALTERNATE = 2;
+    private static final int CURSOR = 3;
+    private static final int SCROLL_BAR = 4;
+    // How far the shaded background moves towards the text color, in percent.
+    private static final int SHADE = 15;
+
+    private PaletteGenerator() {
+    }
+
+    // A dominant color of the image, as displayed with color correction.
+    private static final class Cluster {
+        final RGB555 rgb555;
+        final Color screen;
+
+        Cluster(Color color) {
+            rgb555 = nearest(color);
+            screen = new Color(ColorUtil.colorCorrect555(rgb555.r(), rgb555.g(), rgb555.b(), false));
+        }
+    }
+
+    /**
+     * @return the number of sampled pixels of each RGB555 color, indexed
+     * by r << 10 | g << 5 | b
+     */
+    static int[] histogram(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int step = (int) Math.max(1, Math.ceil(Math.sqrt((double) width * height / MAX_SAMPLES)));
+        int[] histogram = new int[32 * 32 * 32];
+        int[] row = new int[width];
+        for (int y = 0; y < height; y += step) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x += step) {
+                int rgb = row[x];
+                ++histogram[((rgb >> 9) & 0x7c00) | ((rgb >> 6) & 0x3e0) | ((rgb >> 3) & 0x1f)];
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Clusters the colors of a histogram by k-means, weighted by pixel count.
+     *
+     * @return the cluster centers as 8-bit RGB, most common first
+     */
+    static List<Color> dominantColors(int[] histogram, int count) {
+        int binCount = 0;
+        for (int weight : histogram) {
+            if (weight != 0) {
+                ++binCount;
+            }
+        }
+        int[] colors = new int[binCount * 3];
+        int[] weights = new int[binCount];
+        for (int i = 0, bin = 0; i < histogram.length; ++i) {
+            if (histogram[i] == 0) {
+                continue;
+            }
+            colors[bin * 3] = ColorUtil.to8bit(i >> 10);
+            colors[bin * 3 + 1] = ColorUtil.to8bit((i >> 5) & 0x1f);
+            colors[bin * 3 + 2] = ColorUtil.to8bit(i & 0x1f);
+            weights[bin++] = histogram[i];
+        }
+        count = Math.min(count, binCount);
+
+        double[] centers = seedCenters(colors, weights, count);
+        int[] assignment = new int[binCount];
+        long[] clusterWeights = new long[count];
+        for (int iteration = 0; iteration < MAX_ITERATIONS; ++iteration) {
+            boolean moved = false;
+            for (int bin = 0; bin < binCount; ++bin) {
+                int nearest = nearestCenter(centers, count, colors, bin);
+                if (nearest != assignment[bin] || iteration == 0) {
+                    assignment[bin] = nearest;
+                    moved = true;
+                }
+            }
+            double[] sums = new double[count * 3];
+            Arrays.fill(clusterWeights, 0);
+            for (int bin = 0; bin < binCount; ++bin) {
+                int cluster = assignment[bin];
+                for (int c = 0; c < 3; ++c) {
+                    sums[cluster * 3 + c] += (double) colors[bin * 3 + c] * weights[bin];
+                }
+                clusterWeights[cluster] += weights[bin];
+            }
+            for (int cluster = 0; cluster < count; ++cluster) {
+                if (clusterWeights[cluster] != 0) {
+                    for (int c = 0; c < 3; ++c) {
+                        centers[cluster * 3 + c] = sums[cluster * 3 + c] / clusterWeights[cluster];
+                    }
+                }
+            }
+            if (!moved) {
+                break;
+            }
+        }
+
+        List<Integer> order = new ArrayList<>();
+        for (int cluster = 0; cluster < count; ++cluster) {
+            if (clusterWeights[cluster] != 0) {
+                order.add(cluster);
+            }
+        }
+        order.sort((a, b) -> Long.compare(clusterWeights[b], clusterWeights[a]));
+        List<Color> result = new ArrayList<>();
+        for (int cluster : order) {
+            result.add(new Color((int) Math.round(centers[cluster * 3]),
+                    (int) Math.round(centers[cluster * 3 + 1]),
+                    (int) Math.round(centers[cluster * 3 + 2])));
+        }
+        return result;
+    }
+
+    // Starts with the most common color, then repeatedly adds the color
+    // that has the most pixels far from all centers so far.
+    private static double[] seedCenters(int[] colors, int[] weights, int count) {
+        int binCount = weights.length;
+        double[] centers = new double[count * 3];
+        double[] distances = new double[binCount];
+        int next = 0;
+        for (int bin = 1; bin < binCount; ++bin) {
+            if (weights[bin] > weights[next]) {
+                next = bin;
+            }
+        }
+        Arrays.fill(distances, Double.MAX_VALUE);
+        for (int cluster = 0; cluster < count; ++cluster) {
+            for (int c = 0; c < 3; ++c) {
+                centers[cluster * 3 + c] = colors[next * 3 + c];
+            }
+            double best = -1;
+            for (int bin = 0; bin < binCount; ++bin) {
+                distances[bin] = Math.min(distances[bin], distance(centers, cluster, colors, bin));
+                double score = distances[bin] * weights[bin];
+                if (score > best) {
+                    best = score;
+                    next = bin;
+                }
+            }
+        }
+        return centers;
+    }
+
+    private static double distance(double[] centers, int cluster, int[] colors, int bin) {
+        double dr = centers[cluster * 3] - colors[bin * 3];
+        double dg = centers[cluster * 3 + 1] - colors[bin * 3 + 1];
+        double db = centers[cluster * 3 + 2] - colors[bin * 3 + 2];
+        return dr * dr + dg * dg + db * db;
+    }
+
+    private static int nearestCenter(double[] centers, int count, int[] colors, int bin) {
+        int nearest = 0;
+        double nearestDistance = Double.MAX_VALUE;
+        for (int cluster = 0; cluster < count; ++cluster) {
+            double distance = distance(centers, cluster, colors, bin);
+            if (distance < nearestDistance) {
+                nearestDistance = distance;
+                nearest = cluster;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * @return the RGB555 color that is displayed most like the given color
+     */
+    static RGB555 nearest(Color target) {
+        int best = 0;
+        double bestDiff = Double.MAX_VALUE;
+        for (int i = 0; i < 32 * 32 * 32; ++i) {
+            double diff = SwatchPair.diff(target, i >> 10, (i >> 5) & 0x1f, i & 0x1f);
+            if (diff < bestDiff) {
+                bestDiff = diff;
+                best = i;
+            }
+        }
+        return new RGB555(best >> 10, (best >> 5) & 0x1f, best & 0x1f);
+    }
+
+    private static int luma(Color color) {
+        return (299 * color.getRed() + 587 * color.getGreen() + 114 * color.getBlue()) / 1000;
+    }
+
+    private static int saturation(Color color) {
+        int max = Math.max(color.getRed(), Math.max(color.getGreen(), color.getBlue()));
+        int min = Math.min(color.getRed(), Math.min(color.getGreen(), color.getBlue()));
+        return max - min;
+    }
+
+    private static Cluster mostContrasting(List<Cluster> clusters, Cluster background) {
+        Cluster best = background;
+        for (Cluster cluster : clusters) {
+            if (Math.abs(luma(cluster.screen) - luma(background.screen))
+                    > Math.abs(luma(best.screen) - luma(background.screen))) {
+                best = cluster;
+            }
+        }
+        // A single color image gets black or white text.
+        if (best == background) {
+            int value = luma(background.screen) < 128 ? 255 : 0;
+            best = new Cluster(new Color(value, value, value));
+        }
+        return best;
+    }
+
+    private static RGB555 mix(RGB555 from, RGB555 to, int percent) {
+        return new RGB555(from.r() + (to.r() - from.r()) * percent / 100,
+                from.g() + (to.g() - from.g()) * percent / 100,
+                from.b() + (to.b() - from.b()) * percent / 100);
+    }
+
+    /**
+     * Colors are matched to how they are displayed with color correction,
+     * whether or not the editor shows the raw screen.
+     *
+     * @return the background and foreground of each color set, in the
+     * order normal, shaded, alternate, cursor, scroll bar
+     */
+    public static RGB555[][] generate(BufferedImage image) {
+        List<Cluster> clusters = new ArrayList<>();
+        for (Color color : dominantColors(histogram(image), CLUSTER_COUNT)) {
+            clusters.add(new Cluster(color));
+        }
+        List<Cluster> bySaturation = new ArrayList<>(clusters);
+        bySaturation.sort((a, b) -> Integer.compare(saturation(b.screen), saturation(a.screen)));
+
+        Cluster[] backgrounds = new Cluster[RomUtilities.NUM_COLOR_SETS];
+        backgrounds[NORMAL] = clusters.get(0);
+        backgrounds[ALTERNATE] = clusters.get(Math.min(1, clusters.size() - 1));
+        backgrounds[CURSOR] = bySaturation.get(0);
+        backgrounds[SCROLL_BAR] = bySaturation.get(Math.min(1, bySaturation.size() - 1));
+
+        RGB555[][] colorSets = new RGB555[RomUtilities.NUM_COLOR_SETS][];
+        for (int colorSet : new int[] { NORMAL, ALTERNATE, CURSOR, SCROLL_BAR }) {
+            Cluster background = backgrounds[colorSet];
+            colorSets[colorSet] = new RGB555[] {
+                    background.rgb555, mostContrasting(clusters, background).rgb555
+            };
+        }
+        RGB555 normalBg = colorSets[NORMAL][0];
+        RGB555 normalFg = colorSets[NORMAL][1];
+        colorSets[SHADED] = new RGB555[] { mix(normalBg, normalFg, SHADE), normalFg };
+        return colorSets;
+    }
+
+    /**
+     * Writes generated color sets, with their mid-tones, to a ROM palette.
+     */
+    public static void writePalette(byte[] romImage, int palette, RGB555[][] colorSets) {
+        int offset = RomUtilities.findPaletteOffset(romImage) + palette * RomUtilities.PALETTE_SIZE;
+        for (int colorSet = 0; colorSet < RomUtilities.NUM_COLOR_SETS; ++colorSet) {
+            SwatchPair.writeColorSet(romImage, offset + colorSet * RomUtilities.COLOR_SET_SIZE,
+                    colorSets[colorSet][0], colorSets[colorSet][1]);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package paletteEditor;
+
+import utils.AtomicFileWriter;
+import utils.RomUtilities;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Palettes as stored in files. One palette is a record of its 4-character
+ * name followed by its 40 bytes of color data; a .lsdpal file is one
+ * record. A palette pack holds every palette of a ROM:
+ * "LSDPALS", format version byte, palette count byte, then the records.
+ */
+public class PalettePack {
+    public static final String EXTENSION = "lsdpals";
+    private static final byte[] MAGIC = "LSDPALS".getBytes(StandardCharsets.US_ASCII);
+    private static final int FORMAT_VERSION = 1;
+    static final int NAME_LENGTH = 4;
+    static final int RECORD_SIZE = NAME_LENGTH + RomUtilities.PALETTE_SIZE;
+    // Last characters tried, in order, when making a palette name unique.
+    private static final String NAME_SUFFIXES = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    private PalettePack() {
+    }
+
+    private static void checkPalettes(byte[] romImage) throws IOException {
+        if (!RomUtilities.validatePaletteData(romImage)) {
+            throw new IOException("Could not find the palettes of the ROM");
+        }
+    }
+
+    /**
+     * @return the name and colors of a ROM palette, as in a .lsdpal file
+     */
+    static byte[] getRecord(byte[] romImage, int palette) {
+        byte[] record = new byte[RECORD_SIZE];
+        int nameOffset = RomUtilities.findPaletteNameOffset(romImage) + palette * RomUtilities.PALETTE_NAME_SIZE;
+        int paletteOffset = RomUtilities.findPaletteOffset(romImage) + palette * RomUtilities.PALETTE_SIZE;
+        System.arraycopy(romImage, nameOffset, record, 0, NAME_LENGTH);
+        System.arraycopy(romImage, paletteOffset, record, NAME_LENGTH, RomUtilities.PALETTE_SIZE);
+        return record;
+    }
+
+    /**
+     * Replaces the name and colors of a ROM palette. The name may then
+     * be the same as that of another palette; see makeNamesUnique.
+     */
+    static void setRecord(byte[] romImage, int palette, byte[] records, int recordOffset) {
+        int nameOffset = RomUtilities.findPaletteNameOffset(romImage) + palette * RomUtilities.PALETTE_NAME_SIZE;
+        int paletteOffset = RomUtilities.findPaletteOffset(romImage) + palette * RomUtilities.PALETTE_SIZE;
+        System.arraycopy(records, recordOffset, romImage, nameOffset, NAME_LENGTH);
+        System.arraycopy(records, recordOffset + NAME_LENGTH, romImage, paletteOffset, RomUtilities.PALETTE_SIZE);
+    }
+
+    /**
+     * Renames palettes whose names are already taken by an earlier palette,
+     * by changing their last character. The palette given as renamed is
+     * checked last, so that it is the one to lose a shared name.
+     *
+     * @param renamed the palette to rename first, or -1
+     */
+    static void makeNamesUnique(byte[] romImage, int renamed) {
+        int paletteCount = RomUtilities.getNumberOfPalettes(romImage);
+        int nameOffset = RomUtilities.findPaletteNameOffset(romImage);
+        Set<String> taken = new HashSet<>();
+        for (int i = 0; i < paletteCount; ++i) {
+            int palette = i;
+            if (renamed != -1 && palette >= renamed) {
+                palette = palette == paletteCount - 1 ? renamed : palette + 1;
+            }
+            int offset = nameOffset + palette * RomUtilities.PALETTE_NAME_SIZE;
+            String name = new String(romImage, offset, NAME_LENGTH, StandardCharsets.ISO_8859_1);
+            String unique = uniqueName(name, taken);
+            taken.add(unique);
+            if (!unique.equals(name)) {
+                romImage[offset + NAME_LENGTH - 1] = (byte) unique.charAt(NAME_LENGTH - 1);
+            }
+        }
+    }
+
+    /**
+     * Renames a ROM palette, giving it a new last character if another
+     * palette already has the name.
+     */
+    public static void setName(byte[] romImage, int palette, String name) {
+        StringBuilder nameBuilder = new StringBuilder(name.toUpperCase());
+        nameBuilder.setLength(Math.min(nameBuilder.length(), NAME_LENGTH));
+        while (nameBuilder.length() < NAME_LENGTH) {
+            nameBuilder.append(' ');
+        }
+        int offset = RomUtilities.findPaletteNameOffset(romImage) + palette * RomUtilities.PALETTE_NAME_SIZE;
+        System.arraycopy(nameBuilder.toString().getBytes(StandardCharsets.ISO_8859_1), 0, romImage, offset, NAME_LENGTH);
+        makeNamesUnique(romImage, palette);
+    }
+
+    static String uniqueName(String name, Set<String> taken) {
+        if (!taken.contains(name)) {
+            return name;
+        }
+        String stem = name.substring(0, name.length() - 1);
+        char last = name.charAt(name.length() - 1);
+        int first = Character.isDigit(last) ? NAME_SUFFIXES.indexOf(last) + 1 : 1;
+        for (int i = 0; i < NAME_SUFFIXES.length(); ++i) {
+            String candidate = stem + NAME_SUFFIXES.charAt((first + i) % NAME_SUFFIXES.length());
+            if (!taken.contains(candidate)) {
+                return candidate;
+            }
+        }
+        return name;
+    }
+
+    /**
+     * Writes all palettes of a ROM to a palette pack.
+     *
+     * @return the number of palettes written
+     */
+    public static int exportPack(byte[] romImage, File file) throws IOException {
+        checkPalettes(romImage);
+        int paletteCount = RomUtilities.getNumberOfPalettes(romImage);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(MAGIC.length + 2 + paletteCount * RECORD_SIZE);
+        bytes.write(MAGIC);
+        bytes.write(FORMAT_VERSION);
+        bytes.write(paletteCount);
+        int nameOffset = RomUtilities.findPaletteNameOffset(romImage);
+        int paletteOffset = RomUtilities.findPaletteOffset(romImage);
+        for (int palette = 0; palette < paletteCount; ++palette) {
+            bytes.write(romImage, nameOffset + palette * RomUtilities.PALETTE_NAME_SIZE, NAME_LENGTH);
+            bytes.write(romImage, paletteOffset + palette * RomUtilities.PALETTE_SIZE, RomUtilities.PALETTE_SIZE);
+        }
+        AtomicFileWriter.write(file.toPath(), bytes.toByteArray());
+        return paletteCount;
+    }
+
+    /**
+     * Replaces the palettes of a ROM with those of a palette pack, first to
+     * first. Palettes beyond the number the ROM has room for are skipped.
+     * Duplicate names are then made unique.
+     *
+     * @return the number of palettes replaced
+     */
+    public static int importPack(File file, byte[] romImage) throws IOException {
+        checkPalettes(romImage);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        int header = MAGIC.length + 2;
+        if (bytes.length < header || !Arrays.equals(Arrays.copyOf(bytes, MAGIC.length), MAGIC)) {
+            throw new IOException(file.getName() + " is not a palette pack");
+        }
+        if (bytes[MAGIC.length] != FORMAT_VERSION) {
+            throw new IOException(file.getName() + ": unsupported palette pack version " + bytes[MAGIC.length]);
+        }
+        int packCount = bytes[MAGIC.length + 1] & 0xff;
+        if (bytes.length != header + packCount * RECORD_SIZE) {
+            throw new IOException(file.getName() + ": expected " + packCount + " palettes");
+        }
+        int count = Math.min(packCount, RomUtilities.getNumberOfPalettes(romImage));
+        for (int palette = 0; palette < count; ++palette) {
+            setRecord(romImage, palette, bytes, header + palette * RECORD_SIZE);
+        }
+        makeNamesUnique(romImage, -1);
+        return count;
+    }
+}
@@ -5,9 +5,25 @@ import java.awt.*;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
+import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class SaturationBrightnessPanel extends JPanel implements HuePanel.Listener, MouseListener, MouseMotionListener {
+    private static final int BAND_COUNT = Runtime.getRuntime().availableProcessors();
+    // Shared by all panels and kept for the life of the program.
+    private static final ExecutorService fieldRenderer = Executors.newFixedThreadPool(BAND_COUNT, runnable -> {
+        Thread thread = new Thread(runnable, "SaturationBrightnessPanel");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private RGB555 rgb555 = null;
     public void printRGB555(RGB555 rgb555) {
         this.rgb555 = rgb555;
@@ -23,6 +39,11 @@ public class SaturationBrightnessPanel extends JPanel implements HuePanel.Listen
 
     HuePanel huePanel;
 
+    // The saturation/brightness field as last rendered, and what it was rendered for.
+    private BufferedImage field;
+    private float fieldHue;
+    private boolean fieldRawScreen;
+
     boolean mousePressed;
 
     public SaturationBrightnessPanel(HuePanel huePanel) {
@@ -62,17 +83,11 @@ public class SaturationBrightnessPanel extends JPanel implements HuePanel.Listen
     @Override
     public void paintComponent(Graphics g) {
         super.paintComponent(g);
-        BufferedImage image = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
-        for (int y = 0; y < getHeight(); ++y) {
-            for (int x = 0; x < getWidth(); ++x) {
-                float s = (float) x / getWidth();
-                float b = 1 - (float) y / getHeight();
-                Color color = Color.getHSBColor(huePanel.hue(), s, b);
-                color = new Color(ColorUtil.colorCorrect(color));
-                image.setRGB(x, y, color.getRGB());
-            }
-        }
-        g.drawImage(image, 0, 0, null);
+        // Renders one image pixel per device pixel on scaled screens.
+        AffineTransform transform = ((Graphics2D) g).getTransform();
+        int width = (int) Math.ceil(getWidth() * transform.getScaleX());
+        int height = (int) Math.ceil(getHeight() * transform.getScaleY());
+        g.drawImage(field(width, height), 0, 0, getWidth(), getHeight(), null);
 
         Graphics2D g2d = (Graphics2D) g;
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
@@ -96,6 +111,59 @@ public class SaturationBrightnessPanel extends JPanel implements HuePanel.Listen
                 getHeight() - fm.getDescent());
     }
 
+    /**
+     * @return the field for the current hue and screen mode, rendered only
+     * if it has not already been rendered at the given size
+     */
+    BufferedImage field(int width, int height) {
+        float hue = huePanel.hue();
+        if (field == null
+                || field.getWidth() != width
+                || field.getHeight() != height
+                || fieldHue != hue
+                || fieldRawScreen != ColorUtil.rawScreen) {
+            field = renderField(width, height, hue);
+            fieldHue = hue;
+            fieldRawScreen = ColorUtil.rawScreen;
+        }
+        return field;
+    }
+
+    // Renders bands of rows in parallel.
+    private static BufferedImage renderField(int width, int height, float hue) {
+        int[] pixels = new int[width * height];
+        int bandHeight = (height + BAND_COUNT - 1) / BAND_COUNT;
+        List<Callable<Object>> bands = new ArrayList<>();
+        for (int top = 0; top < height; top += bandHeight) {
+            int bandTop = top;
+            int bandBottom = Math.min(height, top + bandHeight);
+            bands.add(Executors.callable(() -> renderRows(pixels, width, height, hue, bandTop, bandBottom)));
+        }
+        try {
+            for (Future<Object> future : fieldRenderer.invokeAll(bands)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        image.getRaster().setDataElements(0, 0, width, height, pixels);
+        return image;
+    }
+
+    private static void renderRows(int[] pixels, int width, int height, float hue, int top, int bottom) {
+        for (int y = top; y < bottom; ++y) {
+            float b = 1 - (float) y / height;
+            for (int x = 0; x < width; ++x) {
+                float s = (float) x / width;
+                int rgb = Color.HSBtoRGB(hue, s, b);
+                pixels[y * width + x] = ColorUtil.colorCorrect((rgb >> 16) & 0xff, (rgb >> 8) & 0xff, rgb & 0xff);
+            }
+        }
+    }
+
     @Override
     public void mouseClicked(MouseEvent e) {
     }
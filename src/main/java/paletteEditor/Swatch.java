@@ -43,7 +43,7 @@ public class Swatch extends JPanel {
                 listener.swatchChanged();
             }
         }
-        setBackground(new Color(ColorUtil.colorCorrect(new Color(r << 3, g << 3, b << 3))));
+        setBackground(new Color(ColorUtil.colorCorrect555(r, g, b)));
     }
 
     public void randomize(Random rand) {
@@ -83,24 +83,15 @@ class SwatchPair implements Swatch.Listener {
         fgSwatch.randomize(rand);
     }
 
-    private RGB555 findMidTone(RGB555 bg, RGB555 fg) {
-        boolean prevRawScreen = ColorUtil.rawScreen;
-        ColorUtil.rawScreen = false;
+    // Mid-tones are always found for the color corrected screen.
+    private static RGB555 findMidTone(RGB555 bg, RGB555 fg) {
         Color target = midToneTarget(bg, fg);
-        RGB555 bestRgb = findBestRgb(new RGB555(15, 15, 15), target);
-        ColorUtil.rawScreen = prevRawScreen;
-        return bestRgb;
-    }
-
-    private Color midToneTarget(RGB555 bg, RGB555 fg) {
-        int r1 = ColorUtil.to8bit(bg.r());
-        int g1 = ColorUtil.to8bit(bg.g());
-        int b1 = ColorUtil.to8bit(bg.b());
-        int r2 = ColorUtil.to8bit(fg.r());
-        int g2 = ColorUtil.to8bit(fg.g());
-        int b2 = ColorUtil.to8bit(fg.b());
-        Color bgColor = new Color(ColorUtil.colorCorrect( new Color(r1, g1, b1)));
-        Color fgColor = new Color(ColorUtil.colorCorrect( new Color(r2, g2, b2)));
+        return findBestRgb(new RGB555(15, 15, 15), target);
+    }
+
+    private static Color midToneTarget(RGB555 bg, RGB555 fg) {
+        Color bgColor = new Color(ColorUtil.colorCorrect555(bg.r(), bg.g(), bg.b(), false));
+        Color fgColor = new Color(ColorUtil.colorCorrect555(fg.r(), fg.g(), fg.b(), false));
         int k = 55;
         int midR = (bgColor.getRed() * k + fgColor.getRed() * (100 - k)) / 100;
         int midG = (bgColor.getGreen() * k + fgColor.getGreen() * (100 - k)) / 100;
@@ -108,7 +99,7 @@ class SwatchPair implements Swatch.Listener {
         return new Color(midR, midG, midB);
     }
 
-    private RGB555 findBestRgb(RGB555 start, Color target) {
+    private static RGB555 findBestRgb(RGB555 start, Color target) {
         TreeMap<Double, RGB555> map = new TreeMap<>();
         double startDiff = diff(target, start.r(), start.g(), start.b());
         map.put(startDiff, start);
@@ -124,7 +115,7 @@ class SwatchPair implements Swatch.Listener {
         return findBestRgb(map.firstEntry().getValue(), target);
     }
 
-    private void add(TreeMap<Double, RGB555> map, Color target, RGB555 start, int rd, int gd, int bd) {
+    private static void add(TreeMap<Double, RGB555> map, Color target, RGB555 start, int rd, int gd, int bd) {
         int r = start.r() + rd;
         int g = start.g() + gd;
         int b = start.b() + bd;
@@ -135,11 +126,10 @@ class SwatchPair implements Swatch.Listener {
         map.put(diff(target, r, g, b), rgb555);
     }
 
-    private static double diff(Color target, int r, int g, int b) {
-        int rgb24 = ColorUtil.colorCorrect(
-                ColorUtil.to8bit(r),
-                ColorUtil.to8bit(g),
-                ColorUtil.to8bit(b));
+    // Red-mean distance between a color and how an RGB555 color is displayed
+    // with color correction.
+    static double diff(Color target, int r, int g, int b) {
+        int rgb24 = ColorUtil.colorCorrect555(r, g, b, false);
         int rr = rgb24 >> 16;
         int gg = (rgb24 >> 8) & 0xff;
         int bb = rgb24 & 0xff;
@@ -156,21 +146,25 @@ class SwatchPair implements Swatch.Listener {
     }
 
     public void writeToRom(byte[] romImage, int offset) {
-        int r1 = bgSwatch.r();
-        int g1 = bgSwatch.g();
-        int b1 = bgSwatch.b();
+        writeColorSet(romImage, offset,
+                new RGB555(bgSwatch.r(), bgSwatch.g(), bgSwatch.b()),
+                new RGB555(fgSwatch.r(), fgSwatch.g(), fgSwatch.b()));
+    }
+
+    /**
+     * Writes the background and foreground of a color set, and the mid-tone
+     * between them.
+     */
+    static void writeColorSet(byte[] romImage, int offset, RGB555 bg, RGB555 fg) {
         // gggrrrrr 0bbbbbgg
-        romImage[offset] = (byte) (r1 | (g1 << 5));
-        romImage[offset + 1] = (byte) ((g1 >> 3) | (b1 << 2));
+        romImage[offset] = (byte) (bg.r() | (bg.g() << 5));
+        romImage[offset + 1] = (byte) ((bg.g() >> 3) | (bg.b() << 2));
 
-        int r2 = fgSwatch.r();
-        int g2 = fgSwatch.g();
-        int b2 = fgSwatch.b();
-        romImage[offset + 6] = (byte) (r2 | (g2 << 5));
-        romImage[offset + 7] = (byte) ((g2 >> 3) | (b2 << 2));
+        romImage[offset + 6] = (byte) (fg.r() | (fg.g() << 5));
+        romImage[offset + 7] = (byte) ((fg.g() >> 3) | (fg.b() << 2));
 
         // Mid-tone.
-        RGB555 rgbMid = findMidTone(new RGB555(r1, g1, b1), new RGB555(r2, g2, b2));
+        RGB555 rgbMid = findMidTone(bg, fg);
 
         romImage[offset + 2] = (byte) (rgbMid.r() | (rgbMid.g() << 5));
         romImage[offset + 3] = (byte) ((rgbMid.g() >> 3) | (rgbMid.b() << 2));
@@ -2,6 +2,7 @@ package songManager;
 
 import Document.Document;
 import Document.LSDSavFile;
+import Document.RomKitIndex;
 import net.miginfocom.swing.MigLayout;
 import utils.EditorPreferences;
 import utils.FileDialogLauncher;
@@ -21,6 +22,7 @@ public class SongManager extends JFrame implements ListSelectionListener {
     JButton addLsdSngButton = new JButton();
     JButton clearSlotButton = new JButton();
     JButton exportLsdSngButton = new JButton();
+    JButton compactButton = new JButton();
     JProgressBar jRamUsageIndicator = new JProgressBar();
     JList<String> songList = new JList<>( new String[] { " " } );
     JScrollPane songs = new JScrollPane(songList);
@@ -44,6 +46,9 @@ public class SongManager extends JFrame implements ListSelectionListener {
         exportLsdSngButton.setToolTipText("Export song to .lsdprj");
         exportLsdSngButton.setText("Export songs...");
         exportLsdSngButton.addActionListener(e -> exportLsdSngButton_actionPerformed());
+        compactButton.setToolTipText("Recompress songs and store them in consecutive blocks");
+        compactButton.setText("Compact");
+        compactButton.addActionListener(e -> compactButton_actionPerformed());
         songList.addListSelectionListener(this);
 
         jRamUsageIndicator.setString("");
@@ -61,7 +66,8 @@ public class SongManager extends JFrame implements ListSelectionListener {
         panel.add(jRamUsageIndicator, "cell 0 6 1 1, growx");
         panel.add(addLsdSngButton, "cell 1 0 1 1, growx");
         panel.add(exportLsdSngButton, "cell 1 1 1 1, growx");
-        panel.add(clearSlotButton, "cell 1 2 1 1, growx, gaptop 10, aligny top");
+        panel.add(compactButton, "cell 1 2 1 1, growx");
+        panel.add(clearSlotButton, "cell 1 3 1 1, growx, gaptop 10, aligny top");
 
         pack();
         setVisible(true);
@@ -94,6 +100,23 @@ public class SongManager extends JFrame implements ListSelectionListener {
         updateRamUsageIndicator();
     }
 
+    public void compactButton_actionPerformed() {
+        try {
+            int reclaimedBlocks = savFile.compact();
+            JOptionPane.showMessageDialog(this,
+                    "Reclaimed " + reclaimedBlocks + " blocks.",
+                    "Compact",
+                    JOptionPane.INFORMATION_MESSAGE);
+        } catch (Exception e) {
+            JOptionPane.showMessageDialog(this,
+                    e.getMessage(),
+                    "Compact failed",
+                    JOptionPane.ERROR_MESSAGE);
+        }
+        savFile.populateSongList(songList);
+        updateRamUsageIndicator();
+    }
+
     private void updateRamUsageIndicator() {
         jRamUsageIndicator.setMaximum(savFile.totalBlockCount());
         jRamUsageIndicator.setValue(savFile.usedBlockCount());
@@ -181,11 +204,13 @@ public class SongManager extends JFrame implements ListSelectionListener {
             return;
         }
 
+        // Hash the ROM kits once for the whole batch.
+        RomKitIndex kitIndex = romImage == null ? null : new RomKitIndex(romImage);
         try {
             for (File f : files) {
                 if (f.getName().toLowerCase().endsWith(".lsdsng") ||
                         f.getName().toLowerCase().endsWith(".lsdprj")) {
-                    savFile.addSongFromFile(f.getAbsoluteFile().toString(), romImage);
+                    savFile.addSongFromFile(f.getAbsoluteFile().toString(), romImage, kitIndex);
                     EditorPreferences.setLastPath("lsdprj", f.getAbsolutePath());
                 } else {
                     JOptionPane.showMessageDialog(this,
@@ -1,7 +1,8 @@
 package structures;
 
-import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 /**
  * Helper class to access and manipulate font data.
@@ -24,6 +25,34 @@ public class LSDJFont extends ROMDataManipulator {
     public static final int FONT_TILE_SIZE = 16;
     public static final int GFX_SIZE = FONT_TILE_SIZE * GFX_TILE_COUNT;
 
+    // RGB of color indexes 0-3.
+    private static final int[] GRAY_COLORS = { 0xFFFFFF, 0x969696, 0x808080, 0x000000 };
+    // Bit plane byte spread to every second bit of a 16-bit row, leftmost pixel highest.
+    private static final int[] PLANE_SPREAD = new int[256];
+    // Color index of the brightest RGB component, as in HSB brightness.
+    private static final int[] BRIGHTNESS_TO_INDEX = new int[256];
+
+    static {
+        for (int b = 0; b < 256; ++b) {
+            int spread = 0;
+            for (int bit = 0; bit < 8; ++bit) {
+                spread |= ((b >> bit) & 1) << (bit * 2);
+            }
+            PLANE_SPREAD[b] = spread;
+
+            int lum = (int) (b / 255.0f * 255);
+            BRIGHTNESS_TO_INDEX[b] = lum >= 192 ? 0 : lum >= 64 ? 1 : 3;
+        }
+    }
+
+    // The two first tiles are not mirrored.
+    private static final int FIRST_VARIANT_TILE = 2;
+    private static final int INVERTED_VARIANT_OFFSET = 0x4d2;
+    private static final int SHADED_VARIANT_OFFSET = 0x4d2 * 2;
+    private static final long LOW_BYTES = 0x00ff00ff00ff00ffL;
+    // Sets every second pixel of the low bit plane, alternating by row, in four little endian rows.
+    private static final long SHADE_MASK = 0x00aa005500aa0055L;
+
     private int gfxDataOffset = -1;
 
     public void setGfxDataOffset(int gfxDataOffset) {
@@ -148,85 +177,88 @@ public class LSDJFont extends ROMDataManipulator {
      * Generates the inverted and shaded font variants from the normal tileset.
      */
     public void generateShadedAndInvertedTiles() {
-        for (int i = 2; i < TILE_COUNT; i++) {
-            generateShadedTileVariant(i);
-            generateInvertedTileVariant(i);
-        }
+        generateShadedAndInvertedTiles(FIRST_VARIANT_TILE, TILE_COUNT);
     }
 
-    public void generateInvertedTileVariant(int index) {
-        if (index < 2 || index > TILE_COUNT) {
-            // TODO exception?
-            return;
-        }
-        int sourceLocation = getTileDataLocation(index); // The two first tiles are not mirrored.
-        int invertedLocation = sourceLocation + 0x4d2;
-        for (int i = 0; i < FONT_TILE_SIZE; i += 2) {
-            romImage[invertedLocation + i] = (byte) ~romImage[sourceLocation + i + 1];
-            romImage[invertedLocation + i + 1] = (byte) ~romImage[sourceLocation + i];
+    /**
+     * Generates the inverted and shaded variants of tiles fromTile to
+     * toTile - 1, eight bytes at a time. Tiles without variants are skipped.
+     */
+    public void generateShadedAndInvertedTiles(int fromTile, int toTile) {
+        fromTile = Math.max(fromTile, FIRST_VARIANT_TILE);
+        toTile = Math.min(toTile, TILE_COUNT);
+        ByteBuffer buffer = ByteBuffer.wrap(romImage).order(ByteOrder.LITTLE_ENDIAN);
+        int end = getDataOffset() + toTile * FONT_TILE_SIZE;
+        // Tiles are 16 bytes, so each long holds four whole rows.
+        for (int i = getDataOffset() + fromTile * FONT_TILE_SIZE; i < end; i += 8) {
+            long rows = buffer.getLong(i);
+            long swappedPlanes = ((rows & LOW_BYTES) << 8) | ((rows >>> 8) & LOW_BYTES);
+            buffer.putLong(i + INVERTED_VARIANT_OFFSET, ~swappedPlanes);
+            buffer.putLong(i + SHADED_VARIANT_OFFSET, rows | SHADE_MASK);
         }
     }
 
-
-    public void generateShadedTileVariant(int index) {
-        if (index < 2 || index > TILE_COUNT) {
-            // TODO exception?
-            return;
-        }
-        int sourceLocation = getTileDataLocation(index); // The two first tiles are not mirrored.
-        int shadedLocation = sourceLocation + 0x4d2 * 2;
-        for (int i = 0; i < FONT_TILE_SIZE; i += 2) {
-            int sourceByte = romImage[sourceLocation + i];
-            if (i % 4 == 2) {
-                romImage[shadedLocation + i] = (byte)(sourceByte | 0xaa);
-            } else {
-                romImage[shadedLocation + i] = (byte)(sourceByte | 0x55);
+    /**
+     * Decodes a tile from Game Boy 2bpp planes to color indexes 0-3.
+     *
+     * @param scanline distance between rows in pixels
+     */
+    public static void decodeTile(byte[] data, int offset, int[] pixels, int pixelOffset, int scanline) {
+        for (int row = 0; row < 8; ++row) {
+            int packed = PLANE_SPREAD[data[offset + row * 2] & 0xff]
+                    | (PLANE_SPREAD[data[offset + row * 2 + 1] & 0xff] << 1);
+            int dst = pixelOffset + row * scanline;
+            for (int x = 0; x < 8; ++x) {
+                pixels[dst + x] = (packed >> (14 - x * 2)) & 3;
             }
-            romImage[shadedLocation + i + 1] = romImage[sourceLocation + i + 1];
         }
     }
 
-    private int grayIndexToColor(int index) {
-        switch (index) {
-            case 0 :
-                return 0xFFFFFF;
-            case 1 :
-                return 0x969696;
-            case 2 :
-                return 0x808080;
-            case 3 :
-                return 0x000000;
-            default:
-                return 0xDeadBeef;
+    /**
+     * Encodes color indexes 0-3 of a tile to Game Boy 2bpp planes.
+     *
+     * @param scanline distance between rows in pixels
+     */
+    public static void encodeTile(int[] pixels, int pixelOffset, int scanline, byte[] data, int offset) {
+        for (int row = 0; row < 8; ++row) {
+            int src = pixelOffset + row * scanline;
+            int low = 0;
+            int high = 0;
+            for (int x = 0; x < 8; ++x) {
+                int index = pixels[src + x];
+                low = (low << 1) | (index & 1);
+                high = (high << 1) | ((index >> 1) & 1);
+            }
+            data[offset + row * 2] = (byte) low;
+            data[offset + row * 2 + 1] = (byte) high;
         }
     }
 
     public String loadImageData(String name, BufferedImage image) {
-        int numTiles = image.getHeight()/8 * image.getWidth()/8;
+        int width = image.getWidth();
+        int numTiles = image.getHeight()/8 * width/8;
         // Limiting to either loading text tiles or load all tiles. No partial graphical tiles loading.
         int maxTileIndex = numTiles < LSDJFont.GFX_TILE_COUNT + LSDJFont.TILE_COUNT ? LSDJFont.TILE_COUNT :LSDJFont.TILE_COUNT + LSDJFont.GFX_TILE_COUNT;
-        for (int y = 0; y < image.getHeight(); y++) {
-            for (int x = 0; x < image.getWidth(); x++) {
-                int currentTileIndex = (y / 8) * 8 + x / 8;
-                if (currentTileIndex >= maxTileIndex) break;
-                int rgb = image.getRGB(x, y);
-                float[] color = Color.RGBtoHSB((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF, null);
-                int lum = (int) (color[2] * 255);
-
-                int col = 0;
-                if (lum >= 192)
-                    col = 1;
-                else if (lum >= 64)
-                    col = 2;
-                else if (lum >= 0)
-                    col = 3;
-                setTilePixel(currentTileIndex, x%8, y%8, col);
+        int[] pixels = image.getRGB(0, 0, width, image.getHeight(), null, 0, width);
+        for (int i = 0; i < pixels.length; ++i) {
+            int rgb = pixels[i];
+            int brightness = Math.max((rgb >> 16) & 0xFF, Math.max((rgb >> 8) & 0xFF, rgb & 0xFF));
+            pixels[i] = BRIGHTNESS_TO_INDEX[brightness];
+        }
+        int tilesX = Math.min(FONT_NUM_TILES_X, width / 8);
+        int tilesY = image.getHeight() / 8;
+        for (int tileY = 0; tileY < tilesY; ++tileY) {
+            for (int tileX = 0; tileX < tilesX; ++tileX) {
+                int tile = tileY * FONT_NUM_TILES_X + tileX;
+                if (tile < maxTileIndex) {
+                    encodeTile(pixels, tileY * 8 * width + tileX * 8, width, romImage, getTileDataLocation(tile));
+                }
             }
         }
         StringBuilder sub;
         if (name.length() < 4) {
             sub = new StringBuilder(name);
-            for (int i = 0; i < 4 - sub.length(); i++)
+            while (sub.length() < 4)
                 sub.append(" ");
         } else
             sub = new StringBuilder(name.substring(0, 4));
@@ -237,17 +269,19 @@ public class LSDJFont extends ROMDataManipulator {
         BufferedImage image = new BufferedImage(LSDJFont.FONT_MAP_WIDTH, includeGfxCharacters ? LSDJFont.GFX_FONT_MAP_HEIGHT : LSDJFont.FONT_MAP_HEIGHT,
                 BufferedImage.TYPE_INT_RGB);
 
+        int[] pixels = new int[image.getWidth() * image.getHeight()];
+        int[] tilePixels = new int[8 * 8];
         int tileCount = includeGfxCharacters ? TILE_COUNT + GFX_TILE_COUNT : TILE_COUNT;
         for (int tile = 0; tile < tileCount; ++tile) {
-            int baseX = (tile %  FONT_NUM_TILES_X)*8;
-            int baseY = (tile / FONT_NUM_TILES_X)*8;
+            decodeTile(romImage, getTileDataLocation(tile), tilePixels, 0, 8);
+            int base = (tile / FONT_NUM_TILES_X) * 8 * FONT_MAP_WIDTH + (tile % FONT_NUM_TILES_X) * 8;
             for (int y = 0; y < 8; ++y) {
                 for (int x = 0; x < 8; ++x) {
-                    int colorIndex = getTilePixel(tile, x, y);
-                    image.setRGB(baseX + x, baseY + y, grayIndexToColor(colorIndex));
+                    pixels[base + y * FONT_MAP_WIDTH + x] = GRAY_COLORS[tilePixels[y * 8 + x]];
                 }
             }
         }
+        image.getRaster().setDataElements(0, 0, image.getWidth(), image.getHeight(), pixels);
         return image;
     }
 }
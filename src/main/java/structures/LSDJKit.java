@@ -0,0 +1,129 @@
+package structures;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Read access to a sample kit bank. The data offset is the start of the bank.
+ * <p>
+ * A kit bank starts with a table of 16 little-endian sample pointers: the
+ * first is always 0x4060, the others end samples 0 to 14, or are zero for
+ * unused samples. Sample data follows the header at 0x60.
+ */
+public class LSDJKit extends ROMDataManipulator {
+    public static final int SAMPLE_COUNT = 15;
+    public static final int MAX_SAMPLE_SPACE = 0x3fa0;
+    public static final int SAMPLE_NAMES_OFFSET = 0x22;
+    public static final int SAMPLE_NAME_LENGTH = 3;
+    public static final int NAME_OFFSET = 0x52;
+    public static final int NAME_LENGTH = 6;
+    public static final int VERSION_OFFSET = 0x5f;
+    public static final int SAMPLE_DATA_OFFSET = 0x60;
+    // Samples of version 1 kits are stored in the wave frame order of LSDj 9.2.2.
+    public static final int VERSION_SWIZZLED = 1;
+    // Bytes of 4-bit samples played per Game Boy wave RAM fill.
+    public static final int WAVE_FRAME_SIZE = 16;
+
+    public boolean isKit() {
+        return romImage[dataOffset] == 0x60 && romImage[dataOffset + 1] == 0x40;
+    }
+
+    public String getName() {
+        return string(dataOffset + NAME_OFFSET, NAME_LENGTH);
+    }
+
+    public int getVersion() {
+        // This version field is new for lsdpatcher 1.11.1 and lsdj 9.2.2.
+        // Old kits may have preexisting data here: it cannot be
+        // assumed that all old kits are set to version 0.
+        return romImage[dataOffset + VERSION_OFFSET] & 0xff;
+    }
+
+    /**
+     * Returns the name of a sample, without the zero padding.
+     */
+    public String getSampleName(int sample) {
+        return string(dataOffset + SAMPLE_NAMES_OFFSET + sample * SAMPLE_NAME_LENGTH, SAMPLE_NAME_LENGTH);
+    }
+
+    /**
+     * Returns the length of a sample in bytes, or 0 if unused.
+     */
+    public int getSampleLength(int sample) {
+        int start = word(dataOffset + sample * 2);
+        int stop = word(dataOffset + sample * 2 + 2);
+        return Math.max(0, stop - start);
+    }
+
+    /**
+     * Returns the offset of a sample into the bank, or -1 if unused.
+     */
+    public int getSampleOffset(int sample) {
+        // Pointers are into the 0x4000-0x7fff bank area.
+        return getSampleLength(sample) == 0 ? -1 : word(dataOffset + sample * 2) - 0x4000;
+    }
+
+    public int getUsedSampleSpace() {
+        int used = 0;
+        for (int sample = 0; sample < SAMPLE_COUNT; ++sample) {
+            used += getSampleLength(sample);
+        }
+        return used;
+    }
+
+    public boolean isSwizzled() {
+        return getVersion() == VERSION_SWIZZLED;
+    }
+
+    /**
+     * Returns a copy of the packed 4-bit sample data, two samples per byte,
+     * high nibble first, or null if unused. Swizzled samples are always
+     * whole wave frames, so a sample of any other length is returned as
+     * stored: the version byte of such a kit is stray data.
+     */
+    public byte[] getSampleNibbles(int sample) {
+        int offset = getSampleOffset(sample);
+        if (offset == -1) {
+            return null;
+        }
+        byte[] nibbles = new byte[getSampleLength(sample)];
+        System.arraycopy(romImage, dataOffset + offset, nibbles, 0, nibbles.length);
+        if (isSwizzled() && nibbles.length % WAVE_FRAME_SIZE == 0) {
+            unSwizzle(nibbles);
+        }
+        return nibbles;
+    }
+
+    public static void unSwizzle(byte[] packedNibbles) {
+        if (packedNibbles.length % WAVE_FRAME_SIZE != 0) {
+            throw new IllegalArgumentException("Not whole wave frames: " + packedNibbles.length + " bytes");
+        }
+
+        // Rotates the wave frame left and inverts the signal. Mirrors sbc.java.
+        byte[] tmpBuf = new byte[packedNibbles.length * 2];
+        for (int i = 0; i < packedNibbles.length; i += 16) {
+            for (int j = 0; j < 16; ++j) {
+                int b = packedNibbles[i + j];
+                int dst = ((2 * j + 31) % 32) + (i * 2);
+                tmpBuf[dst] = (byte) ((0xf0 - (b & 0xf0)) >> 4);
+                dst = 2 * (i + j);
+                tmpBuf[dst] = (byte) ((0xf - (b & 0xf)) << 4);
+            }
+        }
+
+        for (int i = 0; i < packedNibbles.length; ++i) {
+            packedNibbles[i] = (byte)(tmpBuf[i * 2] | tmpBuf[i * 2 + 1]);
+        }
+    }
+
+    private int word(int offset) {
+        return (romImage[offset] & 0xff) | ((romImage[offset + 1] & 0xff) << 8);
+    }
+
+    private String string(int offset, int maxLength) {
+        int length = 0;
+        while (length < maxLength && romImage[offset + length] != 0) {
+            ++length;
+        }
+        return new String(romImage, offset, length, StandardCharsets.US_ASCII);
+    }
+}
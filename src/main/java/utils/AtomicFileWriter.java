@@ -0,0 +1,58 @@
+package utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFileAttributeView;
+
+/**
+ * Writes files through a temporary file in the same directory that is renamed
+ * over the target once complete, so readers never see a partially written or
+ * stale-tailed file. A new file gets the default permissions, and a replaced
+ * file keeps its own.
+ */
+public class AtomicFileWriter {
+    private AtomicFileWriter() {
+    }
+
+    /**
+     * Writes the remaining bytes of all buffers, in order, as the new contents of target.
+     */
+    public static void write(Path target, ByteBuffer... buffers) throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        // Not Files.createTempFile, which would make the file owner-only readable.
+        Path temp = directory.resolve("." + target.getFileName() + "." + System.nanoTime() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                long remaining = 0;
+                for (ByteBuffer buffer : buffers) {
+                    remaining += buffer.remaining();
+                }
+                while (remaining > 0) {
+                    remaining -= channel.write(buffers);
+                }
+            }
+            copyPermissions(target, temp);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void copyPermissions(Path from, Path to) throws IOException {
+        PosixFileAttributeView fromView = Files.getFileAttributeView(from, PosixFileAttributeView.class);
+        PosixFileAttributeView toView = Files.getFileAttributeView(to, PosixFileAttributeView.class);
+        if (fromView != null && toView != null && Files.exists(from)) {
+            toView.setPermissions(fromView.readAttributes().permissions());
+        }
+    }
+
+    public static void write(Path target, byte[] data) throws IOException {
+        write(target, ByteBuffer.wrap(data));
+    }
+}
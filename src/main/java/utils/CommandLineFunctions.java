@@ -4,52 +4,94 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
-import java.util.Arrays;
-import java.util.Vector;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.imageio.ImageIO;
 
+import Document.LSDSavFile;
+import Document.SavArchive;
+import Document.SavDiff;
+import Document.SavManifest;
+import kitEditor.KitLibrary;
+import kitEditor.SampleFingerprint;
+import paletteEditor.PaletteGenerator;
+import paletteEditor.PalettePack;
 import structures.LSDJFont;
+import structures.LSDJKit;
 
 public class CommandLineFunctions {
-    public static void pngToFont(String name, String pngFile, String fntFile) {
-        try {
-            byte[] buffer = new byte[LSDJFont.FONT_NUM_TILES_X * LSDJFont.FONT_NUM_TILES_Y * 16];
-            BufferedImage image = ImageIO.read(new File(pngFile));
-            if (image.getWidth() != LSDJFont.FONT_MAP_WIDTH && image.getHeight() != LSDJFont.FONT_MAP_HEIGHT) {
-                System.err.println("Wrong size!");
-                return;
-            }
+    private static void convertPngToFont(String name, File pngFile, File fntFile) throws IOException {
+        byte[] buffer = new byte[LSDJFont.FONT_NUM_TILES_X * LSDJFont.FONT_NUM_TILES_Y * 16];
+        BufferedImage image = ImageIO.read(pngFile);
+        if (image == null) {
+            throw new IOException(pngFile.getName() + " is not an image");
+        }
+        if (image.getWidth() != LSDJFont.FONT_MAP_WIDTH && image.getHeight() != LSDJFont.FONT_MAP_HEIGHT) {
+            throw new IOException("Wrong size!");
+        }
 
-            LSDJFont font = new LSDJFont();
-            font.setRomImage(buffer);
-            font.setDataOffset(0);
-            font.generateShadedAndInvertedTiles();
-            String sub = font.loadImageData(name, image);
+        LSDJFont font = new LSDJFont();
+        font.setRomImage(buffer);
+        font.setDataOffset(0);
+        // Font files only hold the normal tiles; shaded and inverted ones are generated on import.
+        String sub = font.loadImageData(name, image);
 
-            FontIO.saveFnt(new File(fntFile), sub, buffer);
+        FontIO.saveFnt(fntFile, sub, buffer);
+    }
 
+    public static void pngToFont(String name, String pngFile, String fntFile) {
+        try {
+            convertPngToFont(name, new File(pngFile), new File(fntFile));
             System.out.println("OK!");
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    private static void convertFontToPng(File fntFile, File pngFile) throws IOException {
+        byte[] buffer = new byte[LSDJFont.FONT_NUM_TILES_X * LSDJFont.GFX_FONT_NUM_TILES_Y * 16];
+        FontIO.loadFnt(fntFile, buffer);
+        LSDJFont font = new LSDJFont();
+        font.setRomImage(buffer);
+        font.setDataOffset(0);
+        BufferedImage image = font.saveDataToImage(false);
+        ImageIO.write(image, "PNG", pngFile);
+    }
+
     public static void fontToPng(String fntFile, String pngFile) {
         try {
-            byte[] buffer = new byte[LSDJFont.FONT_NUM_TILES_X * LSDJFont.GFX_FONT_NUM_TILES_Y * 16];
-            FontIO.loadFnt(new File(fntFile), buffer);
-            LSDJFont font = new LSDJFont();
-            font.setRomImage(buffer);
-            font.setDataOffset(0);
-            BufferedImage image = font.saveDataToImage(false);
-            ImageIO.write(image, "PNG", new File(pngFile));
+            convertFontToPng(new File(fntFile), new File(pngFile));
             System.out.println("OK!");
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    private static LSDJFont romFont(byte[] romImage, int numFont) {
+        LSDJFont font = new LSDJFont();
+        font.setRomImage(romImage);
+        int selectedFontOffset = RomUtilities.findFontOffset(romImage) + ((numFont + 1) % 3) * LSDJFont.FONT_SIZE
+                + LSDJFont.FONT_HEADER_SIZE;
+        font.setDataOffset(selectedFontOffset);
+        font.setGfxDataOffset(RomUtilities.findGfxFontOffset(romImage));
+        return font;
+    }
+
+    // Returns the written file.
+    private static File extractRomFont(byte[] romImage, int numFont, boolean includeGfxCharacters, File pngFile)
+            throws IOException {
+        BufferedImage image = romFont(romImage, numFont).saveDataToImage(includeGfxCharacters);
+        ImageIO.write(image, "PNG", pngFile);
+        return pngFile;
+    }
+
     public static void extractFontToPng(String romFileName, int numFont, boolean includeGfxCharacters) {
         if (numFont < 0 || numFont > 2) {
             // Already -1-ed.
@@ -57,26 +99,22 @@ public class CommandLineFunctions {
             return;
         }
         try {
-            byte[] romImage = new byte[RomUtilities.BANK_SIZE * RomUtilities.BANK_COUNT];
-            RandomAccessFile romFile = new RandomAccessFile(new File(romFileName), "r");
-            romFile.readFully(romImage);
-            romFile.close();
-            LSDJFont font = new LSDJFont();
-
-            font.setRomImage(romImage);
-            int selectedFontOffset = RomUtilities.findFontOffset(romImage) + ((numFont + 1) % 3) * LSDJFont.FONT_SIZE
-                    + LSDJFont.FONT_HEADER_SIZE;
-            font.setDataOffset(selectedFontOffset);
-            font.setGfxDataOffset(RomUtilities.findGfxFontOffset(romImage));
-            BufferedImage image = font.saveDataToImage(includeGfxCharacters);
-            ImageIO.write(image, "PNG", new File(RomUtilities.getFontName(romImage, numFont) + ".png"));
-
+            byte[] romImage = loadRom(romFileName);
+            extractRomFont(romImage, numFont, includeGfxCharacters,
+                    new File(RomUtilities.getFontName(romImage, numFont) + ".png"));
             System.out.println("OK!");
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    private static void importRomFont(byte[] romImage, BufferedImage image, int numFont, String fontName) {
+        LSDJFont font = romFont(romImage, numFont);
+        String correctedName = font.loadImageData(fontName, image);
+        font.generateShadedAndInvertedTiles();
+        RomUtilities.setFontName(romImage, numFont, correctedName);
+    }
+
     public static void loadPngToRom(String romFileName, String imageFileName, int numFont, String fontName) {
         if (numFont < 0 || numFont > 2) {
             // Already -1-ed.
@@ -84,22 +122,11 @@ public class CommandLineFunctions {
             return;
         }
         try {
-            byte[] romImage = new byte[RomUtilities.BANK_SIZE * RomUtilities.BANK_COUNT];
-            RandomAccessFile romFile = new RandomAccessFile(new File(romFileName), "rw");
-            romFile.readFully(romImage);
-            LSDJFont font = new LSDJFont();
-
-            font.setRomImage(romImage);
-            int selectedFontOffset = RomUtilities.findFontOffset(romImage) + ((numFont + 1) % 3) * LSDJFont.FONT_SIZE
-                    + LSDJFont.FONT_HEADER_SIZE;
-            font.setDataOffset(selectedFontOffset);
-            font.generateShadedAndInvertedTiles();
-
-            String correctedName = font.loadImageData(fontName, ImageIO.read(new File(imageFileName)));
-            RomUtilities.setFontName(romImage, numFont, correctedName);
-            romFile.seek(0);
-            romFile.write(romImage);
-            romFile.close();
+            byte[] romImage = loadRom(romFileName);
+            importRomFont(romImage, ImageIO.read(new File(imageFileName)), numFont, fontName);
+            try (RandomAccessFile romFile = new RandomAccessFile(new File(romFileName), "rw")) {
+                romFile.write(romImage);
+            }
 
             System.out.println("OK!");
         } catch (IOException e) {
@@ -107,21 +134,179 @@ public class CommandLineFunctions {
         }
     }
 
-    // TODO Merge with KitEditor's own version
-    private static boolean isRomBankAKit(int bankIndex, byte[] romImage) {
-        int l_offset = bankIndex * RomUtilities.BANK_SIZE;
-        byte l_char_1 = romImage[l_offset++];
-        byte l_char_2 = romImage[l_offset];
-        return (l_char_1 == 0x60 && l_char_2 == 0x40);
+    private interface BatchTask {
+        // Returns what was written, for the report.
+        String run(File file) throws Exception;
     }
 
-    // TODO Merge with KitEditor's own version
-    private static boolean isRomBankEmpty(int bankIndex, byte[] romImage) {
-        int l_offset = bankIndex * RomUtilities.BANK_SIZE;
-        byte l_char_1 = romImage[l_offset++];
-        byte l_char_2 = romImage[l_offset];
-        return (l_char_1 == -1 && l_char_2 == -1);
+    /**
+     * Runs a task for each file on a thread pool and prints one line per
+     * file, in argument order: "file: result", or "file: FAILED error".
+     *
+     * @return false if any file failed
+     */
+    private static boolean runBatch(List<File> files, BatchTask task) {
+        if (files.isEmpty()) {
+            System.err.println("No files found.");
+            return false;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        int failed = 0;
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (File file : files) {
+                results.add(executor.submit(() -> task.run(file)));
+            }
+            for (int i = 0; i < results.size(); ++i) {
+                try {
+                    System.out.println(files.get(i) + ": " + results.get(i).get());
+                } catch (ExecutionException e) {
+                    System.out.println(files.get(i) + ": FAILED " + e.getCause());
+                    ++failed;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            executor.shutdown();
+        }
+        System.out.printf("%d of %d files done.\n", files.size() - failed, files.size());
+        if (failed == 0) {
+            System.out.println("OK!");
+        }
+        return failed == 0;
+    }
+
+    private static String baseName(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot == -1 ? name : name.substring(0, dot);
+    }
+
+    /**
+     * Output files are named like the input files, so two inputs with the
+     * same name in different directories would overwrite each other.
+     *
+     * @return false if two files have the same base name
+     */
+    private static boolean checkUniqueBaseNames(List<File> files) {
+        Map<String, File> filesByName = new HashMap<>();
+        boolean unique = true;
+        for (File file : files) {
+            File other = filesByName.putIfAbsent(baseName(file), file);
+            if (other != null) {
+                System.err.println(other + " and " + file + " have the same name. Convert them separately.");
+                unique = false;
+            }
+        }
+        return unique;
+    }
+
+    private static boolean makeDirectory(File directory) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            System.err.println("Could not create " + directory);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Converts PNG files to .lsdfnt fonts in outDirectory, named like the
+     * PNG files.
+     *
+     * @return false if any file failed
+     */
+    public static boolean pngsToFonts(String outDirectory, List<String> paths) {
+        File outDir = new File(outDirectory);
+        List<File> files = expandFiles(paths, ".png");
+        if (!checkUniqueBaseNames(files) || !makeDirectory(outDir)) {
+            return false;
+        }
+        return runBatch(files, file -> {
+            File fntFile = new File(outDir, baseName(file) + ".lsdfnt");
+            convertPngToFont(baseName(file).toUpperCase(), file, fntFile);
+            return fntFile.getPath();
+        });
+    }
+
+    /**
+     * Converts fonts to PNG files in outDirectory.
+     *
+     * @return false if any file failed
+     */
+    public static boolean fontsToPngs(String outDirectory, List<String> paths) {
+        File outDir = new File(outDirectory);
+        List<File> files = expandFiles(paths, ".lsdfnt");
+        if (!checkUniqueBaseNames(files) || !makeDirectory(outDir)) {
+            return false;
+        }
+        return runBatch(files, file -> {
+            File pngFile = new File(outDir, baseName(file) + ".png");
+            convertFontToPng(file, pngFile);
+            return pngFile.getPath();
+        });
     }
+
+    /**
+     * Extracts all fonts of each ROM to PNG files in a directory per ROM
+     * below outDirectory. The files are named by font number and name,
+     * e.g. "1-NORMAL.png", as several fonts may have the same name.
+     *
+     * @return false if any file failed
+     */
+    public static boolean extractRomFonts(String outDirectory, List<String> paths, boolean includeGfxCharacters) {
+        File outDir = new File(outDirectory);
+        List<File> files = expandFiles(paths, ".gb");
+        if (!checkUniqueBaseNames(files) || !makeDirectory(outDir)) {
+            return false;
+        }
+        return runBatch(files, file -> {
+            byte[] romImage = loadRom(file.getPath());
+            File romDir = new File(outDir, baseName(file));
+            if (!romDir.isDirectory() && !romDir.mkdirs()) {
+                throw new IOException("Could not create " + romDir);
+            }
+            StringBuilder written = new StringBuilder();
+            for (int numFont = 0; numFont < LSDJFont.FONT_COUNT; ++numFont) {
+                File pngFile = new File(romDir, (numFont + 1) + "-" + RomUtilities.getFontName(romImage, numFont) + ".png");
+                written.append(numFont == 0 ? "" : ", ")
+                        .append(extractRomFont(romImage, numFont, includeGfxCharacters, pngFile).getPath());
+            }
+            return written.toString();
+        });
+    }
+
+    /**
+     * Imports a PNG as font number numFont into each ROM.
+     *
+     * @return false if any file failed
+     */
+    public static boolean importFontToRoms(String imageFileName, int numFont, String fontName, List<String> paths) {
+        if (numFont < 0 || numFont > 2) {
+            // Already -1-ed.
+            System.err.println("the font index must be comprised between 1 and 3.");
+            return false;
+        }
+        BufferedImage image;
+        try {
+            image = ImageIO.read(new File(imageFileName));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        if (image == null) {
+            System.err.println(imageFileName + " is not an image");
+            return false;
+        }
+        return runBatch(expandFiles(paths, ".gb"), file -> {
+            byte[] romImage = loadRom(file.getPath());
+            importRomFont(romImage, image, numFont, fontName);
+            AtomicFileWriter.write(file.toPath(), romImage);
+            return "font " + (numFont + 1);
+        });
+    }
+
     // TODO replace KitEditor's own version with that
     private static void clearKitBank(int bankIndex, byte[] romImage) {
         int baseOffset = bankIndex * RomUtilities.BANK_SIZE;
@@ -181,13 +366,13 @@ public class CommandLineFunctions {
 
             Vector<Integer> inKitsToCopy = new Vector<>();
             for (int index = 0; index < RomUtilities.BANK_COUNT; ++index) {
-                if (isRomBankAKit(index, originRomFile)) {
+                if (RomUtilities.isKitBank(originRomFile, index)) {
                     inKitsToCopy.add(index);
                 }
             }
             Vector<Integer> outAvailableKitSlots = new Vector<>();
             for (int index = 0; index < RomUtilities.BANK_COUNT; ++index) {
-                if (isRomBankAKit(index, destinationRomFile) || isRomBankEmpty(index, destinationRomFile)) {
+                if (RomUtilities.isKitBank(destinationRomFile, index) || RomUtilities.isEmptyKitBank(destinationRomFile, index)) {
                     outAvailableKitSlots.add(index);
                 }
             }
@@ -224,4 +409,536 @@ public class CommandLineFunctions {
         }
     }
 
+    public static void compactSav(String inSavFileName, String outSavFileName) {
+        try {
+            LSDSavFile savFile = new LSDSavFile();
+            savFile.loadFromSav(inSavFileName);
+            int usedBefore = savFile.usedBlockCount();
+            int reclaimedBlocks = savFile.compact();
+            savFile.saveAs(outSavFileName);
+            System.out.printf("Reclaimed %d blocks (%d/%d used, was %d).\n", reclaimedBlocks,
+                    savFile.usedBlockCount(), savFile.totalBlockCount(), usedBefore);
+            System.out.println("OK!");
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static class SavSong {
+        final LSDSavFile savFile;
+        final int slot;
+        final String hash;
+        String fileName;
+
+        SavSong(LSDSavFile savFile, int slot, String hash) {
+            this.savFile = savFile;
+            this.slot = slot;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * Expands directories to the files in them with the given extension, and
+     * file name glob patterns like "roms/*.gb" to the matching files.
+     */
+    private static List<File> expandFiles(List<String> paths, String extension) {
+        List<File> files = new ArrayList<>();
+        for (String path : paths) {
+            File file = new File(path);
+            File[] children;
+            if (file.getName().contains("*") || file.getName().contains("?")) {
+                PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + file.getName());
+                File parent = file.getAbsoluteFile().getParentFile();
+                children = parent.listFiles((dir, name) -> matcher.matches(Paths.get(name)));
+                if (children == null) {
+                    children = new File[0];
+                }
+            } else {
+                children = file.listFiles((dir, name) -> name.toLowerCase().endsWith(extension));
+            }
+            if (children == null) {
+                files.add(file);
+            } else {
+                Arrays.sort(children);
+                files.addAll(Arrays.asList(children));
+            }
+        }
+        return files;
+    }
+
+    private static List<File> expandSavFiles(List<String> paths) {
+        return expandFiles(paths, ".sav");
+    }
+
+    private static List<SavSong> scanSav(File file) throws IOException {
+        LSDSavFile savFile = new LSDSavFile();
+        savFile.loadFromSav(file.getAbsolutePath());
+        List<SavSong> songs = new ArrayList<>();
+        for (int slot = 0; slot < 0x20; ++slot) {
+            if (savFile.getBlocksUsed(slot) == 0) {
+                continue;
+            }
+            String hash = savFile.songHash(slot);
+            if (hash == null) {
+                System.err.printf("%s: song %d is corrupted, skipped.\n", file, slot + 1);
+                continue;
+            }
+            songs.add(new SavSong(savFile, slot, hash));
+        }
+        return songs;
+    }
+
+    /**
+     * Exports every valid song of the given .sav files (or directories of .sav files)
+     * to .lsdprj files in outDirectory. Songs that appear in several saves are only
+     * exported once. Saves are read and written in parallel.
+     *
+     * @return false if any file failed
+     */
+    public static boolean exportSavSongs(String romFileName, String outDirectory, List<String> savPaths) {
+        byte[] romImage = null;
+        if (romFileName != null) {
+            try {
+                romImage = loadRom(romFileName);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return false;
+            }
+        }
+
+        File outDir = new File(outDirectory);
+        if (!outDir.isDirectory() && !outDir.mkdirs()) {
+            System.err.println("Could not create " + outDirectory);
+            return false;
+        }
+
+        List<File> savFiles = expandSavFiles(savPaths);
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        boolean ok = true;
+        int duplicates = 0;
+        try {
+            List<Future<List<SavSong>>> scans = new ArrayList<>();
+            for (File savFile : savFiles) {
+                scans.add(executor.submit(() -> scanSav(savFile)));
+            }
+
+            // Deduplicate and name songs in argument order, so that the output
+            // does not depend on scheduling.
+            Map<LSDSavFile, List<SavSong>> songsBySav = new LinkedHashMap<>();
+            Set<String> hashes = new HashSet<>();
+            Set<String> fileNames = new HashSet<>();
+            for (int i = 0; i < scans.size(); ++i) {
+                List<SavSong> songs;
+                try {
+                    songs = scans.get(i).get();
+                } catch (ExecutionException e) {
+                    System.err.println(savFiles.get(i) + ": " + e.getCause());
+                    ok = false;
+                    continue;
+                }
+                for (SavSong song : songs) {
+                    if (!hashes.add(song.hash)) {
+                        ++duplicates;
+                        continue;
+                    }
+                    String name = song.savFile.getFileName(song.slot).toLowerCase()
+                            + "-" + song.savFile.version(song.slot);
+                    if (!fileNames.add(name)) {
+                        name += "-" + song.hash.substring(0, 8);
+                        // Songs whose hashes share the prefix would still collide.
+                        String suffixed = name;
+                        for (int counter = 2; !fileNames.add(suffixed); ++counter) {
+                            suffixed = name + "-" + counter;
+                        }
+                        name = suffixed;
+                    }
+                    song.fileName = name + ".lsdprj";
+                    songsBySav.computeIfAbsent(song.savFile, k -> new ArrayList<>()).add(song);
+                }
+            }
+
+            // LSDSavFile is not thread safe, so each task exports all songs of one save.
+            final byte[] kits = romImage;
+            List<Future<Integer>> exports = new ArrayList<>();
+            for (List<SavSong> songs : songsBySav.values()) {
+                exports.add(executor.submit(() -> {
+                    for (SavSong song : songs) {
+                        song.savFile.exportSong(song.slot, new File(outDir, song.fileName), kits);
+                    }
+                    return songs.size();
+                }));
+            }
+            int exported = 0;
+            for (Future<Integer> export : exports) {
+                try {
+                    exported += export.get();
+                } catch (ExecutionException e) {
+                    System.err.println(e.getCause());
+                    ok = false;
+                }
+            }
+            System.out.printf("Exported %d songs from %d saves, skipped %d duplicates.\n",
+                    exported, savFiles.size(), duplicates);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ok = false;
+        } finally {
+            executor.shutdown();
+        }
+        if (ok) {
+            System.out.println("OK!");
+        }
+        return ok;
+    }
+
+    private static byte[] loadRom(String romFileName) throws IOException {
+        byte[] romImage = new byte[RomUtilities.BANK_SIZE * RomUtilities.BANK_COUNT];
+        try (RandomAccessFile romFile = new RandomAccessFile(new File(romFileName), "r")) {
+            romFile.readFully(romImage);
+        }
+        return romImage;
+    }
+
+    /**
+     * Stores the given .sav files (or directories of .sav files) as snapshots in
+     * a content-addressed archive, named after the files. Files with the same
+     * name get their directory names as prefix. Existing snapshots are never
+     * replaced with different contents.
+     *
+     * @return false if any file failed
+     */
+    public static boolean archiveSavs(String romFileName, String archiveDirectory, List<String> savPaths) {
+        boolean ok = true;
+        try {
+            byte[] romImage = romFileName == null ? null : loadRom(romFileName);
+            SavArchive archive = new SavArchive(new File(archiveDirectory));
+            List<File> files = expandSavFiles(savPaths);
+            List<String> snapshotNames = SavArchive.snapshotNames(files);
+            for (int i = 0; i < files.size(); ++i) {
+                File file = files.get(i);
+                try {
+                    LSDSavFile savFile = new LSDSavFile();
+                    savFile.loadFromSav(file.getAbsolutePath());
+                    int newObjects = archive.store(snapshotNames.get(i), savFile, romImage);
+                    System.out.printf("%s: snapshot %s, %d new objects\n", file, snapshotNames.get(i), newObjects);
+                } catch (IOException e) {
+                    System.err.println(file + ": " + e);
+                    ok = false;
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        if (ok) {
+            System.out.println("OK!");
+        }
+        return ok;
+    }
+
+    /**
+     * Rebuilds a save from an archive snapshot.
+     *
+     * @param romFileName if not null, the kits stored with the snapshot are written back to this ROM
+     * @return false if it failed
+     */
+    public static boolean restoreSav(String romFileName, String archiveDirectory, String snapshotName,
+                                     String outSavFileName) {
+        try {
+            SavArchive archive = new SavArchive(new File(archiveDirectory));
+            LSDSavFile savFile = archive.restore(snapshotName);
+            if (romFileName != null) {
+                byte[] romImage = loadRom(romFileName);
+                int kitCount = archive.restoreKits(snapshotName, romImage);
+                RomUtilities.fixChecksum(romImage);
+                AtomicFileWriter.write(new File(romFileName).toPath(), romImage);
+                System.out.printf("Restored %d kits to %s\n", kitCount, romFileName);
+            }
+            savFile.saveAs(outSavFileName);
+            System.out.println("OK!");
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private static class SavSummary {
+        final SavDiff.SongState[] songs;
+        final int freeBlocks;
+
+        SavSummary(SavDiff.SongState[] songs, int freeBlocks) {
+            this.songs = songs;
+            this.freeBlocks = freeBlocks;
+        }
+    }
+
+    /**
+     * Prints the song level changes between each consecutive pair of saves.
+     * All saves are summarized in parallel first.
+     *
+     * @return false if any file failed
+     */
+    public static boolean diffSavs(List<String> savPaths) {
+        List<File> savFiles = expandSavFiles(savPaths);
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        List<SavSummary> summaries = new ArrayList<>();
+        try {
+            List<Future<SavSummary>> futures = new ArrayList<>();
+            for (File file : savFiles) {
+                futures.add(executor.submit(() -> {
+                    LSDSavFile savFile = new LSDSavFile();
+                    savFile.loadFromSav(file.getAbsolutePath());
+                    return new SavSummary(SavDiff.summarize(savFile), savFile.freeBlockCount());
+                }));
+            }
+            for (int i = 0; i < futures.size(); ++i) {
+                try {
+                    summaries.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    System.err.println(savFiles.get(i) + ": " + e.getCause());
+                    return false;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            executor.shutdown();
+        }
+
+        for (int i = 1; i < savFiles.size(); ++i) {
+            System.out.println(savFiles.get(i - 1) + " -> " + savFiles.get(i));
+            List<SavDiff.SongChange> changes = SavDiff.compare(summaries.get(i - 1).songs, summaries.get(i).songs);
+            for (SavDiff.SongChange change : changes) {
+                System.out.println(" " + change);
+            }
+            if (changes.isEmpty()) {
+                System.out.println(" no song changes");
+            }
+            System.out.printf(" free blocks %d -> %d\n", summaries.get(i - 1).freeBlocks, summaries.get(i).freeBlocks);
+        }
+        return true;
+    }
+
+    private interface Inspector {
+        void inspect(File file, JsonWriter json) throws IOException;
+    }
+
+    /**
+     * Prints a JSON array with one {"file": ..., key: ...} report per file, in
+     * argument order, or {"file": ..., "error": ...} if the file could not be read.
+     * Files are inspected in parallel.
+     *
+     * @return false if any file failed
+     */
+    private static boolean inspectFiles(List<File> files, String key, Inspector inspector) {
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        boolean ok = true;
+        try {
+            List<Future<String>> reports = new ArrayList<>();
+            for (File file : files) {
+                reports.add(executor.submit(() -> {
+                    JsonWriter json = new JsonWriter();
+                    inspector.inspect(file, json);
+                    return json.toString();
+                }));
+            }
+            System.out.println("[");
+            for (int i = 0; i < reports.size(); ++i) {
+                JsonWriter json = new JsonWriter().beginObject();
+                json.name("file").value(files.get(i).getPath());
+                try {
+                    String report = reports.get(i).get();
+                    json.name(key).raw(report);
+                } catch (ExecutionException e) {
+                    json.name("error").value(String.valueOf(e.getCause()));
+                    ok = false;
+                }
+                json.endObject();
+                System.out.println(json + (i + 1 < reports.size() ? "," : ""));
+            }
+            System.out.println("]");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ok = false;
+        } finally {
+            executor.shutdown();
+        }
+        return ok;
+    }
+
+    /**
+     * Prints a JSON manifest of each ROM; see RomManifest.
+     *
+     * @return false if any file failed
+     */
+    public static boolean inspectRoms(List<String> romPaths) {
+        List<File> romFiles = new ArrayList<>();
+        for (String path : romPaths) {
+            romFiles.add(new File(path));
+        }
+        return inspectFiles(romFiles, "rom", (file, json) -> RomManifest.write(json, loadRom(file.getPath())));
+    }
+
+    /**
+     * Prints a JSON manifest of each .sav file; see SavManifest.
+     *
+     * @return false if any file failed
+     */
+    public static boolean inspectSavs(List<String> savPaths) {
+        return inspectFiles(expandSavFiles(savPaths), "sav", (file, json) -> {
+            LSDSavFile savFile = new LSDSavFile();
+            savFile.loadFromSav(file.getAbsolutePath());
+            SavManifest.write(json, savFile);
+        });
+    }
+
+    /**
+     * Updates the index of a kit library and prints the kits whose name or
+     * sample names contain the query.
+     */
+    public static boolean searchKits(String libraryDirectory, String query) {
+        try {
+            KitLibrary library = new KitLibrary(new File(libraryDirectory));
+            int read = library.update();
+            List<KitLibrary.Entry> matches = library.search(query);
+            for (KitLibrary.Entry entry : matches) {
+                System.out.println(library.fileOf(entry).getPath() + ": " + entry);
+            }
+            System.out.printf("%d of %d kits match, %d files read.\n", matches.size(),
+                    library.search("").size(), read);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Writes each .kit or .lsdkit file to the first empty kit bank of a ROM.
+     */
+    public static boolean insertKits(String romFileName, List<String> kitFileNames) {
+        try {
+            byte[] romImage = loadRom(romFileName);
+            int bank = 0;
+            for (String kitFileName : kitFileNames) {
+                byte[] kit = KitLibrary.readBank(new File(kitFileName));
+                while (bank < RomUtilities.BANK_COUNT && !RomUtilities.isEmptyKitBank(romImage, bank)) {
+                    ++bank;
+                }
+                if (bank == RomUtilities.BANK_COUNT) {
+                    System.err.println("No empty kit bank left for " + kitFileName + ". Aborting.");
+                    return false;
+                }
+                System.arraycopy(kit, 0, romImage, bank * RomUtilities.BANK_SIZE, RomUtilities.BANK_SIZE);
+                System.out.printf("%s: bank %d\n", kitFileName, bank);
+            }
+            RomUtilities.fixChecksum(romImage);
+            AtomicFileWriter.write(new File(romFileName).toPath(), romImage);
+            System.out.println("OK!");
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Writes every palette of a ROM to a palette pack.
+     */
+    public static boolean exportPalettes(String romFileName, String packFileName) {
+        try {
+            int count = PalettePack.exportPack(loadRom(romFileName), new File(packFileName));
+            System.out.printf("%d palettes exported.\n", count);
+            System.out.println("OK!");
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Replaces the palettes of a ROM with those of a palette pack.
+     */
+    public static boolean importPalettes(String romFileName, String packFileName) {
+        try {
+            byte[] romImage = loadRom(romFileName);
+            int count = PalettePack.importPack(new File(packFileName), romImage);
+            RomUtilities.fixChecksum(romImage);
+            AtomicFileWriter.write(new File(romFileName).toPath(), romImage);
+            System.out.printf("%d palettes imported.\n", count);
+            System.out.println("OK!");
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Replaces the colors of a ROM palette with colors picked from an image,
+     * and optionally renames it.
+     */
+    public static boolean generatePalette(String romFileName, String imageFileName, int palette, String name) {
+        try {
+            byte[] romImage = loadRom(romFileName);
+            int paletteCount = RomUtilities.getNumberOfPalettes(romImage);
+            if (!RomUtilities.validatePaletteData(romImage) || palette < 0 || palette >= paletteCount) {
+                System.err.println("No palette " + (palette + 1) + " in " + romFileName + ".");
+                return false;
+            }
+            BufferedImage image = ImageIO.read(new File(imageFileName));
+            if (image == null) {
+                System.err.println("Could not read " + imageFileName + ".");
+                return false;
+            }
+            PaletteGenerator.writePalette(romImage, palette, PaletteGenerator.generate(image));
+            if (name != null) {
+                PalettePack.setName(romImage, palette, name);
+            }
+            RomUtilities.fixChecksum(romImage);
+            AtomicFileWriter.write(new File(romFileName).toPath(), romImage);
+            System.out.println("OK!");
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Updates the index of a kit library and prints the samples that sound
+     * most like a sample of a kit file, given by name or 1-based number.
+     */
+    public static boolean findSimilarSamples(String libraryDirectory, String kitFileName, String sample, int count) {
+        try {
+            LSDJKit kit = new LSDJKit();
+            kit.setRomImage(KitLibrary.readBank(new File(kitFileName)));
+            int index = -1;
+            for (int i = 0; i < LSDJKit.SAMPLE_COUNT && index == -1; ++i) {
+                if (kit.getSampleLength(i) > 0 && (kit.getSampleName(i).equalsIgnoreCase(sample)
+                        || sample.equals(String.valueOf(i + 1)))) {
+                    index = i;
+                }
+            }
+            if (index == -1) {
+                System.err.println("No sample " + sample + " in " + kitFileName);
+                return false;
+            }
+            byte[] fingerprint = SampleFingerprint.of(kit.getSampleNibbles(index));
+
+            KitLibrary library = new KitLibrary(new File(libraryDirectory));
+            library.update();
+            for (KitLibrary.Match match : library.nearest(fingerprint, count)) {
+                System.out.printf("%s: %s %s (%d)\n", library.fileOf(match.entry).getPath(), match.entry.name,
+                        match.entry.sampleNames[match.sample], match.distance);
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
 }
@@ -0,0 +1,131 @@
+package utils;
+
+import structures.LSDJFont;
+import structures.LSDJKit;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Describes the customizable contents of an LSDj ROM image as JSON: version,
+ * kits, fonts, palettes, free kit banks and checksum validity.
+ * <p>
+ * Each of the RomUtilities offset searches runs once; banks are visited once.
+ */
+public class RomManifest {
+    private RomManifest() {
+    }
+
+    public static String toJson(byte[] romImage) {
+        JsonWriter json = new JsonWriter();
+        write(json, romImage);
+        return json.toString();
+    }
+
+    /**
+     * Writes the manifest as the next value of json.
+     */
+    public static void write(JsonWriter json, byte[] romImage) {
+        json.beginObject();
+        json.name("version").value(RomUtilities.getVersion(romImage));
+        json.name("headerChecksumValid").value(RomUtilities.isHeaderChecksumValid(romImage));
+        json.name("globalChecksumValid").value(RomUtilities.isGlobalChecksumValid(romImage));
+
+        json.name("kits").beginArray();
+        int bankCount = romImage.length / RomUtilities.BANK_SIZE;
+        for (int bank = 0; bank < bankCount; ++bank) {
+            if (RomUtilities.isKitBank(romImage, bank)) {
+                writeKit(json, romImage, bank);
+            }
+        }
+        json.endArray();
+
+        json.name("freeBanks").beginArray();
+        for (int bank = 0; bank < bankCount; ++bank) {
+            if (RomUtilities.isEmptyKitBank(romImage, bank)) {
+                json.value(bank);
+            }
+        }
+        json.endArray();
+
+        json.name("fonts").beginArray();
+        int fontNameOffset = RomUtilities.findFontNameOffset(romImage);
+        if (fontNameOffset != -1) {
+            for (int font = 0; font < LSDJFont.FONT_COUNT; ++font) {
+                // Names are stored with a terminating zero.
+                json.value(string(romImage, fontNameOffset + font * (LSDJFont.FONT_NAME_LENGTH + 1),
+                        LSDJFont.FONT_NAME_LENGTH));
+            }
+        }
+        json.endArray();
+
+        json.name("palettes").beginArray();
+        int paletteCount = RomUtilities.getNumberOfPalettes(romImage);
+        int paletteOffset = RomUtilities.findPaletteOffset(romImage);
+        int paletteNameOffset = RomUtilities.findPaletteNameOffset(romImage);
+        if (paletteCount > 0 && paletteOffset > 0 && paletteNameOffset > 0) {
+            for (int palette = 0; palette < paletteCount; ++palette) {
+                writePalette(json, romImage, palette,
+                        paletteOffset + palette * RomUtilities.PALETTE_SIZE,
+                        paletteNameOffset + palette * RomUtilities.PALETTE_NAME_SIZE);
+            }
+        }
+        json.endArray();
+        json.endObject();
+    }
+
+    private static void writeKit(JsonWriter json, byte[] romImage, int bank) {
+        LSDJKit kit = new LSDJKit();
+        kit.setRomImage(romImage);
+        kit.setDataOffset(bank * RomUtilities.BANK_SIZE);
+        json.beginObject();
+        json.name("bank").value(bank);
+        json.name("name").value(kit.getName());
+        json.name("version").value(kit.getVersion());
+
+        json.name("samples").beginArray();
+        for (int sample = 0; sample < LSDJKit.SAMPLE_COUNT; ++sample) {
+            int size = kit.getSampleLength(sample);
+            if (size == 0) {
+                continue;
+            }
+            json.beginObject();
+            json.name("index").value(sample);
+            json.name("name").value(kit.getSampleName(sample));
+            json.name("size").value(size);
+            json.endObject();
+        }
+        json.endArray();
+        json.name("bytesFree").value(LSDJKit.MAX_SAMPLE_SPACE - kit.getUsedSampleSpace());
+        json.endObject();
+    }
+
+    private static void writePalette(JsonWriter json, byte[] romImage, int palette, int offset, int nameOffset) {
+        json.beginObject();
+        json.name("index").value(palette);
+        json.name("name").value(string(romImage, nameOffset, RomUtilities.PALETTE_NAME_SIZE - 1));
+        // Game Boy Color 15-bit colors, 0bbbbbgg gggrrrrr, four per color set.
+        json.name("colorSets").beginArray();
+        for (int colorSet = 0; colorSet < RomUtilities.NUM_COLOR_SETS; ++colorSet) {
+            json.beginArray();
+            for (int color = 0; color < 4; ++color) {
+                json.value(word(romImage, offset + colorSet * RomUtilities.COLOR_SET_SIZE + color * 2));
+            }
+            json.endArray();
+        }
+        json.endArray();
+        json.endObject();
+    }
+
+    private static int word(byte[] romImage, int offset) {
+        return (romImage[offset] & 0xff) | ((romImage[offset + 1] & 0xff) << 8);
+    }
+
+    // Zero terminated or fixed length ASCII.
+    private static String string(byte[] romImage, int offset, int maxLength) {
+        int length = 0;
+        while (length < maxLength && romImage[offset + length] != 0) {
+            ++length;
+        }
+        return new String(romImage, offset, length, StandardCharsets.US_ASCII);
+    }
+}
@@ -2,6 +2,8 @@ package utils;
 
 import structures.LSDJFont;
 
+import java.nio.charset.StandardCharsets;
+
 public class RomUtilities {
     public static final int BANK_COUNT = 64;
     public static final int BANK_SIZE = 0x4000;
@@ -161,13 +163,16 @@ public class RomUtilities {
         }
     }
 
-    public static void fixChecksum(byte[] romImage) {
+    private static int headerChecksum(byte[] romImage) {
         int checksum014D = 0;
         for (int i = 0x134; i < 0x14D; ++i) {
             checksum014D = checksum014D - romImage[i] - 1;
         }
-        romImage[0x14D] = (byte) (checksum014D & 0xFF);
+        return checksum014D & 0xFF;
+    }
 
+    // Must be computed after the header checksum, which it includes.
+    private static int globalChecksum(byte[] romImage) {
         int checksum014E = 0;
         for (int i = 0; i < romImage.length; ++i) {
             if (i == 0x14E || i == 0x14F) {
@@ -175,11 +180,47 @@ public class RomUtilities {
             }
             checksum014E += romImage[i] & 0xFF;
         }
+        return checksum014E & 0xFFFF;
+    }
 
+    public static void fixChecksum(byte[] romImage) {
+        romImage[0x14D] = (byte) headerChecksum(romImage);
+
+        int checksum014E = globalChecksum(romImage);
         romImage[0x14E] = (byte) ((checksum014E & 0xFF00) >> 8);
         romImage[0x14F] = (byte) (checksum014E & 0x00FF);
     }
 
+    public static boolean isHeaderChecksumValid(byte[] romImage) {
+        return (romImage[0x14D] & 0xFF) == headerChecksum(romImage);
+    }
+
+    public static boolean isGlobalChecksumValid(byte[] romImage) {
+        return (((romImage[0x14E] & 0xFF) << 8) | (romImage[0x14F] & 0xFF)) == globalChecksum(romImage);
+    }
+
+    public static boolean isKitBank(byte[] romImage, int bank) {
+        int offset = bank * BANK_SIZE;
+        return romImage[offset] == 0x60 && romImage[offset + 1] == 0x40;
+    }
+
+    public static boolean isEmptyKitBank(byte[] romImage, int bank) {
+        int offset = bank * BANK_SIZE;
+        return romImage[offset] == -1 && romImage[offset + 1] == -1;
+    }
+
+    /**
+     * Returns the LSDj version string, e.g. "9.2.L", or null if none was found.
+     */
+    public static String getVersion(byte[] romImage) {
+        for (int i = 0; i + 5 < romImage.length; ++i) {
+            if (romImage[i] == 'V' && romImage[i + 2] == '.' && romImage[i + 4] == '.') {
+                return new String(romImage, i + 1, 5, StandardCharsets.US_ASCII);
+            }
+        }
+        return null;
+    }
+
     public static boolean validatePaletteData(byte[] romImage) {
         return getNumberOfPalettes(romImage) > 0 &&
                 findPaletteNameOffset(romImage) > 0 &&
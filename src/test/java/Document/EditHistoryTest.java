@@ -0,0 +1,160 @@
+package Document;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+class EditHistoryTest {
+    private static final int SIZE = 0x10000;
+
+    private static EditHistory.Patcher into(byte[] data) {
+        return (target, offset, bytes) -> System.arraycopy(bytes, 0, data, offset, bytes.length);
+    }
+
+    private static void commit(EditHistory history, Object source, byte[] current, byte[] edited) {
+        for (EditHistory.Range range : history.record(EditTarget.ROM, source, current, edited, null, 0)) {
+            System.arraycopy(range.after, 0, current, range.offset, range.after.length);
+        }
+    }
+
+    @Test
+    void undoAndRedo() {
+        EditHistory history = new EditHistory(EditHistory.DEFAULT_MEMORY_LIMIT, 0);
+        byte[] current = new byte[SIZE];
+        byte[] edited = current.clone();
+        edited[5] = 1;
+        edited[0x8000] = 2;
+        commit(history, null, current, edited);
+        byte[] first = current.clone();
+        edited[5] = 3;
+        commit(history, null, current, edited);
+        byte[] second = current.clone();
+
+        Assertions.assertEquals(EditTarget.ROM, history.undo(into(current)));
+        Assertions.assertArrayEquals(first, current);
+        Assertions.assertEquals(EditTarget.ROM, history.undo(into(current)));
+        Assertions.assertArrayEquals(new byte[SIZE], current);
+        Assertions.assertNull(history.undo(into(current)));
+
+        history.redo(into(current));
+        history.redo(into(current));
+        Assertions.assertArrayEquals(second, current);
+        Assertions.assertFalse(history.canRedo());
+    }
+
+    @Test
+    void storesOnlyChangedRanges() {
+        EditHistory history = new EditHistory(EditHistory.DEFAULT_MEMORY_LIMIT, 0);
+        byte[] current = new byte[SIZE];
+        byte[] edited = current.clone();
+        edited[10] = 1;
+        edited[12] = 1;
+        edited[0x4000] = 1;
+        List<EditHistory.Range> ranges = history.record(EditTarget.ROM, null, current, edited, null, 0);
+        Assertions.assertEquals(2, ranges.size());
+        Assertions.assertEquals(10, ranges.get(0).offset);
+        Assertions.assertEquals(3, ranges.get(0).after.length);
+        Assertions.assertEquals(0x4000, ranges.get(1).offset);
+        Assertions.assertTrue(history.memoryUsed() < 0x200);
+
+        Assertions.assertTrue(history.record(EditTarget.ROM, null, edited, edited, null, 0).isEmpty());
+    }
+
+    @Test
+    void coalescesEditsFromSameSource() {
+        EditHistory history = new EditHistory(EditHistory.DEFAULT_MEMORY_LIMIT, 60000);
+        Object drag = new Object();
+        byte[] current = new byte[SIZE];
+        byte[] edited = current.clone();
+        for (int i = 0; i < 8; ++i) {
+            edited[i * 0x100] = (byte) (i + 1);
+            edited[0] = (byte) i;
+            commit(history, drag, current, edited);
+        }
+        history.undo(into(current));
+        Assertions.assertArrayEquals(new byte[SIZE], current);
+        Assertions.assertFalse(history.canUndo());
+
+        history.redo(into(current));
+        Assertions.assertArrayEquals(edited, current);
+
+        // A new edit after undo/redo starts a new entry.
+        edited[1] = 1;
+        commit(history, drag, current, edited);
+        history.undo(into(current));
+        Assertions.assertTrue(history.canUndo());
+    }
+
+    @Test
+    void dropsOldestEditsOverMemoryLimit() {
+        EditHistory history = new EditHistory(0x1000, 0);
+        byte[] current = new byte[SIZE];
+        for (int i = 0; i < 16; ++i) {
+            byte[] edited = current.clone();
+            for (int j = 0; j < 0x100; ++j) {
+                edited[i * 0x100 + j] = 1;
+            }
+            commit(history, null, current, edited);
+        }
+        Assertions.assertTrue(history.memoryUsed() <= 0x1000);
+        int undoCount = 0;
+        while (history.undo(into(current)) != null) {
+            ++undoCount;
+        }
+        Assertions.assertTrue(undoCount > 0 && undoCount < 16);
+    }
+
+    @Test
+    void documentUndoesSavEdits() {
+        Document document = new Document();
+        LSDSavFile savFile = document.savFile();
+        savFile.patchWorkRam(0x100, new byte[]{7});
+        document.setSavFile(savFile);
+        Assertions.assertTrue(document.canUndo());
+
+        Assertions.assertTrue(document.undo());
+        Assertions.assertEquals(0, document.savFile().workRam[0x100]);
+        // The edited save is not affected by undo.
+        Assertions.assertEquals(7, savFile.workRam[0x100]);
+        Assertions.assertTrue(document.redo());
+        Assertions.assertEquals(7, document.savFile().workRam[0x100]);
+    }
+
+    @Test
+    void undoesOnlyTheGivenTarget() {
+        EditHistory history = new EditHistory(EditHistory.DEFAULT_MEMORY_LIMIT, 0);
+        byte[] rom = new byte[SIZE];
+        byte[] sav = new byte[SIZE];
+        EditHistory.Patcher patcher = (target, offset, bytes) ->
+                System.arraycopy(bytes, 0, target == EditTarget.ROM ? rom : sav, offset, bytes.length);
+        byte[] editedRom = rom.clone();
+        editedRom[1] = 1;
+        history.record(EditTarget.ROM, null, rom, editedRom, null, 0);
+        rom[1] = 1;
+        byte[] editedSav = sav.clone();
+        editedSav[2] = 2;
+        history.record(EditTarget.SAV, null, sav, editedSav, null, 0);
+        sav[2] = 2;
+
+        Assertions.assertEquals(EditTarget.ROM, history.undo(EditTarget.ROM, patcher));
+        Assertions.assertEquals(0, rom[1]);
+        Assertions.assertEquals(2, sav[2]);
+        Assertions.assertNull(history.undo(EditTarget.ROM, patcher));
+        Assertions.assertTrue(history.canUndo(EditTarget.SAV));
+        Assertions.assertTrue(history.canRedo(EditTarget.ROM));
+        Assertions.assertFalse(history.canRedo(EditTarget.SAV));
+
+        // Without a target, the most recent edit of either is undone.
+        Assertions.assertEquals(EditTarget.SAV, history.undo(patcher));
+        Assertions.assertEquals(0, sav[2]);
+        Assertions.assertEquals(EditTarget.SAV, history.redo(patcher));
+        Assertions.assertEquals(2, sav[2]);
+
+        // A new SAV edit keeps the ROM redo.
+        editedSav[3] = 3;
+        history.record(EditTarget.SAV, null, sav, editedSav, null, 0);
+        Assertions.assertEquals(EditTarget.ROM, history.redo(EditTarget.ROM, patcher));
+        Assertions.assertEquals(1, rom[1]);
+    }
+}
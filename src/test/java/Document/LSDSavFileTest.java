@@ -6,6 +6,7 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
+import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.Objects;
 
@@ -39,6 +40,81 @@ class LSDSavFileTest {
         }
     }
 
+    @Test
+    void compact() throws Exception {
+        ClassLoader classLoader = getClass().getClassLoader();
+        File file = new File(Objects.requireNonNull(classLoader.getResource("triangle_waves.lsdprj")).getFile());
+        for (int song = 0; song < 5; ++song) {
+            savFile.addSongFromFile(file.getAbsolutePath(), null);
+        }
+        byte[] expected = savFile.unpackSong(4);
+        savFile.clearSong(1);
+        savFile.clearSong(3);
+        int usedBefore = savFile.usedBlockCount();
+
+        Assertions.assertTrue(savFile.compact() >= 0);
+        Assertions.assertTrue(savFile.usedBlockCount() <= usedBefore);
+        for (int song : new int[] { 0, 2, 4 }) {
+            Assertions.assertArrayEquals(expected, savFile.unpackSong(song));
+        }
+
+        // Songs are stored in consecutive blocks, in slot order.
+        int previous = 0;
+        for (int block = 0; block < savFile.usedBlockCount(); ++block) {
+            int song = savFile.workRam[0x8141 + block];
+            Assertions.assertTrue(song >= previous);
+            previous = song;
+        }
+        Assertions.assertEquals(-1, savFile.workRam[0x8141 + savFile.usedBlockCount()]);
+    }
+
+    @Test
+    void exportSong() throws Exception {
+        ClassLoader classLoader = getClass().getClassLoader();
+        File file = new File(Objects.requireNonNull(classLoader.getResource("triangle_waves.lsdprj")).getFile());
+        savFile.addSongFromFile(file.getAbsolutePath(), null);
+
+        File exported = File.createTempFile("lsdpatcher", ".lsdprj");
+        exported.deleteOnExit();
+        // Longer existing files must be replaced, not overwritten in place.
+        Files.write(exported.toPath(), new byte[0x20000]);
+        savFile.exportSong(0, exported, null);
+        Assertions.assertEquals(9 + savFile.getBlocksUsed(0) * 0x200, exported.length());
+
+        savFile.addSongFromFile(exported.getAbsolutePath(), null);
+        Assertions.assertArrayEquals(savFile.unpackSong(0), savFile.unpackSong(1));
+        Assertions.assertEquals(savFile.getFileName(0), savFile.getFileName(1));
+        Assertions.assertEquals(savFile.version(0), savFile.version(1));
+    }
+
+    @Test
+    void loadSixtyFourKbSav() throws Exception {
+        byte[] sram = new byte[0x20000];
+        for (int i = 0; i < 0x10000; ++i) {
+            sram[i] = sram[0x10000 + i] = (byte) (i * 7);
+        }
+        File file = File.createTempFile("lsdpatcher", ".sav");
+        file.deleteOnExit();
+        Files.write(file.toPath(), sram);
+
+        LSDSavFile savFile = new LSDSavFile();
+        savFile.loadFromSav(file.getAbsolutePath());
+        Assertions.assertEquals(0x10000, savFile.workRam.length);
+        Assertions.assertEquals(0x3f, savFile.totalBlockCount());
+        Assertions.assertTrue(savFile.equals(savFile.clone()));
+
+        File saved = File.createTempFile("lsdpatcher", ".sav");
+        saved.deleteOnExit();
+        savFile.saveAs(saved.getAbsolutePath());
+        Assertions.assertArrayEquals(sram, Files.readAllBytes(saved.toPath()));
+
+        sram[0x1ffff] ^= 1;
+        Files.write(file.toPath(), sram);
+        savFile.loadFromSav(file.getAbsolutePath());
+        Assertions.assertEquals(0x20000, savFile.workRam.length);
+        Assertions.assertEquals(0xbf, savFile.totalBlockCount());
+    }
+
     @Test
     void testClone() throws CloneNotSupportedException {
         LSDSavFile savFile = new LSDSavFile();
@@ -47,6 +123,33 @@ class LSDSavFileTest {
         Assertions.assertNotSame(savFile, clone);
     }
 
+    @Test
+    void cloneIsCopyOnWrite() throws Exception {
+        ClassLoader classLoader = getClass().getClassLoader();
+        File file = new File(Objects.requireNonNull(classLoader.getResource("triangle_waves.lsdprj")).getFile());
+        savFile.addSongFromFile(file.getAbsolutePath(), null);
+        savFile.addSongFromFile(file.getAbsolutePath(), null);
+
+        LSDSavFile clone = savFile.clone();
+        Assertions.assertSame(savFile.workRam, clone.workRam);
+        Assertions.assertTrue(savFile.equals(clone));
+
+        clone.clearSong(1);
+        Assertions.assertNotSame(savFile.workRam, clone.workRam);
+        Assertions.assertFalse(savFile.equals(clone));
+        Assertions.assertTrue(clone.equals(clone.clone()));
+        Assertions.assertEquals(10, savFile.getBlocksUsed(1));
+        Assertions.assertEquals(0, clone.getBlocksUsed(1));
+
+        // Both sides changed in the same way.
+        savFile.clearSong(1);
+        Assertions.assertTrue(savFile.equals(clone));
+        Assertions.assertTrue(clone.equals(savFile));
+
+        LSDSavFile other = new LSDSavFile();
+        Assertions.assertFalse(savFile.equals(other));
+    }
+
     @Test
     void saveAs() throws Exception {
         LSDSavFile savFile = new LSDSavFile();
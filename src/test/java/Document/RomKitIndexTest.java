@@ -0,0 +1,40 @@
+package Document;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import utils.RomUtilities;
+
+import java.util.Arrays;
+
+class RomKitIndexTest {
+
+    private static byte[] kit(int seed) {
+        byte[] kit = new byte[RomUtilities.BANK_SIZE];
+        kit[0] = 0x60;
+        kit[1] = 0x40;
+        for (int i = 2; i < kit.length; ++i) {
+            kit[i] = (byte) (i * seed);
+        }
+        return kit;
+    }
+
+    @Test
+    void findAndUpdate() {
+        byte[] romImage = new byte[RomUtilities.BANK_SIZE * RomUtilities.BANK_COUNT];
+        Arrays.fill(romImage, (byte) -1);
+        System.arraycopy(kit(3), 0, romImage, 8 * RomUtilities.BANK_SIZE, RomUtilities.BANK_SIZE);
+
+        RomKitIndex kitIndex = new RomKitIndex(romImage);
+        Assertions.assertEquals(8, kitIndex.find(kit(3)));
+        Assertions.assertEquals(-1, kitIndex.find(kit(5)));
+
+        System.arraycopy(kit(5), 0, romImage, 9 * RomUtilities.BANK_SIZE, RomUtilities.BANK_SIZE);
+        kitIndex.update(9);
+        Assertions.assertEquals(9, kitIndex.find(kit(5)));
+
+        System.arraycopy(kit(7), 0, romImage, 8 * RomUtilities.BANK_SIZE, RomUtilities.BANK_SIZE);
+        kitIndex.update(8);
+        Assertions.assertEquals(-1, kitIndex.find(kit(3)));
+        Assertions.assertEquals(8, kitIndex.find(kit(7)));
+    }
+}
@@ -0,0 +1,110 @@
+package Document;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Random;
+
+class SavArchiveTest {
+    private LSDSavFile savFile;
+
+    @TempDir
+    File archiveDirectory;
+
+    @BeforeEach
+    void createLsdSavFile() throws Exception {
+        savFile = new LSDSavFile();
+        new Random(1).nextBytes(savFile.workRam);
+        Arrays.fill(savFile.workRam, 0x8141, 0x8200, (byte) -1); // Resets block allocation table.
+
+        ClassLoader classLoader = getClass().getClassLoader();
+        File file = new File(Objects.requireNonNull(classLoader.getResource("triangle_waves.lsdprj")).getFile());
+        for (int song = 0; song < 4; ++song) {
+            savFile.addSongFromFile(file.getAbsolutePath(), null);
+        }
+    }
+
+    @Test
+    void storeAndRestore() throws Exception {
+        SavArchive archive = new SavArchive(archiveDirectory);
+        Assertions.assertTrue(archive.store("first", savFile, null) > 0);
+        Assertions.assertArrayEquals(savFile.workRam, archive.restore("first").workRam);
+
+        // Unchanged songs are not stored again.
+        savFile.clearSong(2);
+        int newObjects = archive.store("second", savFile, null);
+        Assertions.assertEquals(2, newObjects); // FAT and free blocks.
+        Assertions.assertArrayEquals(savFile.workRam, archive.restore("second").workRam);
+        Assertions.assertEquals(Arrays.asList("first", "second"), archive.snapshots());
+    }
+
+    @Test
+    void keepsSnapshotsWithTheSameName() throws Exception {
+        SavArchive archive = new SavArchive(archiveDirectory);
+        archive.store("lsdj", savFile, null);
+        // Storing the same contents again is fine.
+        Assertions.assertEquals(0, archive.store("lsdj", savFile, null));
+        byte[] first = savFile.workRam.clone();
+        savFile.clearSong(2);
+        Assertions.assertThrows(IOException.class, () -> archive.store("lsdj", savFile, null));
+        Assertions.assertArrayEquals(first, archive.restore("lsdj").workRam);
+    }
+
+    @Test
+    void namesSnapshotsAfterFiles() {
+        File monday = new File(archiveDirectory, "monday");
+        File tuesday = new File(archiveDirectory, "tuesday");
+        Assertions.assertEquals(Arrays.asList("lsdj", "other"),
+                SavArchive.snapshotNames(Arrays.asList(new File(monday, "lsdj.sav"), new File(monday, "other.sav"))));
+        Assertions.assertEquals(Arrays.asList("monday-lsdj", "tuesday-lsdj", "other", "monday-lsdj"),
+                SavArchive.snapshotNames(Arrays.asList(new File(monday, "lsdj.sav"), new File(tuesday, "lsdj.sav"),
+                        new File(tuesday, "other.sav"), new File(monday, "lsdj.sav"))));
+        File backups = new File(archiveDirectory, "backups");
+        Assertions.assertEquals(Arrays.asList("a-monday-lsdj", "b-monday-lsdj"),
+                SavArchive.snapshotNames(Arrays.asList(new File(new File(new File(backups, "a"), "monday"), "lsdj.sav"),
+                        new File(new File(new File(backups, "b"), "monday"), "lsdj.sav"))));
+    }
+
+    @Test
+    void restoresKits() throws Exception {
+        byte[] song = savFile.unpackSong(1);
+        int instrPtr = SavDiff.INSTRUMENT_TABLE_PTR + 5 * SavDiff.INSTRUMENT_SIZE;
+        song[instrPtr] = 2; // Kit instrument.
+        song[instrPtr + 2] = 3;
+        song[instrPtr + 9] = 30;
+        savFile.writeSong(1, song);
+        byte[] romImage = new byte[0x4000 * 64];
+        new Random(2).nextBytes(romImage);
+
+        SavArchive archive = new SavArchive(archiveDirectory);
+        archive.store("kits", savFile, romImage);
+        byte[] restored = new byte[romImage.length];
+        Assertions.assertEquals(savFile.usedKits(1).size(), archive.restoreKits("kits", restored));
+        for (int kit : new int[]{3, 30}) {
+            int offset = LSDSavFile.kitBankOffset(kit);
+            Assertions.assertArrayEquals(Arrays.copyOfRange(romImage, offset, offset + 0x4000),
+                    Arrays.copyOfRange(restored, offset, offset + 0x4000));
+        }
+        Assertions.assertArrayEquals(savFile.workRam, archive.restore("kits").workRam);
+    }
+
+    @Test
+    void mirroredSixtyFourKbSav() throws Exception {
+        System.arraycopy(savFile.workRam, 0, savFile.workRam, 0x10000, 0x10000);
+        SavArchive archive = new SavArchive(archiveDirectory);
+        archive.store("small", savFile, null);
+        Assertions.assertArrayEquals(savFile.workRam, archive.restore("small").workRam);
+    }
+
+    @Test
+    void blockRanges() {
+        Assertions.assertEquals("0-3,7,9-10", SavArchive.formatBlocks(Arrays.asList(0, 1, 2, 3, 7, 9, 10)));
+        Assertions.assertEquals(Arrays.asList(0, 1, 2, 3, 7, 9, 10), SavArchive.parseBlocks("0-3,7,9-10"));
+    }
+}
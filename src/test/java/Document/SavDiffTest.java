@@ -0,0 +1,81 @@
+package Document;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+class SavDiffTest {
+    private LSDSavFile savFile;
+
+    @BeforeEach
+    void createLsdSavFile() throws Exception {
+        savFile = new LSDSavFile();
+        Arrays.fill(savFile.workRam, (byte)-1); // Resets block allocation table.
+        savFile.workRam[0] = 0; // Satisfies 64 kb SRAM check.
+
+        ClassLoader classLoader = getClass().getClassLoader();
+        File file = new File(Objects.requireNonNull(classLoader.getResource("triangle_waves.lsdprj")).getFile());
+        savFile.addSongFromFile(file.getAbsolutePath(), null);
+        savFile.addSongFromFile(file.getAbsolutePath(), null);
+    }
+
+    @Test
+    void identical() throws Exception {
+        Assertions.assertTrue(SavDiff.compare(savFile, savFile.clone()).isEmpty());
+    }
+
+    @Test
+    void addedAndRemoved() throws Exception {
+        LSDSavFile after = savFile.clone();
+        after.clearSong(0);
+        after.writeSong(5, savFile.unpackSong(1));
+
+        List<SavDiff.SongChange> changes = SavDiff.compare(savFile, after);
+        Assertions.assertEquals(2, changes.size());
+        Assertions.assertEquals(0, changes.get(0).slot);
+        Assertions.assertEquals(SavDiff.Kind.REMOVED, changes.get(0).kind);
+        Assertions.assertEquals(5, changes.get(1).slot);
+        Assertions.assertEquals(SavDiff.Kind.ADDED, changes.get(1).kind);
+    }
+
+    @Test
+    void changedCorruptedSong() throws Exception {
+        // A block cycle makes song 0 corrupted.
+        savFile.patchWorkRam(savFile.getNextBlockIdPtr(0), new byte[]{1});
+        Assertions.assertFalse(savFile.isValid(0));
+        LSDSavFile after = savFile.clone();
+        int offset = savFile.blockStartPtr + 10;
+        after.patchWorkRam(offset, new byte[]{(byte) (savFile.workRam[offset] + 1)});
+        Assertions.assertFalse(after.isValid(0));
+
+        Assertions.assertTrue(SavDiff.compare(savFile, savFile.clone()).isEmpty());
+        List<SavDiff.SongChange> changes = SavDiff.compare(savFile, after);
+        Assertions.assertEquals(1, changes.size());
+        Assertions.assertEquals(0, changes.get(0).slot);
+        Assertions.assertEquals(SavDiff.Kind.CHANGED, changes.get(0).kind);
+    }
+
+    @Test
+    void changedInstrumentAndKit() throws Exception {
+        LSDSavFile after = savFile.clone();
+        byte[] song = after.unpackSong(1);
+        int instrPtr = SavDiff.INSTRUMENT_TABLE_PTR + 5 * SavDiff.INSTRUMENT_SIZE;
+        song[instrPtr] = 2; // Kit instrument.
+        song[instrPtr + 2] = 7;
+        song[instrPtr + 9] = 7;
+        after.writeSong(1, song);
+
+        List<SavDiff.SongChange> changes = SavDiff.compare(savFile, after);
+        Assertions.assertEquals(1, changes.size());
+        SavDiff.SongChange change = changes.get(0);
+        Assertions.assertEquals(SavDiff.Kind.CHANGED, change.kind);
+        Assertions.assertEquals(Collections.singletonList(5), change.changedInstruments());
+        Assertions.assertTrue(change.addedKits().contains(7));
+    }
+}
@@ -0,0 +1,40 @@
+package Document;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Objects;
+
+class SavManifestTest {
+
+    @Test
+    void manifest() throws Exception {
+        LSDSavFile savFile = new LSDSavFile();
+        Arrays.fill(savFile.workRam, (byte)-1); // Resets block allocation table.
+        savFile.workRam[0] = 0; // Satisfies 64 kb SRAM check.
+        ClassLoader classLoader = getClass().getClassLoader();
+        File file = new File(Objects.requireNonNull(classLoader.getResource("triangle_waves.lsdprj")).getFile());
+        savFile.addSongFromFile(file.getAbsolutePath(), null);
+        savFile.addSongFromFile(file.getAbsolutePath(), null);
+
+        // Truncates the second song by ending it at the start of its first block.
+        int block = 0;
+        while (savFile.workRam[savFile.blockAllocTableStartPtr + block] != 1) {
+            ++block;
+        }
+        int blockPtr = savFile.blockStartPtr + block * savFile.blockSize;
+        savFile.workRam[blockPtr] = SongDecoder.SPECIAL_BYTE;
+        savFile.workRam[blockPtr + 1] = SongDecoder.END_OF_SONG_BYTE;
+
+        String json = SavManifest.toJson(savFile);
+        String blocks = String.valueOf(savFile.getBlocksUsed(0));
+        Assertions.assertTrue(json.startsWith("{\"sixtyFourKb\":false,\"totalBlocks\":191,\"freeBlocks\":"
+                + savFile.freeBlockCount() + ",\"songs\":[{\"slot\":0,\"name\":\"" + savFile.getFileName(0)
+                + "\",\"version\":\"" + savFile.version(0) + "\",\"blocks\":" + blocks
+                + ",\"valid\":true,\"decodedSize\":32768,\"kits\":["), json);
+        Assertions.assertTrue(json.endsWith("\"valid\":false,\"decodedSize\":0,\"error\":\""
+                + savFile.validate(1) + "\"}]}"), json);
+    }
+}
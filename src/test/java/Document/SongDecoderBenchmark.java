@@ -0,0 +1,81 @@
+package Document;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures validation of all 32 song slots of a save, for clean and corrupted data.
+ * <p>
+ * Not run by the test suite; launch main() with the test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SongDecoderBenchmark {
+    private LSDSavFile clean;
+    private LSDSavFile corrupted;
+
+    @Setup
+    public void setup() throws Exception {
+        clean = filledSavFile();
+
+        // Every other song loops back to its first block.
+        corrupted = filledSavFile();
+        for (int song = 0; song < 0x20; song += 2) {
+            int blockAllocTablePtr = 0x8141;
+            for (int block = 0; block < corrupted.totalBlockCount(); ++block) {
+                if (corrupted.workRam[blockAllocTablePtr + block] == song) {
+                    corrupted.workRam[corrupted.getNextBlockIdPtr(block)] = (byte) (block + 1);
+                    break;
+                }
+            }
+        }
+    }
+
+    private LSDSavFile filledSavFile() {
+        File file = new File(Objects.requireNonNull(
+                getClass().getClassLoader().getResource("triangle_waves.lsdprj")).getFile());
+        LSDSavFile savFile = new LSDSavFile();
+        Arrays.fill(savFile.workRam, (byte) -1);
+        savFile.workRam[0] = 0;
+        try {
+            while (true) {
+                savFile.addSongFromFile(file.getAbsolutePath(), null);
+            }
+        } catch (Exception ignored) {
+            // Out of blocks.
+        }
+        return savFile;
+    }
+
+    @Benchmark
+    public void validateClean(Blackhole blackhole) {
+        for (int song = 0; song < 0x20; ++song) {
+            blackhole.consume(clean.validate(song));
+        }
+    }
+
+    @Benchmark
+    public void validateCorrupted(Blackhole blackhole) {
+        for (int song = 0; song < 0x20; ++song) {
+            blackhole.consume(corrupted.validate(song));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SongDecoderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,118 @@
+package Document;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Objects;
+
+class SongDecoderTest {
+    private LSDSavFile savFile;
+
+    @BeforeEach
+    void createLsdSavFile() throws Exception {
+        savFile = new LSDSavFile();
+        Arrays.fill(savFile.workRam, (byte)-1); // Resets block allocation table.
+        savFile.workRam[0] = 0; // Satisfies 64 kb SRAM check.
+
+        ClassLoader classLoader = getClass().getClassLoader();
+        File file = new File(Objects.requireNonNull(classLoader.getResource("triangle_waves.lsdprj")).getFile());
+        savFile.addSongFromFile(file.getAbsolutePath(), null);
+        savFile.addSongFromFile(file.getAbsolutePath(), null);
+    }
+
+    @Test
+    void decodeValidSongs() {
+        byte[] song = new byte[SongDecoder.SONG_SIZE];
+        Assertions.assertNull(savFile.unpackSong(0, song));
+        byte[] other = new byte[SongDecoder.SONG_SIZE];
+        Assertions.assertNull(savFile.unpackSong(1, other));
+        Assertions.assertArrayEquals(song, other);
+        Assertions.assertArrayEquals(song, savFile.unpackSong(0));
+    }
+
+    @Test
+    void emptySlot() {
+        SongDecoder.DecodeError error = savFile.validate(2);
+        Assertions.assertNotNull(error);
+        Assertions.assertEquals(SongDecoder.Reason.NO_BLOCKS, error.reason);
+        Assertions.assertFalse(savFile.isValid(2));
+    }
+
+    @Test
+    void blockCycle() throws Exception {
+        // Point the first block switch of song 0 back at its first block.
+        int nextBlockIdPtr = savFile.getNextBlockIdPtr(0);
+        Assertions.assertNotEquals(-1, nextBlockIdPtr);
+        savFile.workRam[nextBlockIdPtr] = 1;
+
+        SongDecoder.DecodeError error = savFile.validate(0);
+        Assertions.assertNotNull(error);
+        Assertions.assertEquals(SongDecoder.Reason.BLOCK_CYCLE, error.reason);
+        Assertions.assertEquals(1, error.block);
+        Assertions.assertEquals(nextBlockIdPtr - 1, error.offset);
+        Assertions.assertTrue(savFile.isValid(1));
+    }
+
+    @Test
+    void corruptedSongUsesNoKits() throws Exception {
+        byte[] song = savFile.unpackSong(1);
+        int instrPtr = SavDiff.INSTRUMENT_TABLE_PTR + 5 * SavDiff.INSTRUMENT_SIZE;
+        song[instrPtr] = 2; // Kit instrument.
+        song[instrPtr + 2] = 7;
+        savFile.writeSong(1, song);
+        Assertions.assertTrue(savFile.usedKits(1).contains(7));
+
+        savFile.workRam[savFile.getNextBlockIdPtr(0)] = 1;
+        Assertions.assertTrue(savFile.usedKits(0).isEmpty());
+    }
+
+    @Test
+    void invalidBlock() throws Exception {
+        int nextBlockIdPtr = savFile.getNextBlockIdPtr(0);
+        savFile.workRam[nextBlockIdPtr] = (byte) (savFile.totalBlockCount() + 1);
+
+        SongDecoder.DecodeError error = savFile.validate(0);
+        Assertions.assertNotNull(error);
+        Assertions.assertEquals(SongDecoder.Reason.INVALID_BLOCK, error.reason);
+    }
+
+    @Test
+    void outputOverflow() {
+        // Replace song contents with a run of RLE tokens that decodes to more than 32 kB.
+        int blockPtr = 0x8200;
+        for (int i = 0; i < 0x1f8; i += 3) {
+            savFile.workRam[blockPtr + i] = (byte) 0xc0;
+            savFile.workRam[blockPtr + i + 1] = 0;
+            savFile.workRam[blockPtr + i + 2] = (byte) 0xff;
+        }
+
+        SongDecoder.DecodeError error = savFile.validate(0);
+        Assertions.assertNotNull(error);
+        Assertions.assertEquals(SongDecoder.Reason.OUTPUT_OVERFLOW, error.reason);
+    }
+
+    @Test
+    void truncated() {
+        // A song without block switch or end token runs into the end of SRAM.
+        LSDSavFile savFile = new LSDSavFile();
+        Arrays.fill(savFile.workRam, (byte) 0xff);
+        savFile.workRam[0] = 0;
+        savFile.workRam[0x8141 + savFile.totalBlockCount() - 1] = 0;
+        int lastBlockPtr = savFile.workRam.length - 0x200;
+        Arrays.fill(savFile.workRam, lastBlockPtr, savFile.workRam.length, (byte) 0x11);
+
+        SongDecoder.DecodeError error = savFile.validate(0);
+        Assertions.assertNotNull(error);
+        Assertions.assertEquals(SongDecoder.Reason.TRUNCATED, error.reason);
+        Assertions.assertEquals(savFile.workRam.length, error.offset);
+
+        savFile.workRam[savFile.workRam.length - 1] = (byte) 0xc0;
+        error = savFile.validate(0);
+        Assertions.assertNotNull(error);
+        Assertions.assertEquals(SongDecoder.Reason.TRUNCATED, error.reason);
+        Assertions.assertEquals(savFile.workRam.length - 1, error.offset);
+    }
+}
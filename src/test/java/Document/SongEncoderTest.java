@@ -0,0 +1,108 @@
+package Document;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Random;
+
+class SongEncoderTest {
+    private LSDSavFile savFile;
+
+    @BeforeEach
+    void createLsdSavFile() {
+        savFile = new LSDSavFile();
+        Arrays.fill(savFile.workRam, (byte)-1); // Resets block allocation table.
+        savFile.workRam[0] = 0; // Satisfies 64 kb SRAM check.
+    }
+
+    private void addTriangleWaves() throws Exception {
+        ClassLoader classLoader = getClass().getClassLoader();
+        File file = new File(Objects.requireNonNull(classLoader.getResource("triangle_waves.lsdprj")).getFile());
+        savFile.addSongFromFile(file.getAbsolutePath(), null);
+    }
+
+    @Test
+    void roundTrip() throws Exception {
+        addTriangleWaves();
+        byte[] song = savFile.unpackSong(0);
+        Assertions.assertNotNull(song);
+        int blocksBefore = savFile.getBlocksUsed(0);
+
+        savFile.recompressSong(0);
+        Assertions.assertTrue(savFile.getBlocksUsed(0) <= blocksBefore);
+        Assertions.assertArrayEquals(song, savFile.unpackSong(0));
+    }
+
+    @Test
+    void roundTripSpecialBytes() throws Exception {
+        byte[] song = new byte[SongDecoder.SONG_SIZE];
+        Random random = new Random(0);
+        byte[] alphabet = { 0, 1, (byte) 0xc0, (byte) 0xe0, (byte) 0xff };
+        for (int i = 0; i < song.length; ) {
+            int kind = random.nextInt(4);
+            if (kind == 0) {
+                System.arraycopy(SongDecoder.DEFAULT_INSTRUMENT, 0, song, i, Math.min(16, song.length - i));
+                i += 16;
+            } else if (kind == 1) {
+                System.arraycopy(SongDecoder.DEFAULT_WAVE, 0, song, i, Math.min(16, song.length - i));
+                i += 16;
+            } else {
+                byte value = alphabet[random.nextInt(alphabet.length)];
+                int run = 1 + random.nextInt(kind == 2 ? 3 : 300);
+                for (int j = 0; j < run && i < song.length; ++j) {
+                    song[i++] = value;
+                }
+            }
+        }
+
+        savFile.writeSong(3, song);
+        Assertions.assertTrue(savFile.isValid(3));
+        Assertions.assertArrayEquals(song, savFile.unpackSong(3));
+    }
+
+    @Test
+    void emptySongUsesOneBlock() throws Exception {
+        savFile.writeSong(0, new byte[SongDecoder.SONG_SIZE]);
+        Assertions.assertEquals(1, savFile.getBlocksUsed(0));
+        Assertions.assertTrue(savFile.isValid(0));
+    }
+
+    @Test
+    void outOfBlocks() {
+        byte[] song = new byte[SongDecoder.SONG_SIZE];
+        for (int i = 0; i < song.length; ++i) {
+            song[i] = (byte) i;
+        }
+        byte[] blocks = new byte[4 * 0x200];
+        Assertions.assertEquals(-1, SongEncoder.encode(song, new int[] { 1, 2, 3, 4 }, blocks));
+
+        Arrays.fill(savFile.workRam, 0x8141, 0x8141 + savFile.totalBlockCount() - 4, (byte) 5);
+        byte[] before = savFile.workRam.clone();
+        try {
+            savFile.writeSong(0, song);
+            Assertions.fail("writeSong did not throw");
+        } catch (LSDSavFile.AddSongException e) {
+            Assertions.assertEquals("Out of blocks!", e.getMessage());
+        }
+        Assertions.assertArrayEquals(before, savFile.workRam);
+    }
+
+    @Test
+    void recompressAllSongs() throws Exception {
+        for (int song = 0; song < 19; ++song) {
+            addTriangleWaves();
+        }
+        int usedBefore = savFile.usedBlockCount();
+        for (int song = 0; song < 19; ++song) {
+            savFile.recompressSong(song);
+        }
+        Assertions.assertTrue(savFile.usedBlockCount() <= usedBefore);
+        for (int song = 0; song < 19; ++song) {
+            Assertions.assertTrue(savFile.isValid(song));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package fontEditor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import structures.LSDJFont;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+class FontMapTest {
+    private static final int[] COLORS = {
+            Color.white.getRGB(), Color.lightGray.getRGB(), Color.darkGray.getRGB(), Color.black.getRGB()
+    };
+
+    private static BufferedImage paint(FontMap fontMap) {
+        BufferedImage image = new BufferedImage(LSDJFont.FONT_MAP_WIDTH, LSDJFont.FONT_MAP_HEIGHT,
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setClip(0, 0, image.getWidth(), image.getHeight());
+        fontMap.paintComponent(g);
+        g.dispose();
+        return image;
+    }
+
+    private static void assertMatchesFont(BufferedImage image, byte[] romImage) {
+        LSDJFont font = new LSDJFont();
+        font.setRomImage(romImage);
+        for (int tile = 0; tile < LSDJFont.TILE_COUNT; ++tile) {
+            for (int y = 0; y < 8; ++y) {
+                for (int x = 0; x < 8; ++x) {
+                    Assertions.assertEquals(COLORS[font.getTilePixel(tile, x, y)],
+                            image.getRGB((tile % 8) * 8 + x, (tile / 8) * 8 + y));
+                }
+            }
+        }
+    }
+
+    @Test
+    void redrawsChangedTiles() {
+        byte[] romImage = new byte[LSDJFont.TILE_COUNT * LSDJFont.FONT_TILE_SIZE];
+        new Random(1).nextBytes(romImage);
+        FontMap fontMap = new FontMap();
+        fontMap.setSize(LSDJFont.FONT_MAP_WIDTH, LSDJFont.FONT_MAP_HEIGHT);
+        fontMap.setRomImage(romImage);
+        fontMap.setFontOffset(0);
+        assertMatchesFont(paint(fontMap), romImage);
+
+        LSDJFont font = new LSDJFont();
+        font.setRomImage(romImage);
+        font.setTilePixel(9, 1, 2, 3);
+        font.setTilePixel(9, 2, 2, 1);
+        fontMap.tileChanged(9);
+        assertMatchesFont(paint(fontMap), romImage);
+    }
+}
@@ -0,0 +1,151 @@
+package kitEditor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import structures.LSDJKit;
+import utils.RomUtilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+class KitLibraryTest {
+
+    private static byte[] bank(String name, String firstSampleName) {
+        byte[] bank = new byte[RomUtilities.BANK_SIZE];
+        bank[0] = 0x60;
+        bank[1] = 0x40;
+        // One 0x20 byte sample.
+        bank[2] = (byte) 0x80;
+        bank[3] = 0x40;
+        System.arraycopy(firstSampleName.getBytes(StandardCharsets.US_ASCII), 0, bank, 0x22, 3);
+        System.arraycopy(name.getBytes(StandardCharsets.US_ASCII), 0, bank, 0x52, name.length());
+        return bank;
+    }
+
+    @Test
+    void indexesAndSearches(@TempDir File directory) throws IOException {
+        File sub = new File(directory, "drums");
+        Assertions.assertTrue(sub.mkdir());
+        Files.write(new File(directory, "tr808.kit").toPath(), bank("TR808", "BD1"));
+        Files.write(new File(sub, "909.kit").toPath(), bank("909", "SN1"));
+        Files.write(new File(sub, "junk.kit").toPath(), new byte[4]);
+
+        KitLibrary library = new KitLibrary(directory);
+        Assertions.assertEquals(3, library.update());
+        Assertions.assertEquals(3, library.getEntries().size());
+
+        List<KitLibrary.Entry> matches = library.search("sn");
+        Assertions.assertEquals(1, matches.size());
+        KitLibrary.Entry entry = matches.get(0);
+        Assertions.assertEquals("drums/909.kit", entry.path);
+        Assertions.assertEquals("909", entry.name);
+        Assertions.assertEquals(0x20, entry.sampleLengths[0]);
+        Assertions.assertEquals(0, entry.sampleLengths[1]);
+        Assertions.assertEquals(new File(sub, "909.kit"), library.fileOf(entry));
+        Assertions.assertEquals(2, library.search("").size());
+
+        // A reopened library uses the saved index.
+        library = new KitLibrary(directory);
+        Assertions.assertEquals(2, library.search("").size());
+        Assertions.assertEquals(0, library.update());
+
+        File tr808 = new File(directory, "tr808.kit");
+        Files.write(tr808.toPath(), bank("TR808B", "CLP"));
+        Assertions.assertTrue(tr808.setLastModified(tr808.lastModified() + 2000));
+        Assertions.assertTrue(new File(sub, "junk.kit").delete());
+        Assertions.assertEquals(1, library.update());
+        Assertions.assertEquals(2, library.getEntries().size());
+        Assertions.assertEquals("TR808B", library.search("clp").get(0).name);
+    }
+
+    @Test
+    void findsSimilarSamples(@TempDir File directory) throws IOException {
+        byte[] low = bank("LOW", "BD1");
+        byte[] high = bank("HIGH", "HH1");
+        // Grows sample 0 to 0x800 bytes.
+        low[3] = high[3] = 0x48;
+        System.arraycopy(SampleFingerprintTest.tone(60, 1, 0x800), 0, low, 0x60, 0x800);
+        System.arraycopy(SampleFingerprintTest.tone(3000, 1, 0x800), 0, high, 0x60, 0x800);
+        Files.write(new File(directory, "low.kit").toPath(), low);
+        Files.write(new File(directory, "high.kit").toPath(), high);
+
+        KitLibrary library = new KitLibrary(directory);
+        library.update();
+        byte[] query = SampleFingerprint.of(SampleFingerprintTest.tone(70, 0.8, 0x600));
+        List<KitLibrary.Match> matches = library.nearest(query, 1);
+        Assertions.assertEquals(1, matches.size());
+        Assertions.assertEquals("LOW", matches.get(0).entry.name);
+        Assertions.assertEquals(0, matches.get(0).sample);
+
+        // Fingerprints are kept in the index.
+        matches = new KitLibrary(directory).nearest(query, 5);
+        Assertions.assertEquals(2, matches.size());
+        Assertions.assertEquals("HIGH", matches.get(1).entry.name);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> library.nearest(query, 0));
+    }
+
+    @Test
+    void indexesVersionOneKitWithPartialWaveFrame(@TempDir File directory) throws IOException {
+        byte[] bank = bank("ODD", "BD1");
+        // One 20 byte sample, and a version byte that says swizzled.
+        bank[2] = 0x74;
+        bank[0x5f] = 1;
+        for (int i = 0; i < 20; ++i) {
+            bank[0x60 + i] = (byte) i;
+        }
+        Files.write(new File(directory, "odd.kit").toPath(), bank);
+        Files.write(new File(directory, "good.kit").toPath(), bank("GOOD", "SN1"));
+
+        KitLibrary library = new KitLibrary(directory);
+        Assertions.assertEquals(2, library.update());
+        List<KitLibrary.Entry> matches = library.search("odd");
+        Assertions.assertEquals(1, matches.size());
+        Assertions.assertEquals(20, matches.get(0).sampleLengths[0]);
+        Assertions.assertEquals(1, library.search("good").size());
+
+        // The sample can only be as stored.
+        LSDJKit kit = new LSDJKit();
+        kit.setRomImage(bank);
+        Assertions.assertArrayEquals(Arrays.copyOfRange(bank, 0x60, 0x60 + 20), kit.getSampleNibbles(0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> LSDJKit.unSwizzle(new byte[20]));
+    }
+
+    @Test
+    void skipsKitWithSamplePointerBeforeSampleData(@TempDir File directory) throws IOException {
+        byte[] bank = bank("LOW", "BD1");
+        // The second sample points below the bank area: 0x0010-0x0030.
+        bank[2] = 0x10;
+        bank[3] = 0;
+        bank[4] = 0x30;
+        bank[5] = 0;
+        Files.write(new File(directory, "low.kit").toPath(), bank);
+        Files.write(new File(directory, "good.kit").toPath(), bank("GOOD", "SN1"));
+
+        KitLibrary library = new KitLibrary(directory);
+        Assertions.assertEquals(2, library.update());
+        Assertions.assertTrue(library.search("low").isEmpty());
+        Assertions.assertEquals(1, library.search("good").size());
+    }
+
+    @Test
+    void readsBanks(@TempDir File directory) throws IOException {
+        File kit = new File(directory, "a.kit");
+        Files.write(kit.toPath(), bank("A", "BD1"));
+        Assertions.assertArrayEquals(bank("A", "BD1"), KitLibrary.readBank(kit));
+
+        File packageFile = new File(directory, "b.lsdkit");
+        KitPackage.create(bank("B", "HH1"), new Sample[KitPackage.SAMPLE_COUNT], false, false).write(packageFile);
+        Assertions.assertArrayEquals(bank("B", "HH1"), KitLibrary.readBank(packageFile));
+        KitLibrary library = new KitLibrary(directory);
+        Assertions.assertEquals(2, library.update());
+        Assertions.assertEquals("B", library.search("hh").get(0).name);
+
+        Files.write(kit.toPath(), new byte[RomUtilities.BANK_SIZE]);
+        Assertions.assertThrows(IOException.class, () -> KitLibrary.readBank(kit));
+    }
+}
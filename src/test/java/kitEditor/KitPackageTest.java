@@ -0,0 +1,126 @@
+package kitEditor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utils.RomUtilities;
+
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+class KitPackageTest {
+
+    private static File wavFile() {
+        URL url = KitPackageTest.class.getClassLoader().getResource("sine1s44khz.wav");
+        assert url != null;
+        return new File(url.getFile());
+    }
+
+    private static byte[] bank() {
+        byte[] bank = new byte[RomUtilities.BANK_SIZE];
+        bank[0] = 0x60;
+        bank[1] = 0x40;
+        bank[0x100] = 42;
+        return bank;
+    }
+
+    @Test
+    void restoresSampleWithoutSourceFile(@TempDir File directory) throws IOException, UnsupportedAudioFileException {
+        // A copy of the source that is gone when the package is loaded.
+        File source = new File(directory, "sine.wav");
+        Files.copy(wavFile().toPath(), source.toPath());
+        Sample[] samples = new Sample[KitPackage.SAMPLE_COUNT];
+        samples[2] = Sample.createFromWav(source, false, false, -6, 1, 2);
+
+        File packageFile = new File(new File(directory, "kits").getAbsolutePath(), "test.lsdkit");
+        Assertions.assertTrue(packageFile.getParentFile().mkdir());
+        KitPackage.create(bank(), samples, false, true).write(packageFile);
+        Assertions.assertTrue(source.delete());
+
+        KitPackage kitPackage = KitPackage.read(packageFile);
+        Assertions.assertArrayEquals(bank(), kitPackage.bank);
+        Assertions.assertNull(kitPackage.toSample(0, packageFile, false));
+        Sample restored = kitPackage.toSample(2, packageFile, false);
+        Assertions.assertNotNull(restored);
+        Assertions.assertNull(restored.getFile());
+        Assertions.assertEquals(-6, restored.getVolumeDb());
+        Assertions.assertEquals(1, restored.getTrim());
+        Assertions.assertEquals(2, restored.getPitchSemitones());
+        Assertions.assertEquals(samples[2].lengthInSamples(), restored.lengthInSamples());
+        Assertions.assertTrue(restored.canAdjustVolume());
+
+        // Without the source, stored PCM is resampled for another speed.
+        Sample halfSpeed = kitPackage.toSample(2, packageFile, true);
+        Assertions.assertNotNull(halfSpeed);
+        Assertions.assertEquals(samples[2].workSampleData().length / 2, halfSpeed.workSampleData().length, 1);
+    }
+
+    @Test
+    void checksSourceOfStoredPcmWhenNeeded(@TempDir File directory)
+            throws IOException, UnsupportedAudioFileException {
+        File source = new File(directory, "sine.wav");
+        Files.copy(wavFile().toPath(), source.toPath());
+        Sample[] samples = new Sample[KitPackage.SAMPLE_COUNT];
+        samples[0] = Sample.createFromWav(source, false, false, 0, 0, 0);
+        File packageFile = new File(directory, "test.lsdkit");
+        KitPackage.create(bank(), samples, false, true).write(packageFile);
+        KitPackage kitPackage = KitPackage.read(packageFile);
+
+        Sample unchanged = kitPackage.toSample(0, packageFile, false);
+        Assertions.assertNotNull(unchanged);
+        Sample changed = kitPackage.toSample(0, packageFile, false);
+        Assertions.assertNotNull(changed);
+        // The source is only compared to its hash when asked for, after this change.
+        Files.write(source.toPath(), new byte[16]);
+        Assertions.assertNull(changed.getFile());
+        changed.reload(false);
+        Assertions.assertEquals(samples[0].lengthInSamples(), changed.lengthInSamples());
+
+        Files.copy(wavFile().toPath(), source.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Assertions.assertEquals(source, unchanged.getFile());
+    }
+
+    @Test
+    void findsMovedSourceByHash(@TempDir File directory) throws IOException, UnsupportedAudioFileException {
+        File source = new File(directory, "sine.wav");
+        Files.copy(wavFile().toPath(), source.toPath());
+        Sample[] samples = new Sample[KitPackage.SAMPLE_COUNT];
+        samples[0] = Sample.createFromWav(source, false, false, 0, 0, 0);
+        File packageFile = new File(directory, "test.lsdkit");
+        KitPackage.create(bank(), samples, false, false).write(packageFile);
+
+        File moved = new File(directory, "moved");
+        Assertions.assertTrue(moved.mkdir());
+        File movedPackage = new File(moved, packageFile.getName());
+        Files.move(packageFile.toPath(), movedPackage.toPath());
+        Files.move(source.toPath(), new File(moved, source.getName()).toPath());
+
+        KitPackage kitPackage = KitPackage.read(movedPackage);
+        Assertions.assertNull(kitPackage.samples[0].pcm);
+        Sample restored = kitPackage.toSample(0, movedPackage, false);
+        Assertions.assertNotNull(restored);
+        Assertions.assertEquals(new File(moved, source.getName()), restored.getFile());
+
+        // Same name, different contents.
+        Files.write(restored.getFile().toPath(), new byte[16]);
+        Assertions.assertNull(kitPackage.toSample(0, movedPackage, false));
+    }
+
+    @Test
+    void rejectsTruncatedPackage(@TempDir File directory) throws IOException {
+        File packageFile = new File(directory, "test.lsdkit");
+        KitPackage.create(bank(), new Sample[KitPackage.SAMPLE_COUNT], false, true).write(packageFile);
+        try (RandomAccessFile file = new RandomAccessFile(packageFile, "rw")) {
+            file.setLength(file.length() / 2);
+        }
+        Assertions.assertThrows(IOException.class, () -> KitPackage.read(packageFile));
+
+        Files.write(packageFile.toPath(), bank());
+        Assertions.assertThrows(IOException.class, () -> KitPackage.read(packageFile));
+    }
+}
@@ -0,0 +1,47 @@
+package kitEditor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+class SampleFingerprintTest {
+
+    // Packed 4-bit samples of a decaying sine at the given frequency, 11468 Hz sample rate.
+    static byte[] tone(double frequency, double amplitude, int length) {
+        byte[] nibbles = new byte[length];
+        for (int i = 0; i < length * 2; ++i) {
+            double envelope = amplitude * (1 - (double) i / (length * 2));
+            double value = 7.5 + 7.5 * envelope * Math.sin(2 * Math.PI * frequency * i / 11468);
+            int nibble = (int) Math.max(0, Math.min(15, Math.round(value)));
+            nibbles[i / 2] |= (byte) (i % 2 == 0 ? nibble << 4 : nibble);
+        }
+        return nibbles;
+    }
+
+    private static byte[] noise(int length) {
+        byte[] nibbles = new byte[length];
+        new Random(1).nextBytes(nibbles);
+        return nibbles;
+    }
+
+    @Test
+    void similarSoundsAreNear() {
+        byte[] kick = SampleFingerprint.of(tone(60, 1, 2048));
+        byte[] quieterLongerKick = SampleFingerprint.of(tone(65, 0.5, 3072));
+        byte[] beep = SampleFingerprint.of(tone(2000, 1, 2048));
+        byte[] hat = SampleFingerprint.of(noise(512));
+
+        Assertions.assertEquals(0, SampleFingerprint.distance(kick, kick));
+        int near = SampleFingerprint.distance(kick, quieterLongerKick);
+        Assertions.assertTrue(near < SampleFingerprint.distance(kick, beep));
+        Assertions.assertTrue(near < SampleFingerprint.distance(kick, hat));
+    }
+
+    @Test
+    void handlesShortSamples() {
+        byte[] shortKick = tone(60, 1, 16);
+        Assertions.assertEquals(SampleFingerprint.SIZE, SampleFingerprint.of(shortKick).length);
+        Assertions.assertEquals(SampleFingerprint.SIZE, SampleFingerprint.of(new byte[0]).length);
+    }
+}
@@ -99,4 +99,30 @@ class SampleTest {
         sample = Sample.createFromWav(file, false, false, 0, 0, 12);
         Assertions.assertEquals(11467 / 2, sample.lengthInSamples());
     }
-}
\ No newline at end of file
+
+    @Test
+    void resamplesPcmWithoutFile() throws IOException, UnsupportedAudioFileException {
+        short[] pcm = Sample.createFromWav(wavFile(), false, false, 0, 0, 0).workSampleData();
+        Sample sample = Sample.createFromPcm("SIN", pcm, false, false, 0, 0, 0);
+        Assertions.assertTrue(sample.canAdjustVolume());
+
+        // octave up
+        sample.setPitchSemitones(12);
+        sample.reload(false);
+        Assertions.assertEquals(pcm.length / 2, sample.workSampleData().length, 1);
+
+        // Back from the stored PCM, not from the octave up copy.
+        sample.setPitchSemitones(0);
+        sample.reload(false);
+        Assertions.assertArrayEquals(pcm, sample.workSampleData());
+
+        sample.reload(true);
+        Assertions.assertEquals(pcm.length / 2, sample.workSampleData().length, 1);
+    }
+
+    private File wavFile() {
+        URL url = getClass().getClassLoader().getResource("sine1s44khz.wav");
+        assert url != null;
+        return new File(url.getFile());
+    }
+}
@@ -0,0 +1,57 @@
+package paletteEditor;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ColorUtilTest {
+    private static final int[] CURVE = {
+            0, 5, 8, 11, 16, 22, 28, 36, 43, 51, 59, 67, 77, 87, 97, 107,
+            119, 130, 141, 153, 166, 177, 188, 200, 209, 221, 230, 238, 245, 249, 252, 255
+    };
+
+    // The per-call computation the cube replaces.
+    private static int reference(int r, int g, int b, boolean raw) {
+        if (raw) {
+            r = (((r >> 3) << 3) * 0xff) / 0xf8;
+            g = (((g >> 3) << 3) * 0xff) / 0xf8;
+            b = (((b >> 3) << 3) * 0xff) / 0xf8;
+            return (r << 16) | (g << 8) | b;
+        }
+        r = CURVE[r >> 3];
+        g = CURVE[g >> 3];
+        b = CURVE[b >> 3];
+        int newR = r * 7 / 8 + (r + r) / 16;
+        int newG = (g * 3 + b) / 4 * 7 / 8 + (r + r) / 16;
+        int newB = b * 7 / 8 + (r + r) / 16;
+        newR = newR * (224 - 32) / 255 + 32;
+        newG = newG * (220 - 36) / 255 + 36;
+        newB = newB * (216 - 40) / 255 + 40;
+        return (newR << 16) | (newG << 8) | newB;
+    }
+
+    @AfterEach
+    void resetScreen() {
+        ColorUtil.setRawScreen(false);
+    }
+
+    @Test
+    void cubeMatchesComputation() {
+        for (boolean raw : new boolean[] { false, true }) {
+            ColorUtil.setRawScreen(raw);
+            for (int r = 0; r < 256; r += 3) {
+                for (int g = 0; g < 256; g += 5) {
+                    for (int b = 0; b < 256; ++b) {
+                        Assertions.assertEquals(reference(r, g, b, raw), ColorUtil.colorCorrect(r, g, b));
+                    }
+                }
+            }
+            for (int i = 0; i < 32 * 32 * 32; ++i) {
+                int r = i >> 10;
+                int g = (i >> 5) & 0x1f;
+                int b = i & 0x1f;
+                Assertions.assertEquals(reference(r << 3, g << 3, b << 3, raw), ColorUtil.colorCorrect555(r, g, b));
+            }
+        }
+    }
+}
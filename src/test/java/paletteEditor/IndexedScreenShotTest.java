@@ -0,0 +1,65 @@
+package paletteEditor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorConvertOp;
+import java.io.IOException;
+import java.util.Random;
+
+class IndexedScreenShotTest {
+    private static final int[] SCREEN_SHOT_COLORS = {
+            ScreenShotColors.NORMAL_BG, ScreenShotColors.NORMAL_MID, ScreenShotColors.NORMAL_FG,
+            ScreenShotColors.SHADED_BG, ScreenShotColors.SHADED_MID, ScreenShotColors.SHADED_FG,
+            ScreenShotColors.ALT_BG, ScreenShotColors.ALT_MID, ScreenShotColors.ALT_FG,
+            ScreenShotColors.CUR_BG, ScreenShotColors.CUR_MID, ScreenShotColors.CUR_FG,
+            ScreenShotColors.SCROLL_BG, ScreenShotColors.SCROLL_MID, ScreenShotColors.SCROLL_FG
+    };
+
+    // Maps each pixel through the screenshot colors one at a time.
+    private static BufferedImage reference(BufferedImage source, int[] colors, boolean desaturate) {
+        BufferedImage image = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < source.getHeight(); ++y) {
+            for (int x = 0; x < source.getWidth(); ++x) {
+                int rgb = 0xff00ff;
+                for (int i = 0; i < SCREEN_SHOT_COLORS.length; ++i) {
+                    if (source.getRGB(x, y) == SCREEN_SHOT_COLORS[i]) {
+                        rgb = colors[i];
+                    }
+                }
+                image.setRGB(x, y, rgb);
+            }
+        }
+        if (desaturate) {
+            new ColorConvertOp(ColorSpace.getInstance(ColorSpace.CS_GRAY), null).filter(image, image);
+        }
+        return image;
+    }
+
+    private static void assertSameImage(BufferedImage expected, BufferedImage actual) {
+        for (int y = 0; y < expected.getHeight(); ++y) {
+            for (int x = 0; x < expected.getWidth(); ++x) {
+                Assertions.assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    void rendersLikePerPixelMapping() throws IOException {
+        BufferedImage song = ImageIO.read(getClass().getResource("/song.bmp"));
+        IndexedScreenShot screenShot = new IndexedScreenShot(song);
+        Random random = new Random(1);
+        int[] colors = new int[IndexedScreenShot.COLOR_COUNT];
+        for (int i = 0; i < colors.length; ++i) {
+            colors[i] = random.nextInt(0x1000000);
+        }
+        assertSameImage(reference(song, colors, false), screenShot.render(colors));
+
+        int[] gray = colors.clone();
+        IndexedScreenShot.desaturate(gray);
+        assertSameImage(reference(song, colors, true), screenShot.render(gray));
+    }
+}
@@ -0,0 +1,105 @@
+package paletteEditor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import utils.RomUtilities;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+class PaletteGeneratorTest {
+    private static final Color BLUE = new Color(ColorUtil.to8bit(2), ColorUtil.to8bit(4), ColorUtil.to8bit(12));
+    private static final Color WHITE = new Color(255, 255, 255);
+    private static final Color RED = new Color(ColorUtil.to8bit(28), ColorUtil.to8bit(3), ColorUtil.to8bit(2));
+
+    // Mostly blue, some white, a little red.
+    private static BufferedImage image() {
+        BufferedImage image = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 100; ++y) {
+            Color color = y < 60 ? BLUE : y < 90 ? WHITE : RED;
+            for (int x = 0; x < 100; ++x) {
+                image.setRGB(x, y, color.getRGB());
+            }
+        }
+        return image;
+    }
+
+    private static void assertSameColor(RGB555 expected, RGB555 actual) {
+        Assertions.assertArrayEquals(new int[] { expected.r(), expected.g(), expected.b() },
+                new int[] { actual.r(), actual.g(), actual.b() });
+    }
+
+    @Test
+    void findsDominantColors() {
+        List<Color> colors = PaletteGenerator.dominantColors(PaletteGenerator.histogram(image()), 8);
+        Assertions.assertEquals(Arrays.asList(BLUE, WHITE, RED), colors);
+
+        // Noise around two colors clusters into them.
+        BufferedImage noise = new BufferedImage(200, 200, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(1);
+        for (int y = 0; y < 200; ++y) {
+            for (int x = 0; x < 200; ++x) {
+                int base = x < 150 ? 40 : 200;
+                noise.setRGB(x, y, new Color(base + random.nextInt(16), base + random.nextInt(16),
+                        base + random.nextInt(16)).getRGB());
+            }
+        }
+        colors = PaletteGenerator.dominantColors(PaletteGenerator.histogram(noise), 2);
+        Assertions.assertEquals(2, colors.size());
+        Assertions.assertEquals(47, colors.get(0).getRed(), 4);
+        Assertions.assertEquals(207, colors.get(1).getGreen(), 4);
+    }
+
+    @Test
+    void generatesColorSets() {
+        RGB555[][] colorSets = PaletteGenerator.generate(image());
+        Assertions.assertEquals(RomUtilities.NUM_COLOR_SETS, colorSets.length);
+        RGB555 blue = PaletteGenerator.nearest(BLUE);
+        RGB555 white = PaletteGenerator.nearest(WHITE);
+        assertSameColor(blue, colorSets[0][0]);
+        assertSameColor(white, colorSets[0][1]);
+        assertSameColor(white, colorSets[1][1]);
+        assertSameColor(white, colorSets[2][0]);
+        assertSameColor(blue, colorSets[2][1]);
+        assertSameColor(PaletteGenerator.nearest(RED), colorSets[3][0]);
+
+        // The shaded background is between the normal colors.
+        Assertions.assertTrue(colorSets[1][0].b() > blue.b() && colorSets[1][0].b() < white.b());
+
+        byte[] romImage = PalettePackTest.romWithPalettes(1, "AAAA", "BBBB");
+        PaletteGenerator.writePalette(romImage, 1, colorSets);
+        byte[] record = PalettePack.getRecord(romImage, 1);
+        // gggrrrrr 0bbbbbgg
+        Assertions.assertEquals((blue.r() | (blue.g() << 5)) & 0xff, record[4] & 0xff);
+        Assertions.assertEquals((blue.g() >> 3) | (blue.b() << 2), record[5] & 0xff);
+        Assertions.assertEquals((white.r() | (white.g() << 5)) & 0xff, record[4 + 6] & 0xff);
+    }
+
+    @Test
+    void matchesCorrectedColorsOnRawScreen() {
+        RGB555[][] corrected = PaletteGenerator.generate(image());
+        ColorUtil.setRawScreen(true);
+        try {
+            RGB555[][] raw = PaletteGenerator.generate(image());
+            Assertions.assertTrue(ColorUtil.rawScreen);
+            for (int colorSet = 0; colorSet < RomUtilities.NUM_COLOR_SETS; ++colorSet) {
+                assertSameColor(corrected[colorSet][0], raw[colorSet][0]);
+                assertSameColor(corrected[colorSet][1], raw[colorSet][1]);
+            }
+        } finally {
+            ColorUtil.setRawScreen(false);
+        }
+    }
+
+    @Test
+    void namesGeneratedPalette() {
+        byte[] romImage = PalettePackTest.romWithPalettes(1, "AAAA", "BBBB");
+        PalettePack.setName(romImage, 1, "aa");
+        Assertions.assertEquals("AA  ", new String(PalettePack.getRecord(romImage, 1), 0, 4));
+        PalettePack.setName(romImage, 1, "aaaaa");
+        Assertions.assertEquals("AAA1", new String(PalettePack.getRecord(romImage, 1), 0, 4));
+    }
+}
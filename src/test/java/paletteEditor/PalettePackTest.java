@@ -0,0 +1,80 @@
+package paletteEditor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utils.RomUtilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+class PalettePackTest {
+    private static final int SCREEN_BACKGROUNDS = 0x5000;
+
+    // A ROM with only the palettes and what is needed to find them.
+    static byte[] romWithPalettes(long seed, String... names) {
+        byte[] romImage = new byte[RomUtilities.BANK_SIZE * RomUtilities.BANK_COUNT];
+        // Font names, then grayscale palette names, then palette names.
+        int nameOffset = 27 * RomUtilities.BANK_SIZE + 0x100;
+        for (int i = 0; i < 3 + 2 * names.length; ++i) {
+            String name = i < 3 + names.length ? "NAME" : names[i - 3 - names.length];
+            System.arraycopy(name.getBytes(StandardCharsets.US_ASCII), 0, romImage,
+                    nameOffset + i * RomUtilities.PALETTE_NAME_SIZE, 4);
+        }
+        romImage[nameOffset + (3 + 2 * names.length) * RomUtilities.PALETTE_NAME_SIZE + 4] = 1;
+
+        byte[] palettes = new byte[names.length * RomUtilities.PALETTE_SIZE];
+        new Random(seed).nextBytes(palettes);
+        System.arraycopy(palettes, 0, romImage, SCREEN_BACKGROUNDS - palettes.length, palettes.length);
+        romImage[SCREEN_BACKGROUNDS + 17] = 72;
+        romImage[SCREEN_BACKGROUNDS + 18] = 72;
+        romImage[SCREEN_BACKGROUNDS + 19] = 72;
+        return romImage;
+    }
+
+    private static String name(byte[] romImage, int palette) {
+        return new String(PalettePack.getRecord(romImage, palette), 0, 4, StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    void exportsAndImportsAllPalettes(@TempDir File directory) throws IOException {
+        byte[] source = romWithPalettes(1, "AAAA", "BBBB", "CCCC");
+        Assertions.assertEquals(3, RomUtilities.getNumberOfPalettes(source));
+        File pack = new File(directory, "all.lsdpals");
+        Assertions.assertEquals(3, PalettePack.exportPack(source, pack));
+
+        byte[] destination = romWithPalettes(2, "XXXX", "YYYY", "ZZZZ");
+        Assertions.assertEquals(3, PalettePack.importPack(pack, destination));
+        for (int palette = 0; palette < 3; ++palette) {
+            Assertions.assertArrayEquals(PalettePack.getRecord(source, palette),
+                    PalettePack.getRecord(destination, palette));
+        }
+
+        // Palettes that do not fit are skipped.
+        byte[] smaller = romWithPalettes(3, "XXXX", "YYYY");
+        Assertions.assertEquals(2, PalettePack.importPack(pack, smaller));
+        Assertions.assertArrayEquals(PalettePack.getRecord(source, 1), PalettePack.getRecord(smaller, 1));
+
+        Assertions.assertThrows(IOException.class, () -> PalettePack.importPack(new File(directory, "none"), smaller));
+        Assertions.assertThrows(IOException.class, () -> PalettePack.exportPack(new byte[smaller.length], pack));
+    }
+
+    @Test
+    void makesNamesUnique() {
+        byte[] romImage = romWithPalettes(1, "AAAA", "AAAA", "AAA1", "BBB9");
+        PalettePack.makeNamesUnique(romImage, -1);
+        Assertions.assertEquals("AAAA", name(romImage, 0));
+        Assertions.assertEquals("AAA1", name(romImage, 1));
+        Assertions.assertEquals("AAA2", name(romImage, 2));
+        Assertions.assertEquals("BBB9", name(romImage, 3));
+
+        // The renamed palette loses the shared name.
+        byte[] record = PalettePack.getRecord(romImage, 3);
+        PalettePack.setRecord(romImage, 0, record, 0);
+        PalettePack.makeNamesUnique(romImage, 0);
+        Assertions.assertEquals("BBBA", name(romImage, 0));
+        Assertions.assertEquals("BBB9", name(romImage, 3));
+    }
+}
@@ -0,0 +1,49 @@
+package paletteEditor;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+class SaturationBrightnessPanelTest {
+    @AfterEach
+    void resetScreen() {
+        ColorUtil.setRawScreen(false);
+    }
+
+    private static void assertRendersHue(BufferedImage field, float hue) {
+        for (int y = 0; y < field.getHeight(); ++y) {
+            for (int x = 0; x < field.getWidth(); ++x) {
+                Color color = Color.getHSBColor(hue, (float) x / field.getWidth(),
+                        1 - (float) y / field.getHeight());
+                Assertions.assertEquals(ColorUtil.colorCorrect(color), field.getRGB(x, y) & 0xffffff);
+            }
+        }
+    }
+
+    @Test
+    void rendersFieldOnlyWhenItChanges() {
+        HuePanel huePanel = new HuePanel();
+        SaturationBrightnessPanel panel = new SaturationBrightnessPanel(huePanel);
+        BufferedImage field = panel.field(37, 29);
+        assertRendersHue(field, 0);
+        Assertions.assertSame(field, panel.field(37, 29));
+
+        huePanel.setHue(0.5f);
+        BufferedImage hueField = panel.field(37, 29);
+        Assertions.assertNotSame(field, hueField);
+        assertRendersHue(hueField, huePanel.hue());
+
+        BufferedImage largerField = panel.field(80, 60);
+        Assertions.assertNotSame(hueField, largerField);
+        assertRendersHue(largerField, huePanel.hue());
+
+        ColorUtil.setRawScreen(true);
+        BufferedImage rawField = panel.field(80, 60);
+        Assertions.assertNotSame(largerField, rawField);
+        assertRendersHue(rawField, huePanel.hue());
+        Assertions.assertSame(rawField, panel.field(80, 60));
+    }
+}
@@ -0,0 +1,106 @@
+package structures;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+class LSDJFontTest {
+    private static final int[] COLORS = { 0xFFFFFF, 0x969696, 0x808080, 0x000000 };
+
+    private static LSDJFont font(byte[] data) {
+        LSDJFont font = new LSDJFont();
+        font.setRomImage(data);
+        font.setDataOffset(0);
+        font.setGfxDataOffset(LSDJFont.TILE_COUNT * LSDJFont.FONT_TILE_SIZE);
+        return font;
+    }
+
+    @Test
+    void imageRoundTrip() {
+        int size = (LSDJFont.TILE_COUNT + LSDJFont.GFX_TILE_COUNT) * LSDJFont.FONT_TILE_SIZE;
+        byte[] data = new byte[size];
+        new Random(1).nextBytes(data);
+        LSDJFont font = font(data);
+
+        BufferedImage image = font.saveDataToImage(true);
+        for (int tile = 0; tile < LSDJFont.TILE_COUNT + LSDJFont.GFX_TILE_COUNT; ++tile) {
+            for (int y = 0; y < 8; ++y) {
+                for (int x = 0; x < 8; ++x) {
+                    Assertions.assertEquals(COLORS[font.getTilePixel(tile, x, y)],
+                            image.getRGB((tile % 8) * 8 + x, (tile / 8) * 8 + y) & 0xFFFFFF);
+                }
+            }
+        }
+        // The unused end of the last row stays black.
+        Assertions.assertEquals(0, image.getRGB(63, LSDJFont.GFX_FONT_MAP_HEIGHT - 1) & 0xFFFFFF);
+
+        byte[] loaded = new byte[size];
+        LSDJFont loadedFont = font(loaded);
+        Assertions.assertEquals("ABC ", loadedFont.loadImageData("ABC", image));
+        for (int tile = 0; tile < LSDJFont.TILE_COUNT + LSDJFont.GFX_TILE_COUNT; ++tile) {
+            for (int y = 0; y < 8; ++y) {
+                for (int x = 0; x < 8; ++x) {
+                    // Dark gray is not used by LSDj and loads as light gray.
+                    int expected = font.getTilePixel(tile, x, y);
+                    Assertions.assertEquals(expected == 2 ? 1 : expected, loadedFont.getTilePixel(tile, x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    void loadsTextTilesOnlyFromSmallImage() {
+        byte[] data = new byte[(LSDJFont.TILE_COUNT + LSDJFont.GFX_TILE_COUNT) * LSDJFont.FONT_TILE_SIZE];
+        LSDJFont font = font(data);
+        BufferedImage image = new BufferedImage(LSDJFont.FONT_MAP_WIDTH, LSDJFont.FONT_MAP_HEIGHT,
+                BufferedImage.TYPE_INT_RGB);
+        Assertions.assertEquals("A   ", font.loadImageData("A", image));
+        for (int i = 0; i < LSDJFont.TILE_COUNT * LSDJFont.FONT_TILE_SIZE; ++i) {
+            Assertions.assertEquals(-1, data[i]);
+        }
+        for (int i = LSDJFont.TILE_COUNT * LSDJFont.FONT_TILE_SIZE; i < data.length; ++i) {
+            Assertions.assertEquals(0, data[i]);
+        }
+    }
+
+    // Per byte reference of the shaded and inverted variants of one tile.
+    private static void generateVariants(byte[] data, int tileOffset) {
+        for (int i = 0; i < LSDJFont.FONT_TILE_SIZE; i += 2) {
+            data[tileOffset + 0x4d2 + i] = (byte) ~data[tileOffset + i + 1];
+            data[tileOffset + 0x4d2 + i + 1] = (byte) ~data[tileOffset + i];
+            data[tileOffset + 0x4d2 * 2 + i] = (byte) (data[tileOffset + i] | (i % 4 == 2 ? 0xaa : 0x55));
+            data[tileOffset + 0x4d2 * 2 + i + 1] = data[tileOffset + i + 1];
+        }
+    }
+
+    @Test
+    void generatesShadedAndInvertedTiles() {
+        int fontOffset = 3;
+        byte[] data = new byte[fontOffset + 0x4d2 * 3];
+        new Random(2).nextBytes(data);
+        byte[] expected = data.clone();
+        for (int tile = 2; tile < LSDJFont.TILE_COUNT; ++tile) {
+            generateVariants(expected, fontOffset + tile * LSDJFont.FONT_TILE_SIZE);
+        }
+        LSDJFont font = new LSDJFont();
+        font.setRomImage(data);
+        font.setDataOffset(fontOffset);
+        font.generateShadedAndInvertedTiles();
+        Assertions.assertArrayEquals(expected, data);
+
+        // Only the given tiles change.
+        font.setTilePixel(5, 0, 0, 3);
+        font.setTilePixel(6, 0, 0, 1);
+        byte[] before = data.clone();
+        font.generateShadedAndInvertedTiles(5, 6);
+        generateVariants(before, fontOffset + 5 * LSDJFont.FONT_TILE_SIZE);
+        Assertions.assertArrayEquals(before, data);
+
+        // Tiles 0, 1 and graphics characters have no variants.
+        font.generateShadedAndInvertedTiles(0, 2);
+        font.generateShadedAndInvertedTiles(LSDJFont.TILE_COUNT, LSDJFont.TILE_COUNT + 1);
+        Assertions.assertArrayEquals(before, data);
+    }
+}
@@ -0,0 +1,49 @@
+package utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+import java.util.stream.Stream;
+
+class AtomicFileWriterTest {
+
+    @Test
+    void replacesContents(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("song.lsdprj");
+        Files.write(file, new byte[]{1, 2, 3, 4});
+        AtomicFileWriter.write(file, new byte[]{5, 6});
+        Assertions.assertArrayEquals(new byte[]{5, 6}, Files.readAllBytes(file));
+        try (Stream<Path> files = Files.list(directory)) {
+            Assertions.assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void newFileHasDefaultPermissions(@TempDir Path directory) throws IOException {
+        Assumptions.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        Path reference = Files.createFile(directory.resolve("reference"));
+        Path file = directory.resolve("song.lsdprj");
+        AtomicFileWriter.write(file, new byte[]{1});
+        Assertions.assertEquals(Files.getPosixFilePermissions(reference), Files.getPosixFilePermissions(file));
+    }
+
+    @Test
+    void replacedFileKeepsPermissions(@TempDir Path directory) throws IOException {
+        Assumptions.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        Path file = directory.resolve("song.lsdprj");
+        Files.write(file, new byte[]{1});
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-rw-r--");
+        Files.setPosixFilePermissions(file, permissions);
+        AtomicFileWriter.write(file, new byte[]{2});
+        Assertions.assertEquals(permissions, Files.getPosixFilePermissions(file));
+    }
+}
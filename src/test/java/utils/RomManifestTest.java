@@ -0,0 +1,65 @@
+package utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+class RomManifestTest {
+
+    private static byte[] romWithKit() {
+        byte[] romImage = new byte[RomUtilities.BANK_SIZE * RomUtilities.BANK_COUNT];
+        byte[] version = "V9.2.L".getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(version, 0, romImage, 0x200, version.length);
+
+        int kit = 8 * RomUtilities.BANK_SIZE;
+        // Two samples of 0x100 and 0x40 bytes.
+        romImage[kit] = 0x60;
+        romImage[kit + 1] = 0x40;
+        romImage[kit + 2] = 0x60;
+        romImage[kit + 3] = 0x41;
+        romImage[kit + 4] = (byte) 0xa0;
+        romImage[kit + 5] = 0x41;
+        System.arraycopy("BD SN".getBytes(StandardCharsets.US_ASCII), 0, romImage, kit + 0x22, 5);
+        System.arraycopy("808   ".getBytes(StandardCharsets.US_ASCII), 0, romImage, kit + 0x52, 6);
+        romImage[kit + 0x5f] = 1;
+
+        romImage[9 * RomUtilities.BANK_SIZE] = -1;
+        romImage[9 * RomUtilities.BANK_SIZE + 1] = -1;
+        return romImage;
+    }
+
+    @Test
+    void manifest() {
+        byte[] romImage = romWithKit();
+        RomUtilities.fixChecksum(romImage);
+        String json = RomManifest.toJson(romImage);
+        Assertions.assertEquals("{\"version\":\"9.2.L\",\"headerChecksumValid\":true,\"globalChecksumValid\":true,"
+                + "\"kits\":[{\"bank\":8,\"name\":\"808   \",\"version\":1,\"samples\":["
+                + "{\"index\":0,\"name\":\"BD \",\"size\":256},{\"index\":1,\"name\":\"SN\",\"size\":64}],"
+                + "\"bytesFree\":15968}],"
+                + "\"freeBanks\":[9],\"fonts\":[],\"palettes\":[]}", json);
+    }
+
+    @Test
+    void checksums() {
+        byte[] romImage = romWithKit();
+        RomUtilities.fixChecksum(romImage);
+        Assertions.assertTrue(RomUtilities.isHeaderChecksumValid(romImage));
+        Assertions.assertTrue(RomUtilities.isGlobalChecksumValid(romImage));
+
+        romImage[0x1000] = 1;
+        Assertions.assertTrue(RomUtilities.isHeaderChecksumValid(romImage));
+        Assertions.assertFalse(RomUtilities.isGlobalChecksumValid(romImage));
+
+        romImage[0x134] = 'L';
+        Assertions.assertFalse(RomUtilities.isHeaderChecksumValid(romImage));
+    }
+
+    @Test
+    void jsonEscaping() {
+        JsonWriter json = new JsonWriter().beginArray().value("a\"b\\c\n\u0001").value(-1).value(false)
+                .value((String) null).beginObject().endObject().endArray();
+        Assertions.assertEquals("[\"a\\\"b\\\\c\\n\\u0001\",-1,false,null,{}]", json.toString());
+    }
+}
@@ -0,0 +1,32 @@
+package utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+class XxHash64Test {
+
+    @Test
+    void referenceValues() {
+        Assertions.assertEquals(0xEF46DB3751D8E999L, XxHash64.hash(new byte[0]));
+        Assertions.assertEquals(0x44BC2CF5AD770999L, XxHash64.hash("abc".getBytes(StandardCharsets.US_ASCII)));
+
+        byte[] data = new byte[100];
+        for (int i = 0; i < data.length; ++i) {
+            data[i] = (byte) i;
+        }
+        Assertions.assertEquals(0x6AC1E58032166597L, XxHash64.hash(data));
+    }
+
+    @Test
+    void offset() {
+        byte[] data = new byte[100];
+        for (int i = 0; i < data.length; ++i) {
+            data[i] = (byte) i;
+        }
+        byte[] padded = new byte[110];
+        System.arraycopy(data, 0, padded, 7, data.length);
+        Assertions.assertEquals(XxHash64.hash(data), XxHash64.hash(padded, 7, data.length));
+    }
+}